@@ -0,0 +1,78 @@
+package com.github.msorkhpar.benchmarks;
+
+import com.github.msorkhpar.wikistorage.dump.BZip2BufferReader;
+import com.github.msorkhpar.wikistorage.dump.DumpPage;
+import com.github.msorkhpar.wikistorage.dump.DumpPageReader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the bzip2 fixture dump: decompression alone through {@link BZip2BufferReader} with one and several
+ * threads, and decompression plus page parsing. {@code parsePages} over the decompressed text isolates the XML reader.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DumpReaderBenchmark {
+
+    @Param({"1", "4"})
+    private int threads;
+
+    private Path dump;
+    private String xml;
+
+    @Setup
+    public void setUp() throws Exception {
+        dump = Fixtures.file(Fixtures.WIKIDATA_PAGES);
+        try (BufferedReader reader = BZip2BufferReader.createBufferedReader(dump, 1)) {
+            StringBuilder text = new StringBuilder();
+            char[] buffer = new char[1 << 16];
+            int read;
+            while ((read = reader.read(buffer)) > 0) {
+                text.append(buffer, 0, read);
+            }
+            xml = text.toString();
+        }
+    }
+
+    @Benchmark
+    public long decompress() throws Exception {
+        long chars = 0;
+        char[] buffer = new char[1 << 16];
+        try (BufferedReader reader = BZip2BufferReader.createBufferedReader(dump, threads)) {
+            int read;
+            while ((read = reader.read(buffer)) > 0) {
+                chars += read;
+            }
+        }
+        return chars;
+    }
+
+    @Benchmark
+    public void decompressAndParsePages(Blackhole blackhole) throws Exception {
+        readPages(BZip2BufferReader.createBufferedReader(dump, threads), blackhole);
+    }
+
+    @Benchmark
+    public void parsePages(Blackhole blackhole) throws Exception {
+        readPages(new StringReader(xml), blackhole);
+    }
+
+    private static void readPages(Reader source, Blackhole blackhole) throws Exception {
+        try (DumpPageReader reader = new DumpPageReader(source)) {
+            DumpPage page;
+            while ((page = reader.next()) != null) {
+                blackhole.consume(page);
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.msorkhpar.benchmarks;
+
+import com.github.msorkhpar.graphbuilder.extractor.WikiDataEntityExtractor;
+import com.github.msorkhpar.graphbuilder.utils.WikidataEntity;
+import com.github.msorkhpar.pageextextractor.extractor.WikipediaPageExtractor;
+import com.github.msorkhpar.pageextextractor.utils.WikiPage;
+import com.github.msorkhpar.wikistorage.dump.DumpPage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-page extraction step of both applications: {@link WikiDataEntityExtractor#extractEntity} and
+ * {@link WikipediaPageExtractor#extractTextString}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityExtractorBenchmark {
+
+    private DumpPage entityPage;
+    private DumpPage articlePage;
+
+    @Setup
+    public void setUp() {
+        entityPage = new DumpPage(0, 1, "Q1000002", null, 1, null, Fixtures.entity("median"));
+        articlePage = new DumpPage(0, 1, "Sample town in a country", null, 1, null, Fixtures.article());
+    }
+
+    @Benchmark
+    public Optional<WikidataEntity> extractEntity() throws Exception {
+        return WikiDataEntityExtractor.extractEntity(entityPage);
+    }
+
+    @Benchmark
+    public WikiPage extractTextString() {
+        return WikipediaPageExtractor.extractTextString(articlePage);
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.msorkhpar.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The checked-in samples under {@code src/main/resources/fixtures}. They are synthetic but follow the structure of
+ * the real dumps: an entity with few claims and languages, a median one and a huge one with hundreds of statements,
+ * a Wikipedia article and a bzip2 dump of Wikidata pages compressed in 100k blocks.
+ */
+final class Fixtures {
+
+    static final String WIKIDATA_PAGES = "wikidata-pages.xml.bz2";
+
+    private Fixtures() {
+    }
+
+    static String entity(String size) {
+        return text("entity-" + size + ".json");
+    }
+
+    static String article() {
+        return text("article.wikitext");
+    }
+
+    static String text(String name) {
+        try (InputStream input = open(name)) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Copies a fixture to a temporary file, for the readers which need a path.
+     */
+    static Path file(String name) {
+        try (InputStream input = open(name)) {
+            Path file = Files.createTempFile("benchmark-", "-" + name);
+            file.toFile().deleteOnExit();
+            Files.copy(input, file, StandardCopyOption.REPLACE_EXISTING);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static InputStream open(String name) throws IOException {
+        InputStream input = Fixtures.class.getResourceAsStream("/fixtures/" + name);
+        if (input == null) {
+            throw new IOException("Fixture [" + name + "] is missing");
+        }
+        return input;
+    }
+}
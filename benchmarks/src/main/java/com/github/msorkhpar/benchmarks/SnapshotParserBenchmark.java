@@ -0,0 +1,37 @@
+package com.github.msorkhpar.benchmarks;
+
+import com.github.msorkhpar.graphbuilder.utils.SnapshotParser;
+import com.github.msorkhpar.graphbuilder.utils.WikidataEntity;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SnapshotParser#parseSnapshot} on entities of different sizes, with a parser reused like the extractor does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotParserBenchmark {
+
+    @Param({"small", "median", "huge"})
+    private String size;
+
+    private String json;
+    private SnapshotParser parser;
+
+    @Setup
+    public void setUp() {
+        json = Fixtures.entity(size);
+        parser = new SnapshotParser();
+    }
+
+    @Benchmark
+    public WikidataEntity parseSnapshot() throws IOException {
+        return parser.parseSnapshot("Q1", json);
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.msorkhpar.benchmarks;
+
+import com.github.msorkhpar.graphbuilder.utils.SnapshotParser;
+import com.github.msorkhpar.wikistorage.utils.LongHashSet;
+import com.github.msorkhpar.wikistorage.utils.PackedTriple;
+import com.github.msorkhpar.wikistorage.utils.TripleBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the triple set of an entity, which replaced hashing {@code KGTriple} objects: packing and deduplicating
+ * the claims of the huge fixture in a reused {@link LongHashSet}, and unpacking them into a {@link TripleBuffer} the
+ * way a writer batch is assembled.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TripleSetBenchmark {
+
+    private final LongHashSet set = new LongHashSet(1024);
+    private final TripleBuffer buffer = new TripleBuffer();
+    private long subject;
+    private long[] triples;
+    private int[] predicates;
+    private long[] objects;
+    private boolean[] qualifiers;
+
+    @Setup
+    public void setUp() throws IOException {
+        var entity = new SnapshotParser().parseSnapshot("Q1000003", Fixtures.entity("huge"));
+        subject = entity.subject();
+        triples = entity.triples();
+        // every triple twice, like claims repeated in several statements
+        predicates = new int[triples.length * 2];
+        objects = new long[triples.length * 2];
+        qualifiers = new boolean[triples.length * 2];
+        for (int i = 0; i < predicates.length; i++) {
+            long triple = triples[i % triples.length];
+            predicates[i] = PackedTriple.predicate(triple);
+            objects[i] = PackedTriple.object(triple);
+            qualifiers[i] = PackedTriple.isQualifier(triple);
+        }
+    }
+
+    @Benchmark
+    public long[] buildSet() {
+        set.clear();
+        for (int i = 0; i < predicates.length; i++) {
+            set.add(PackedTriple.pack(predicates[i], objects[i], qualifiers[i]));
+        }
+        return set.toArray();
+    }
+
+    @Benchmark
+    public TripleBuffer fillBuffer() {
+        buffer.clear();
+        buffer.addStatements(subject, triples);
+        return buffer;
+    }
+}
@@ -2,6 +2,7 @@ from __future__ import annotations
 
 import os
 import re
+import urllib.request
 from functools import lru_cache
 from pathlib import Path
 from functools import wraps
@@ -9,6 +10,7 @@ from functools import wraps
 from more_itertools import batched
 
 import psycopg2
+import zstandard
 from psycopg2 import pool
 from neo4j import GraphDatabase, Driver, Session
 from dotenv import load_dotenv
@@ -22,8 +24,16 @@ POSTGRES_USER = os.getenv("DB_USER")
 POSTGRES_PASS = os.getenv("DB_PASSWORD")
 DB_PORT = os.getenv("DB_PORT")
 MAX_CONNECTION_POOL = os.getenv("MAX_DB_CONNECTION_POOL")
+# e.g. http://localhost:9470, titles are looked up in Postgres when it is not set
+TITLE_RESOLVER_URL = os.getenv("TITLE_RESOLVER_URL")
+# e.g. http://localhost:9471, neighbors and edges are queried in Neo4j when it is not set
+GRAPH_ENGINE_URL = os.getenv("GRAPH_ENGINE_URL")
 
 NEO4J_URI = f"bolt://{os.getenv('NEO4J_HOST')}:7687"
+# true when the graph builder typed the relationships by their predicate (app.neo4j.typed-relationships)
+NEO4J_TYPED_RELATIONSHIPS = os.getenv("NEO4J_TYPED_RELATIONSHIPS", "false").lower() == "true"
+# the relationship r of a Wikidata statement and its predicate, every relationship but the summaries when typed
+STATEMENT = "r:!SUMMARY" if NEO4J_TYPED_RELATIONSHIPS else "r:HAS_TYPE"
 NEO4J_DB = "neo4j"
 NEO4J_USER = os.getenv("NEO4J_USER")
 NEO4J_PASSWORD = os.getenv("NEO4J_PASSWORD")
@@ -58,7 +68,32 @@ driver = GraphDatabase.driver(
 atexit.register(driver.close)
 
 
+def resolve_wikipedia_titles(wikipedia_titles: list[str]) -> dict[str, tuple[int, str, str]] | None:
+    '''
+    Resolve the titles, redirects included, with the title resolver at TITLE_RESOLVER_URL
+    :return: {wikipedia_title: (wikipedia_id, wikipedia_title, wikidata_id)} or None if the resolver is not available
+    '''
+    if not TITLE_RESOLVER_URL:
+        return None
+    request = urllib.request.Request(f"{TITLE_RESOLVER_URL}/resolve", data="\n".join(wikipedia_titles).encode("utf-8"),
+                                     method="POST")
+    try:
+        with urllib.request.urlopen(request, timeout=10) as response:
+            lines = response.read().decode("utf-8").splitlines()
+    except OSError as error:
+        print("Error while resolving titles, falling back to Postgres", error)
+        return None
+    records = {}
+    for line in lines:
+        title, wikipedia_id, wikidata_id = line.split("\t")
+        records[title] = (int(wikipedia_id), title, wikidata_id or None)
+    return records
+
+
 def bulk_fetch_wikipedia_titles(wikipedia_titles: list[str]) -> dict[str, tuple[str, str, str]]:
+    resolved = resolve_wikipedia_titles(wikipedia_titles)
+    if resolved is not None:
+        return resolved
     connection = None
     records = {}
     query = """SELECT wp.id, wp.title, m.wikidata_id
@@ -168,17 +203,40 @@ def fetch_wikidata_metadata(wikidata_id) -> tuple[str, str] | None:
     return record
 
 
+@lru_cache(maxsize=16)
+def fetch_content_decompressor(dictionary_id) -> zstandard.ZstdDecompressor:
+    if dictionary_id is None:
+        return zstandard.ZstdDecompressor()
+    connection = None
+    try:
+        connection = postgresql_pool.getconn()
+        with connection.cursor() as cursor:
+            cursor.execute("SELECT dictionary from content_dictionaries where id = %s", (dictionary_id,))
+            dictionary = zstandard.ZstdCompressionDict(bytes(cursor.fetchone()[0]))
+            return zstandard.ZstdDecompressor(dict_data=dictionary)
+    finally:
+        if connection:
+            postgresql_pool.putconn(connection)
+
+
 def fetch_wikipedia_page_content(wikipedia_title) -> str:
+    '''
+    Fetch the content of the page, decompressing it if it is stored in content_zstd
+    '''
     connection = None
     record = None
     try:
         connection = postgresql_pool.getconn()
         if connection:
             with connection.cursor() as cursor:
-                cursor.execute("SELECT content from wikipedia_pages where title = %s", (wikipedia_title,))
+                cursor.execute("SELECT content, content_zstd, dictionary_id from wikipedia_pages where title = %s",
+                               (wikipedia_title,))
                 result = cursor.fetchone()
                 if result:
                     record = result[0]
+                    if record is None and result[1] is not None:
+                        compressed = bytes(result[1])
+                        record = fetch_content_decompressor(result[2]).decompress(compressed).decode("utf-8")
     except (Exception, psycopg2.DatabaseError) as error:
         print("Error while fetching page content", error)
     finally:
@@ -187,6 +245,61 @@ def fetch_wikipedia_page_content(wikipedia_title) -> str:
     return record
 
 
+def fetch_wikipedia_page_lead(wikipedia_title) -> tuple[str, list[str]] | None:
+    '''
+    Fetch the lead section and its link targets which are extracted while loading the page
+    :return: (lead, link targets) or None if the lead of the page is not stored
+    '''
+    connection = None
+    record = None
+    try:
+        connection = postgresql_pool.getconn()
+        if connection:
+            with connection.cursor() as cursor:
+                cursor.execute("""SELECT l.lead, l.links
+                                  FROM wikipedia_page_leads l
+                                  JOIN wikipedia_pages wp ON l.page_id = wp.id WHERE wp.title = %s""",
+                               (wikipedia_title,))
+                result = cursor.fetchone()
+                if result:
+                    record = (result[0], result[1])
+    except (Exception, psycopg2.DatabaseError) as error:
+        print("Error while fetching page lead", error)
+    finally:
+        if connection:
+            postgresql_pool.putconn(connection)
+    return record
+
+
+def fetch_summary_candidates(wikipedia_id) -> dict[str, list[tuple[str, str, str]]] | None:
+    '''
+    Fetch the edge candidates computed in bulk by the page extractor for the current revision of the page
+    :return: {from_entity_to_entity: [(from_entity, predicate, to_entity)]} or None if they are not computed
+    '''
+    connection = None
+    record = None
+    try:
+        connection = postgresql_pool.getconn()
+        if connection:
+            with connection.cursor() as cursor:
+                cursor.execute("""SELECT c.candidates
+                                  FROM summary_candidates c
+                                  JOIN wikipedia_pages wp ON c.page_id = wp.id
+                                  WHERE c.page_id = %s AND c.revision_id IS NOT DISTINCT FROM wp.revision_id""",
+                               (wikipedia_id,))
+                result = cursor.fetchone()
+                if result:
+                    record = {}
+                    for block in _parse_path_blocks(result[0]):
+                        record["_".join(sorted([block[0][0], block[0][2]]))] = block
+    except (Exception, psycopg2.DatabaseError) as error:
+        print("Error while fetching summary candidates", error)
+    finally:
+        if connection:
+            postgresql_pool.putconn(connection)
+    return record
+
+
 def fetch_unprocessed_wikipedia_pages() -> list[tuple[str, str, str]] | None:
     """
     Fetch unprocessed wikipedia pages
@@ -310,15 +423,92 @@ def manage_neo4j_session(f):
 
     return wrapped
 
+def post_graph_engine(endpoint: str, body: str, **parameters) -> str | None:
+    '''
+    Send a bulk query to the graph engine at GRAPH_ENGINE_URL
+    :return: the response body or None if the graph engine is not available
+    '''
+    if not GRAPH_ENGINE_URL:
+        return None
+    query = "&".join(f"{name.replace('_', '-')}={value}" for name, value in parameters.items() if value is not None)
+    request = urllib.request.Request(f"{GRAPH_ENGINE_URL}/{endpoint}" + (f"?{query}" if query else ""),
+                                     data=body.encode("utf-8"), method="POST")
+    try:
+        with urllib.request.urlopen(request, timeout=300) as response:
+            return response.read().decode("utf-8")
+    except OSError as error:
+        print("Error while querying the graph engine, falling back to Neo4j", error)
+        return None
+
+
+def query_graph_engine(endpoint: str, lines: list[str]) -> list[tuple[str, str, str]] | None:
+    '''
+    Answer a bulk query with the graph engine at GRAPH_ENGINE_URL
+    :return: [(subject, predicate, object)] or None if the graph engine is not available
+    '''
+    body = post_graph_engine(endpoint, "\n".join(lines))
+    if body is None:
+        return None
+    return [tuple(line.split("\t")) for line in body.splitlines()]
+
+
+def _parse_path_blocks(body: str) -> list[list[tuple[str, ...]]]:
+    # every path is a block of lines which ends with an empty line
+    blocks, block = [], []
+    for line in body.split("\n")[:-1]:
+        if line:
+            block.append(tuple(line.split("\t")))
+        else:
+            blocks.append(block)
+            block = []
+    return blocks
+
+
+def find_shortest_paths(pairs: list[tuple[str, str]], max_depth: int | None = None,
+                        max_visited: int | None = None) -> list[list[tuple[str, str, str]]] | None:
+    '''
+    Find a shortest undirected path of every pair with the bidirectional BFS of the graph engine
+    :return: the legs (start_node, predicate, end_node) of every pair in the order of the pairs, [] when a pair has
+    no path, or None if the graph engine is not available
+    '''
+    body = post_graph_engine("path", "\n".join(f"{a}\t{b}" for a, b in pairs), max_depth=max_depth,
+                             max_visited=max_visited)
+    return None if body is None else _parse_path_blocks(body)
+
+
+def statement_predicate(relationship: str) -> str:
+    return f"type({relationship})" if NEO4J_TYPED_RELATIONSHIPS else f"{relationship}.type"
+
+
+def served_by_graph_engine(endpoint: str):
+    '''
+    Answer the query with the graph engine when it is available and with Neo4j otherwise, the first argument is a
+    wikidata id or a list of (subject, object) pairs
+    '''
+
+    def decorator(f):
+        @wraps(f)
+        def wrapped(query, *args, **kwargs):
+            lines = [query] if isinstance(query, str) else [f"{s}\t{t}" for s, t in query]
+            edges = query_graph_engine(endpoint, lines)
+            if edges is not None:
+                return edges
+            return f(query, *args, **kwargs)
+
+        return wrapped
+
+    return decorator
+
+
 @lru_cache(maxsize=1024)
 @manage_neo4j_session
 def fetch_relations(subject_qid: str, object_qid: str, session) -> list[tuple[str, str, str]]:
     candidates = set()
-    query = """
+    query = f"""
             MATCH (
-                s:WikiEntity {entityName: $subject_qid})-[r:HAS_TYPE]->(t:WikiEntity {entityName: $target_qid}
+                s:WikiEntity {{entityName: $subject_qid}})-[{STATEMENT}]->(t:WikiEntity {{entityName: $target_qid}}
             )
-            RETURN s.entityName as s, r.type as p, t.entityName as t
+            RETURN s.entityName as s, {statement_predicate("r")} as p, t.entityName as t
     """
 
     result = session.run(query, subject_qid=object_qid, target_qid=subject_qid)
@@ -331,11 +521,12 @@ def fetch_relations(subject_qid: str, object_qid: str, session) -> list[tuple[st
     return list(map(lambda x: (x['s'], x['p'], x['t']), candidates))
 
 
+@served_by_graph_engine("edges")
 @manage_neo4j_session
 def fetch_edges_by_candidates(edge_candidates: list[tuple[str, str]], session) -> list[tuple[str, str, str]]:
-    query = """UNWIND $candidates AS candidate
-    MATCH (s:WikiEntity {entityName: candidate[0]})-[r:HAS_TYPE]->(t:WikiEntity {entityName: candidate[1]})
-    RETURN s.entityName as s, r.type as p, t.entityName as t"""
+    query = f"""UNWIND $candidates AS candidate
+    MATCH (s:WikiEntity {{entityName: candidate[0]}})-[{STATEMENT}]->(t:WikiEntity {{entityName: candidate[1]}})
+    RETURN s.entityName as s, {statement_predicate("r")} as p, t.entityName as t"""
     result = []
     records = session.run(query, candidates=edge_candidates)
     for record in records:
@@ -343,11 +534,12 @@ def fetch_edges_by_candidates(edge_candidates: list[tuple[str, str]], session) -
     return result
 
 
+@served_by_graph_engine("neighbors")
 @manage_neo4j_session
 def fetch_first_neighbors(wikidata_id: str, session):
-    query = """
-    MATCH (s:WikiEntity {entityName: $wikidata_id})-[r:HAS_TYPE]-(t:WikiEntity)
-    RETURN STARTNODE(r).entityName AS s, r.type as p, ENDNODE(r).entityName as t
+    query = f"""
+    MATCH (s:WikiEntity {{entityName: $wikidata_id}})-[{STATEMENT}]-(t:WikiEntity)
+    RETURN STARTNODE(r).entityName AS s, {statement_predicate("r")} as p, ENDNODE(r).entityName as t
     """
     result = []
     records = session.run(query, wikidata_id=wikidata_id)
@@ -356,11 +548,13 @@ def fetch_first_neighbors(wikidata_id: str, session):
     return result
 
 
+# returns the edges starting at the entity, as the Cypher query below does
+@served_by_graph_engine("out")
 @manage_neo4j_session
 def fetch_in_edges(wikidata_id: str, session) -> list[tuple[str, str, str]]:
-    query = """
-        MATCH (s:WikiEntity {entityName: $wikidata_id})-[r:HAS_TYPE]->(t:WikiEntity)
-        RETURN s.entityName AS s, r.type as p,t.entityName as t
+    query = f"""
+        MATCH (s:WikiEntity {{entityName: $wikidata_id}})-[{STATEMENT}]->(t:WikiEntity)
+        RETURN s.entityName AS s, {statement_predicate("r")} as p,t.entityName as t
         """
     result = []
     records = session.run(query, wikidata_id=wikidata_id)
@@ -369,11 +563,12 @@ def fetch_in_edges(wikidata_id: str, session) -> list[tuple[str, str, str]]:
     return result
 
 
+@served_by_graph_engine("in")
 @manage_neo4j_session
 def fetch_out_edges(wikidata_id: str, session) -> list[tuple[str, str, str]]:
-    query = """
-            MATCH (s:WikiEntity)-[r:HAS_TYPE]->(t:WikiEntity {entityName: $wikidata_id})
-            RETURN s.entityName AS s, r.type as p,t.entityName as t
+    query = f"""
+            MATCH (s:WikiEntity)-[{STATEMENT}]->(t:WikiEntity {{entityName: $wikidata_id}})
+            RETURN s.entityName AS s, {statement_predicate("r")} as p,t.entityName as t
             """
     result = []
     records = session.run(query, wikidata_id=wikidata_id)
@@ -382,6 +577,23 @@ def fetch_out_edges(wikidata_id: str, session) -> list[tuple[str, str, str]]:
     return result
 
 
+@manage_neo4j_session
+def fetch_out_edges_by_predicate(wikidata_id: str, predicate: str, session) -> list[tuple[str, str, str]]:
+    if re.fullmatch(r"P\d+", predicate) is None:
+        raise ValueError(f"{predicate} is not a Wikidata property id")
+    # a typed relationship is found by its type, a generic one by the index on its type property
+    relationship = f"r:{predicate}" if NEO4J_TYPED_RELATIONSHIPS else "r:HAS_TYPE {type: $predicate}"
+    query = f"""
+        MATCH (s:WikiEntity {{entityName: $wikidata_id}})-[{relationship}]->(t:WikiEntity)
+        RETURN s.entityName AS s, {statement_predicate("r")} as p, t.entityName as t
+        """
+    result = []
+    records = session.run(query, wikidata_id=wikidata_id, predicate=predicate)
+    for record in records:
+        result.append((record['s'], record['p'], record['t']))
+    return result
+
+
 @manage_neo4j_session
 def fetch_summaries(wikidata_id, session) -> list[tuple[str, str, str]] | None:
     # fetch the summary edges that has wikidata_id marked as summary_for
@@ -410,8 +622,31 @@ def add_summary_edge(root_wikidata_id, from_entity, predicate, to_entity, sessio
     return result.single()
 
 
+def is_engine_component(component_label: str) -> bool:
+    # the graph engine names its components by number, Neo4j labels start with Candidates_
+    return component_label.isdigit()
+
+
+def fetch_component_memberships(wikidata_ids: list[str]) -> dict[str, list[str]] | None:
+    '''
+    :return: {wikidata_id: [component_label]} of the graph engine components or None if the graph engine is not available
+    '''
+    body = post_graph_engine("components/of", "\n".join(wikidata_ids))
+    if body is None:
+        return None
+    memberships = {}
+    for line in body.splitlines():
+        wikidata_id, component_label = line.split("\t")
+        memberships.setdefault(wikidata_id, []).append(component_label)
+    return memberships
+
+
 @manage_neo4j_session
 def label_candidates(candidates, session) -> list[str]:
+    # the graph engine keeps the sets as bitmaps, without writing labels and indexes to Neo4j
+    body = post_graph_engine("components", "\n\n".join("\n".join(candidate) for candidate in candidates))
+    if body is not None:
+        return body.splitlines()
     label_base_name = f"Candidates_{dt.datetime.now().timestamp()}_"
     component_labels = []
     for i, candidate in enumerate(candidates):
@@ -431,6 +666,9 @@ def label_candidates(candidates, session) -> list[str]:
 
 @manage_neo4j_session
 def change_component_label_with(from_label, to_label, session):
+    if is_engine_component(from_label) and is_engine_component(to_label):
+        post_graph_engine("components/merge", f"{from_label}\t{to_label}")
+        return
     session.run(f"""
     MATCH(m:$from_label)
     SET m:$to_label
@@ -441,6 +679,10 @@ def change_component_label_with(from_label, to_label, session):
 
 @manage_neo4j_session
 def remove_component_labels(component_labels, session):
+    engine_labels = [label for label in component_labels if is_engine_component(label)]
+    if engine_labels:
+        post_graph_engine("components/remove", "\n".join(engine_labels))
+        component_labels = [label for label in component_labels if not is_engine_component(label)]
     for component_label in component_labels:
         session.run(f"""
         MATCH(m:$component_label)
@@ -469,17 +711,38 @@ def fetch_shortest_pairs_between_components_cypher(component_label_a, component_
     return top_pairs
 
 
+def fetch_shortest_pairs_between_components(component_a: list[str] | str, component_b: list[str] | str, max_depth=1,
+                                            k=10) -> list[tuple[str, str]]:
+    '''
+    Find up to k closest pairs between the entities of two components with a multi-source search of the graph engine
+    instead of a shortest path per pair of the cross product
+    :param component_a: the entities or the label of a graph engine component
+    '''
+    if isinstance(component_a, str) and isinstance(component_b, str):
+        body = post_graph_engine("components/closest", "", max_depth=max_depth, limit=k, **{"from": component_a},
+                                 to=component_b)
+    else:
+        body = post_graph_engine("closest", "\n".join(component_a) + "\n\n" + "\n".join(component_b),
+                                 max_depth=max_depth, limit=k)
+    if body is None:
+        raise RuntimeError("Closest pairs between components need the graph engine at GRAPH_ENGINE_URL")
+    return [block[0] for block in _parse_path_blocks(body)]
+
+
 @manage_neo4j_session
 def fetch_shortest_path(a, b, session) -> list[tuple[str, str, str]]:
-    record = session.run("""
-    MATCH (a:WikiEntity {entityName: $a}), (b:WikiEntity {entityName: $b}) , path = shortestPath((a)-[*]-(b))
+    paths = find_shortest_paths([(a, b)])
+    if paths is not None:
+        return paths[0]
+    record = session.run(f"""
+    MATCH (a:WikiEntity {{entityName: $a}}), (b:WikiEntity {{entityName: $b}}) , path = shortestPath((a)-[*]-(b))
     WHERE a <> b
     RETURN [i IN RANGE(0, LENGTH(path)-1) | 
-        {
+        {{
             start_node: STARTNODE(RELATIONSHIPS(path)[i]).entityName, 
-            predicate: RELATIONSHIPS(path)[i].type,
+            predicate: {statement_predicate("RELATIONSHIPS(path)[i]")},
             end_node: ENDNODE(RELATIONSHIPS(path)[i]).entityName
-        }
+        }}
     ] AS legs
     """, a=a, b=b)
     path = list()
@@ -490,15 +753,18 @@ def fetch_shortest_path(a, b, session) -> list[tuple[str, str, str]]:
 
 @manage_neo4j_session
 def fetch_shortest_paths(pairs: list[tuple[str, str]], session) -> list[list[tuple[str, str, str]]]:
-    query = """
+    paths = find_shortest_paths(pairs)
+    if paths is not None:
+        return [path for path in paths if path]
+    query = f"""
     UNWIND $pairs AS pair
-    MATCH (a:WikiEntity {entityName: pair.a}), (b:WikiEntity {entityName: pair.b}) , path = shortestPath((a)-[*]-(b))
+    MATCH (a:WikiEntity {{entityName: pair.a}}), (b:WikiEntity {{entityName: pair.b}}) , path = shortestPath((a)-[*]-(b))
     WHERE a <> b
     RETURN collect([
         i IN RANGE(0, LENGTH(path)-1) | 
         (
             start_node: STARTNODE(RELATIONSHIPS(path)[i]).entityName, 
-            predicate: RELATIONSHIPS(path)[i].type,
+            predicate: {statement_predicate("RELATIONSHIPS(path)[i]")},
             end_node: ENDNODE(RELATIONSHIPS(path)[i]).entityName
         )
     ]) AS legs
@@ -0,0 +1,77 @@
+package com.github.msorkhpar.textserver;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A memory-mapped file served by a long running process, reopened when the file is replaced, e.g. by a load writing a
+ * new version of it. The previous version is only closed once the new one is opened; when that fails it is kept.
+ */
+@Slf4j
+public class ReloadingFile<T extends Closeable> {
+
+    private final Path file;
+    private final Opener<T> opener;
+    private final Function<T, String> description;
+    private volatile T current;
+    private volatile FileTime loaded;
+
+    /**
+     * @param description what is served, logged on every reload
+     */
+    public ReloadingFile(Path file, Opener<T> opener, Function<T, String> description) throws IOException {
+        this.file = file;
+        this.opener = opener;
+        this.description = description;
+        this.loaded = Files.getLastModifiedTime(file);
+        this.current = opener.open(file);
+    }
+
+    public T get() {
+        return current;
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    /**
+     * Checks the modification time of the file every {@code seconds} on a daemon thread.
+     */
+    public void watch(String threadName, long seconds) {
+        ScheduledExecutorService reloads = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name(threadName).daemon().factory());
+        reloads.scheduleWithFixedDelay(this::reloadIfReplaced, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    void reloadIfReplaced() {
+        try {
+            FileTime modified = Files.getLastModifiedTime(file);
+            if (modified.equals(loaded)) {
+                return;
+            }
+            T previous = current;
+            current = opener.open(file);
+            loaded = modified;
+            // the mappings of the previous file stay valid for requests still running on it
+            previous.close();
+            logger.info("[{}] is reloaded, {}", file, description.apply(current));
+        } catch (IOException | RuntimeException e) {
+            logger.error("[{}] could not be reloaded, the previous one is kept", file, e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Opener<T> {
+        T open(Path file) throws IOException;
+    }
+}
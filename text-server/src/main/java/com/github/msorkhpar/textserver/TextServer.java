@@ -0,0 +1,92 @@
+package com.github.msorkhpar.textserver;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * The plain text endpoints of the JDK HTTP server: answering in UTF-8 text, reading posted queries and the
+ * parameters of the query string.
+ */
+public final class TextServer {
+
+    private static final String TEXT = "text/plain; charset=utf-8";
+
+    private TextServer() {
+    }
+
+    /**
+     * @return a server, not yet started, answering on the given executor
+     */
+    public static HttpServer create(InetSocketAddress address, Executor executor) throws IOException {
+        HttpServer server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        return server;
+    }
+
+    public static void respond(HttpExchange exchange, int status, String text) throws IOException {
+        respond(exchange, status, TEXT, text);
+    }
+
+    public static void respond(HttpExchange exchange, int status, String contentType, String text)
+            throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    /**
+     * @param usage the answer to any other method than POST
+     * @return the posted body, or null when the request is already answered with 405
+     */
+    public static String readPost(HttpExchange exchange, String usage) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, usage);
+            return null;
+        }
+        return new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Answers 400 instead of failing the exchange when a parameter is not a number.
+     */
+    public static HttpHandler withParameters(HttpHandler handler) {
+        return exchange -> {
+            try {
+                handler.handle(exchange);
+            } catch (NumberFormatException e) {
+                respond(exchange, 400, "Invalid number: " + e.getMessage() + "\n");
+            }
+        };
+    }
+
+    public static Map<String, String> parameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                int separator = parameter.indexOf('=');
+                if (separator > 0) {
+                    parameters.put(parameter.substring(0, separator), parameter.substring(separator + 1));
+                }
+            }
+        }
+        return parameters;
+    }
+
+    public static int intParameter(Map<String, String> parameters, String name, int defaultValue) {
+        String value = parameters.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.msorkhpar.textserver;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReloadingFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopensAReplacedFileAndClosesThePreviousOne() throws IOException {
+        Path file = write("first", Instant.parse("2024-01-01T00:00:00Z"));
+        ReloadingFile<Content> content = new ReloadingFile<>(file, Content::read, Content::text);
+        Content first = content.get();
+
+        content.reloadIfReplaced();
+        assertSame(first, content.get(), "an unchanged file is kept");
+
+        write("second", Instant.parse("2024-01-02T00:00:00Z"));
+        content.reloadIfReplaced();
+        assertEquals("second", content.get().text());
+        assertTrue(first.closed);
+    }
+
+    @Test
+    void keepsThePreviousVersionWhenTheReplacementCannotBeOpened() throws IOException {
+        Path file = write("first", Instant.parse("2024-01-01T00:00:00Z"));
+        ReloadingFile<Content> content = new ReloadingFile<>(file, path -> {
+            String text = Files.readString(path);
+            if (text.equals("broken")) {
+                throw new IOException("broken file");
+            }
+            return new Content(text);
+        }, Content::text);
+
+        write("broken", Instant.parse("2024-01-02T00:00:00Z"));
+        content.reloadIfReplaced();
+        assertEquals("first", content.get().text());
+        assertFalse(content.get().closed);
+    }
+
+    private Path write(String text, Instant modified) throws IOException {
+        Path file = directory.resolve("served.bin");
+        Files.writeString(file, text);
+        Files.setLastModifiedTime(file, FileTime.from(modified));
+        return file;
+    }
+
+    private static final class Content implements Closeable {
+
+        private final String text;
+        private boolean closed;
+
+        private Content(String text) {
+            this.text = text;
+        }
+
+        static Content read(Path file) throws IOException {
+            return new Content(Files.readString(file));
+        }
+
+        String text() {
+            return text;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.msorkhpar.textserver;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import static com.github.msorkhpar.textserver.TextServer.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextServerTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private HttpServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/echo", withParameters(exchange -> {
+            String body = readPost(exchange, "POST some text\n");
+            if (body == null) {
+                return;
+            }
+            Map<String, String> parameters = parameters(exchange);
+            respond(exchange, 200, body.repeat(intParameter(parameters, "times", 1)));
+        }));
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    void answersThePostedTextWithTheParameters() throws Exception {
+        HttpResponse<String> response = post("/echo?times=3&other", "ä\n");
+        assertEquals(200, response.statusCode());
+        assertEquals("ä\nä\nä\n", response.body());
+        assertEquals("text/plain; charset=utf-8", response.headers().firstValue("Content-Type").orElseThrow());
+    }
+
+    @Test
+    void answersOtherMethodsWithTheUsage() throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri("/echo")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(405, response.statusCode());
+        assertEquals("POST some text\n", response.body());
+    }
+
+    @Test
+    void answersInvalidNumbersWithBadRequest() throws Exception {
+        HttpResponse<String> response = post("/echo?times=many", "text");
+        assertEquals(400, response.statusCode());
+        assertTrue(response.body().startsWith("Invalid number: "), response.body());
+    }
+
+    private HttpResponse<String> post(String path, String body) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri(path)).POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+    }
+}
@@ -0,0 +1,185 @@
+package com.github.msorkhpar.titleresolver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.github.msorkhpar.titleresolver.TitleDictionaryFormat.*;
+
+/**
+ * Looks up Wikipedia titles in a file written by {@link TitleDictionaryWriter}. The file is memory-mapped in regions
+ * of {@code 1GB}, a lookup hashes the title, tests one bit per level until it finds the title's slot and compares the
+ * stored title, so unknown titles are never mistaken for known ones. Lookups are thread-safe.
+ */
+public class TitleDictionary implements Closeable {
+
+    private static final int REGION_BITS = 30;
+    private static final long REGION_MASK = (1L << REGION_BITS) - 1;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] regions;
+    private final int levels;
+    private final long keys;
+    private final long overflow;
+    private final long[] levelStarts = new long[MAX_LEVELS];
+    private final long[] levelSizes = new long[MAX_LEVELS];
+    private final long ranksStart;
+    private final long overflowStart;
+    private final long slotsStart;
+    private final long titlesStart;
+
+    public TitleDictionary(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE + LEVELS_SIZE)
+                    .order(ORDER);
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || header.getInt() != VERSION) {
+                throw new IOException("[" + file + "] is not a title dictionary of version [" + VERSION + "]");
+            }
+            levels = header.getInt();
+            keys = header.getLong();
+            long words = header.getLong();
+            overflow = header.getLong();
+            header.position(HEADER_SIZE);
+            for (int level = 0; level < MAX_LEVELS; level++) {
+                levelStarts[level] = header.getLong();
+                levelSizes[level] = header.getLong();
+            }
+            ranksStart = TitleDictionaryFormat.ranksStart(words);
+            overflowStart = TitleDictionaryFormat.overflowStart(words);
+            slotsStart = TitleDictionaryFormat.slotsStart(words, overflow);
+            titlesStart = TitleDictionaryFormat.titlesStart(words, overflow, keys);
+            long size = channel.size();
+            regions = new MappedByteBuffer[(int) ((size + REGION_MASK) >>> REGION_BITS)];
+            for (int i = 0; i < regions.length; i++) {
+                long start = (long) i << REGION_BITS;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_MASK + 1, size - start));
+                regions[i].order(ORDER);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public long size() {
+        return keys;
+    }
+
+    /**
+     * @return the entry of the title, or null when the dictionary does not know it
+     */
+    public TitleEntry find(String title) {
+        byte[] bytes = title.getBytes(StandardCharsets.UTF_8);
+        long hash = TitleHash.hash(bytes);
+        for (int level = 0; level < levels; level++) {
+            long bit = levelStarts[level] + TitleHash.position(hash, level, levelSizes[level]);
+            long word = bit >>> 6;
+            long bits = getLong(HEADER_SIZE + LEVELS_SIZE + word * Long.BYTES);
+            if ((bits & (1L << bit)) != 0) {
+                long slot = getInt(ranksStart + word * Integer.BYTES) + Long.bitCount(bits & ((1L << bit) - 1));
+                return entry(slot, title, bytes);
+            }
+        }
+        return findOverflow(hash, title, bytes);
+    }
+
+    /**
+     * @return the entries of the known titles, in the order of the given titles
+     */
+    public Map<String, TitleEntry> findAll(Collection<String> titles) {
+        Map<String, TitleEntry> entries = new LinkedHashMap<>();
+        for (String title : titles) {
+            TitleEntry entry = find(title);
+            if (entry != null) {
+                entries.put(title, entry);
+            }
+        }
+        return entries;
+    }
+
+    private TitleEntry findOverflow(long hash, String title, byte[] bytes) {
+        long low = 0;
+        long high = overflow - 1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            long candidate = getLong(overflowStart + middle * 16);
+            if (candidate < hash) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        for (long i = low; i < overflow && getLong(overflowStart + i * 16) == hash; i++) {
+            TitleEntry entry = entry(getLong(overflowStart + i * 16 + 8), title, bytes);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private TitleEntry entry(long slot, String title, byte[] bytes) {
+        long record = slotsStart + slot * SLOT_SIZE;
+        long titleOffset = titlesStart + getLong(record);
+        if (getInt(titleOffset) != bytes.length) {
+            return null;
+        }
+        byte[] stored = new byte[bytes.length];
+        get(titleOffset + Integer.BYTES, stored);
+        if (!Arrays.equals(stored, bytes)) {
+            return null;
+        }
+        return new TitleEntry(title, getLong(record + 8), getLong(record + 16));
+    }
+
+    // the sections before the titles are 8-byte aligned, so only titles can cross the end of a region
+
+    private long getLong(long position) {
+        return regions[(int) (position >>> REGION_BITS)].getLong((int) (position & REGION_MASK));
+    }
+
+    private int getInt(long position) {
+        MappedByteBuffer region = regions[(int) (position >>> REGION_BITS)];
+        int offset = (int) (position & REGION_MASK);
+        if (offset + Integer.BYTES <= region.limit()) {
+            return region.getInt(offset);
+        }
+        byte[] bytes = new byte[Integer.BYTES];
+        get(position, bytes);
+        return ByteBuffer.wrap(bytes).order(ORDER).getInt();
+    }
+
+    private void get(long position, byte[] destination) {
+        int copied = 0;
+        while (copied < destination.length) {
+            MappedByteBuffer region = regions[(int) ((position + copied) >>> REGION_BITS)];
+            int offset = (int) ((position + copied) & REGION_MASK);
+            int length = Math.min(destination.length - copied, region.limit() - offset);
+            region.get(offset, destination, copied, length);
+            copied += length;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
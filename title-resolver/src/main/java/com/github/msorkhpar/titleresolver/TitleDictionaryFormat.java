@@ -0,0 +1,54 @@
+package com.github.msorkhpar.titleresolver;
+
+import java.nio.ByteOrder;
+
+/**
+ * Layout of a title dictionary file, all numbers little-endian:
+ * <pre>
+ * header    magic "WKTITLES", int version, int levels, long keys, long words, long overflow, long titles length,
+ *           zero padding up to 64 bytes
+ * levels    MAX_LEVELS times: long first bit, long bits
+ * bits      long[words], the bits of every level one after the other
+ * ranks     int[words], the set bits before every word, zero padding up to a multiple of 8
+ * overflow  per key no level could place, sorted by hash: long hash, long slot
+ * slots     per key: long title offset, long page id, long item number (0 for none)
+ * titles    per key: int length + UTF-8
+ * </pre>
+ * The minimal perfect hash is the one of BBHash: a key is placed in the first level where no other remaining key has
+ * its position, and its slot is the rank of that bit among all bits.
+ */
+final class TitleDictionaryFormat {
+
+    static final byte[] MAGIC = {'W', 'K', 'T', 'I', 'T', 'L', 'E', 'S'};
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int MAX_LEVELS = 32;
+    static final int LEVELS_SIZE = MAX_LEVELS * 16;
+    static final int SLOT_SIZE = 24;
+    // bits per key of every level, a larger factor needs fewer levels and more space
+    static final double GAMMA = 2.0;
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private TitleDictionaryFormat() {
+    }
+
+    static long ranksStart(long words) {
+        return HEADER_SIZE + LEVELS_SIZE + words * Long.BYTES;
+    }
+
+    static long overflowStart(long words) {
+        return ranksStart(words) + align(words * Integer.BYTES);
+    }
+
+    static long slotsStart(long words, long overflow) {
+        return overflowStart(words) + overflow * 16;
+    }
+
+    static long titlesStart(long words, long overflow, long keys) {
+        return slotsStart(words, overflow) + keys * SLOT_SIZE;
+    }
+
+    static long align(long length) {
+        return (length + 7) & ~7L;
+    }
+}
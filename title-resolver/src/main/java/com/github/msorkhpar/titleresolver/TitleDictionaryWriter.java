@@ -0,0 +1,315 @@
+package com.github.msorkhpar.titleresolver;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static com.github.msorkhpar.titleresolver.TitleDictionaryFormat.*;
+
+/**
+ * Collects titles in memory and writes them as a {@link TitleDictionary}. The first entry of a title wins, so
+ * page titles should be added before redirect titles. The titles of all entries must fit in {@code 2GB}.
+ */
+@Slf4j
+public class TitleDictionaryWriter {
+
+    private byte[] titles = new byte[1 << 20];
+    private int titlesLength;
+    private long[] hashes = new long[1024];
+    private int[] titleOffsets = new int[1024];
+    private long[] pageIds = new long[1024];
+    private long[] items = new long[1024];
+    private int size;
+    // open addressing table of entry index + 1, finds titles which are added twice
+    private int[] table = new int[2048];
+
+    /**
+     * @return false if the title was added before, the entry is dropped then
+     */
+    public boolean add(String title, long pageId, long item) {
+        byte[] bytes = title.getBytes(StandardCharsets.UTF_8);
+        long hash = TitleHash.hash(bytes);
+        int mask = table.length - 1;
+        int slot = (int) hash & mask;
+        while (table[slot] != 0) {
+            int entry = table[slot] - 1;
+            if (hashes[entry] == hash && titleEquals(titles, titleOffsets[entry], bytes)) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == hashes.length) {
+            int capacity = size * 2;
+            hashes = Arrays.copyOf(hashes, capacity);
+            titleOffsets = Arrays.copyOf(titleOffsets, capacity);
+            pageIds = Arrays.copyOf(pageIds, capacity);
+            items = Arrays.copyOf(items, capacity);
+        }
+        hashes[size] = hash;
+        titleOffsets[size] = appendTitle(bytes);
+        pageIds[size] = pageId;
+        items[size] = item;
+        table[slot] = ++size;
+        if (size * 2 > table.length) {
+            rehash();
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Builds the perfect hash and writes the dictionary next to the file, then moves it to the file.
+     */
+    public void write(Path file) throws IOException {
+        long start = System.currentTimeMillis();
+        table = null;
+        long[] levelStarts = new long[MAX_LEVELS];
+        long[] levelSizes = new long[MAX_LEVELS];
+        long[][] levelBits = new long[MAX_LEVELS][];
+        long[] keys = Arrays.copyOf(hashes, size);
+        int remaining = size;
+        int levels = 0;
+        long bits = 0;
+        while (remaining > 0 && levels < MAX_LEVELS) {
+            long levelSize = Math.max(64, align64((long) Math.ceil(remaining * GAMMA)));
+            long[] seen = new long[(int) (levelSize >>> 6)];
+            long[] collided = new long[seen.length];
+            for (int i = 0; i < remaining; i++) {
+                long position = TitleHash.position(keys[i], levels, levelSize);
+                if (isSet(seen, position)) {
+                    set(collided, position);
+                } else {
+                    set(seen, position);
+                }
+            }
+            int next = 0;
+            for (int i = 0; i < remaining; i++) {
+                if (isSet(collided, TitleHash.position(keys[i], levels, levelSize))) {
+                    keys[next++] = keys[i];
+                }
+            }
+            for (int i = 0; i < seen.length; i++) {
+                seen[i] &= ~collided[i];
+            }
+            levelBits[levels] = seen;
+            levelStarts[levels] = bits;
+            levelSizes[levels] = levelSize;
+            bits += levelSize;
+            remaining = next;
+            levels++;
+        }
+        int words = (int) (bits >>> 6);
+        long[] allBits = new long[words];
+        for (int level = 0; level < levels; level++) {
+            System.arraycopy(levelBits[level], 0, allBits, (int) (levelStarts[level] >>> 6), levelBits[level].length);
+        }
+        int[] ranks = new int[words];
+        int placed = 0;
+        for (int i = 0; i < words; i++) {
+            ranks[i] = placed;
+            placed += Long.bitCount(allBits[i]);
+        }
+        // keys sharing all their positions, only possible for equal hashes, are looked up by hash instead
+        int[] slots = new int[size];
+        long[] overflow = new long[remaining * 2];
+        int overflowCount = 0;
+        for (int entry = 0; entry < size; entry++) {
+            int slot = -1;
+            for (int level = 0; level < levels && slot < 0; level++) {
+                long bit = levelStarts[level] + TitleHash.position(hashes[entry], level, levelSizes[level]);
+                int word = (int) (bit >>> 6);
+                if ((allBits[word] & (1L << bit)) != 0) {
+                    slot = ranks[word] + Long.bitCount(allBits[word] & ((1L << bit) - 1));
+                }
+            }
+            if (slot < 0) {
+                slot = placed + overflowCount;
+                overflow[overflowCount * 2] = hashes[entry];
+                overflow[overflowCount * 2 + 1] = slot;
+                overflowCount++;
+            }
+            slots[entry] = slot;
+        }
+        sortPairs(overflow, overflowCount);
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Output output = new Output(temporary)) {
+            output.bytes(MAGIC).putInt(VERSION).putInt(levels).putLong(size).putLong(words).putLong(overflowCount)
+                    .putLong(titlesLength).pad(HEADER_SIZE);
+            for (int level = 0; level < MAX_LEVELS; level++) {
+                output.putLong(levelStarts[level]).putLong(levelSizes[level]);
+            }
+            for (long word : allBits) {
+                output.putLong(word);
+            }
+            for (int rank : ranks) {
+                output.putInt(rank);
+            }
+            output.pad(overflowStart(words));
+            for (int i = 0; i < overflowCount * 2; i++) {
+                output.putLong(overflow[i]);
+            }
+            long[] records = new long[size * 3];
+            for (int entry = 0; entry < size; entry++) {
+                records[slots[entry] * 3] = titleOffsets[entry];
+                records[slots[entry] * 3 + 1] = pageIds[entry];
+                records[slots[entry] * 3 + 2] = items[entry];
+            }
+            for (long value : records) {
+                output.putLong(value);
+            }
+            output.bytes(titles, titlesLength);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Title dictionary [{}] is written in [{}ms]: [{}] titles, [{}] levels, [{}] bits per title",
+                file, System.currentTimeMillis() - start, size, levels, size == 0 ? 0 : bits / size);
+    }
+
+    private int appendTitle(byte[] bytes) {
+        int required = titlesLength + Integer.BYTES + bytes.length;
+        if (required < 0 || required > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Titles of a dictionary can not exceed 2GB");
+        }
+        if (required > titles.length) {
+            titles = Arrays.copyOf(titles, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, titles.length * 2L)));
+        }
+        int offset = titlesLength;
+        ByteBuffer.wrap(titles, offset, Integer.BYTES).order(ORDER).putInt(bytes.length);
+        System.arraycopy(bytes, 0, titles, offset + Integer.BYTES, bytes.length);
+        titlesLength = required;
+        return offset;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int slot = (int) hashes[entry] & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = entry + 1;
+        }
+    }
+
+    private static boolean titleEquals(byte[] titles, int offset, byte[] bytes) {
+        int length = ByteBuffer.wrap(titles, offset, Integer.BYTES).order(ORDER).getInt();
+        return length == bytes.length && Arrays.equals(titles, offset + Integer.BYTES,
+                offset + Integer.BYTES + length, bytes, 0, bytes.length);
+    }
+
+    private static long align64(long bits) {
+        return (bits + 63) & ~63L;
+    }
+
+    private static boolean isSet(long[] words, long bit) {
+        return (words[(int) (bit >>> 6)] & (1L << bit)) != 0;
+    }
+
+    private static void set(long[] words, long bit) {
+        words[(int) (bit >>> 6)] |= 1L << bit;
+    }
+
+    /**
+     * Sorts (hash, slot) pairs by hash; there are only a few of them.
+     */
+    private static void sortPairs(long[] pairs, int count) {
+        for (int i = 1; i < count; i++) {
+            long hash = pairs[i * 2];
+            long slot = pairs[i * 2 + 1];
+            int j = i - 1;
+            while (j >= 0 && pairs[j * 2] > hash) {
+                pairs[(j + 1) * 2] = pairs[j * 2];
+                pairs[(j + 1) * 2 + 1] = pairs[j * 2 + 1];
+                j--;
+            }
+            pairs[(j + 1) * 2] = hash;
+            pairs[(j + 1) * 2 + 1] = slot;
+        }
+    }
+
+    private static final class Output implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ORDER);
+        private long position;
+
+        private Output(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        private Output putLong(long value) throws IOException {
+            ensure(Long.BYTES).putLong(value);
+            position += Long.BYTES;
+            return this;
+        }
+
+        private Output putInt(int value) throws IOException {
+            ensure(Integer.BYTES).putInt(value);
+            position += Integer.BYTES;
+            return this;
+        }
+
+        private Output bytes(byte[] bytes) throws IOException {
+            return bytes(bytes, bytes.length);
+        }
+
+        private Output bytes(byte[] bytes, int length) throws IOException {
+            int offset = 0;
+            while (offset < length) {
+                int chunk = Math.min(length - offset, buffer.capacity());
+                ensure(chunk).put(bytes, offset, chunk);
+                offset += chunk;
+            }
+            position += length;
+            return this;
+        }
+
+        private Output pad(long to) throws IOException {
+            while (position < to) {
+                ensure(1).put((byte) 0);
+                position++;
+            }
+            return this;
+        }
+
+        private ByteBuffer ensure(int length) throws IOException {
+            if (buffer.remaining() < length) {
+                flush();
+            }
+            return buffer;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
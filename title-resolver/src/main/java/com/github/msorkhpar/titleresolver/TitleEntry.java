@@ -0,0 +1,16 @@
+package com.github.msorkhpar.titleresolver;
+
+/**
+ * @param title  the title as it was looked up
+ * @param pageId id of the page, the target page for a redirect title
+ * @param item   number of the page's Wikidata item, 0 when it has no mapping
+ */
+public record TitleEntry(String title, long pageId, long item) {
+
+    /**
+     * @return the Wikidata id such as {@code Q42}, or null when the page has no mapping
+     */
+    public String wikidataId() {
+        return item == 0 ? null : "Q" + item;
+    }
+}
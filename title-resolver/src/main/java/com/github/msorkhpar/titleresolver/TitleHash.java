@@ -0,0 +1,56 @@
+package com.github.msorkhpar.titleresolver;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * A 64-bit hash of the UTF-8 bytes of a title, in the style of MurmurHash3, and the positions derived from it for
+ * every level of the perfect hash.
+ */
+final class TitleHash {
+
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final long GOLDEN = 0x9e3779b97f4a7c15L;
+
+    private TitleHash() {
+    }
+
+    static long hash(byte[] bytes) {
+        long h = bytes.length * GOLDEN;
+        int i = 0;
+        for (; i + 8 <= bytes.length; i += 8) {
+            h ^= mix((long) LONG.get(bytes, i));
+            h = Long.rotateLeft(h, 27) * 5 + 0x52dce729;
+        }
+        long tail = 0;
+        for (int shift = 0; i < bytes.length; i++, shift += 8) {
+            tail |= (bytes[i] & 0xffL) << shift;
+        }
+        h ^= mix(tail);
+        return fmix(h);
+    }
+
+    /**
+     * @return the position of the hash in a level of {@code size} bits
+     */
+    static long position(long hash, int level, long size) {
+        return Math.unsignedMultiplyHigh(fmix(hash + (level + 1) * GOLDEN), size);
+    }
+
+    private static long mix(long k) {
+        k *= C1;
+        k = Long.rotateLeft(k, 31);
+        return k * C2;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        return k ^ (k >>> 33);
+    }
+}
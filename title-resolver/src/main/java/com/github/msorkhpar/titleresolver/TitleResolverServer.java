@@ -0,0 +1,78 @@
+package com.github.msorkhpar.titleresolver;
+
+import com.github.msorkhpar.textserver.ReloadingFile;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static com.github.msorkhpar.textserver.TextServer.create;
+import static com.github.msorkhpar.textserver.TextServer.readPost;
+import static com.github.msorkhpar.textserver.TextServer.respond;
+
+/**
+ * Serves a title dictionary on localhost:
+ * <pre>
+ * POST /resolve   one title per line, answers one {@code title \t page id \t Wikidata id} line per known title, the
+ *                 Wikidata id is empty for pages without a mapping
+ * GET  /health    the number of titles
+ * </pre>
+ * The dictionary is reopened when its file is replaced, e.g. by the page extractor at the end of a load.
+ * <p>
+ * Usage: {@code java -jar title-resolver-server.jar <dictionary file> [port, 9470]}
+ */
+@Slf4j
+public class TitleResolverServer {
+
+    private static final int DEFAULT_PORT = 9470;
+    private static final long RELOAD_CHECK_SECONDS = 30;
+
+    private final ReloadingFile<TitleDictionary> dictionary;
+
+    TitleResolverServer(Path file) throws IOException {
+        this.dictionary = new ReloadingFile<>(file, TitleDictionary::new, current -> "[" + current.size() + "] titles");
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java -jar title-resolver-server.jar <dictionary file> [port]");
+            System.exit(1);
+        }
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        new TitleResolverServer(Path.of(args[0])).start(port);
+    }
+
+    void start(int port) throws IOException {
+        HttpServer server = create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/resolve", this::resolve);
+        server.createContext("/health", exchange -> respond(exchange, 200, dictionary.get().size() + " titles\n"));
+        server.start();
+        dictionary.watch("dictionary-reload", RELOAD_CHECK_SECONDS);
+        logger.info("[{}] titles of [{}] are served on [http://localhost:{}/resolve]",
+                dictionary.get().size(), dictionary.file(), port);
+    }
+
+    private void resolve(HttpExchange exchange) throws IOException {
+        String body = readPost(exchange, "POST one title per line\n");
+        if (body == null) {
+            return;
+        }
+        List<String> titles = body.lines()
+                .filter(title -> !title.isEmpty())
+                .toList();
+        StringBuilder answer = new StringBuilder(titles.size() * 32);
+        for (TitleEntry entry : dictionary.get().findAll(titles).values()) {
+            String wikidataId = entry.wikidataId();
+            answer.append(entry.title()).append('\t').append(entry.pageId()).append('\t')
+                    .append(wikidataId == null ? "" : wikidataId).append('\n');
+        }
+        respond(exchange, 200, answer.toString());
+    }
+}
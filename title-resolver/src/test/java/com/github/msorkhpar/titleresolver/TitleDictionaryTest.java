@@ -0,0 +1,97 @@
+package com.github.msorkhpar.titleresolver;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TitleDictionaryTest {
+
+    private static final int TITLES = 300_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void everyTitleFindsItsOwnEntry() throws IOException {
+        TitleDictionaryWriter writer = new TitleDictionaryWriter();
+        for (int i = 0; i < TITLES; i++) {
+            assertTrue(writer.add(title(i), i + 1, i % 7 == 0 ? 0 : 1_000_000L + i));
+        }
+        Path file = directory.resolve("titles.dict");
+        writer.write(file);
+
+        try (TitleDictionary dictionary = new TitleDictionary(file)) {
+            assertEquals(TITLES, dictionary.size());
+            // two titles sharing a slot would answer one of them with null or the other's ids
+            for (int i = 0; i < TITLES; i++) {
+                TitleEntry entry = dictionary.find(title(i));
+                assertNotNull(entry, title(i));
+                assertEquals(i + 1, entry.pageId(), title(i));
+                assertEquals(i % 7 == 0 ? 0 : 1_000_000L + i, entry.item(), title(i));
+            }
+        }
+    }
+
+    @Test
+    void unknownTitlesAreNotFound() throws IOException {
+        TitleDictionaryWriter writer = new TitleDictionaryWriter();
+        for (int i = 0; i < 10_000; i++) {
+            writer.add(title(i), i + 1, i + 1);
+        }
+        Path file = directory.resolve("titles.dict");
+        writer.write(file);
+
+        try (TitleDictionary dictionary = new TitleDictionary(file)) {
+            for (int i = 10_000; i < 100_000; i++) {
+                assertNull(dictionary.find(title(i)), title(i));
+            }
+            assertNull(dictionary.find(""));
+            assertNull(dictionary.find(title(1) + " "));
+        }
+    }
+
+    @Test
+    void theFirstEntryOfATitleWins() throws IOException {
+        TitleDictionaryWriter writer = new TitleDictionaryWriter();
+        assertTrue(writer.add("Douglas Adams", 8091, 42));
+        assertTrue(writer.add("Zürich", 34365, 72));
+        assertFalse(writer.add("Douglas Adams", 1, 1));
+        assertEquals(2, writer.size());
+        Path file = directory.resolve("titles.dict");
+        writer.write(file);
+
+        try (TitleDictionary dictionary = new TitleDictionary(file)) {
+            List<String> titles = new ArrayList<>(List.of("Zürich", "Unknown", "Douglas Adams"));
+            Map<String, TitleEntry> entries = dictionary.findAll(titles);
+            assertEquals(List.of("Zürich", "Douglas Adams"), List.copyOf(entries.keySet()));
+            assertEquals(new TitleEntry("Douglas Adams", 8091, 42), entries.get("Douglas Adams"));
+            assertEquals("Q72", entries.get("Zürich").wikidataId());
+        }
+    }
+
+    @Test
+    void anEmptyDictionaryFindsNothing() throws IOException {
+        Path file = directory.resolve("titles.dict");
+        new TitleDictionaryWriter().write(file);
+
+        try (TitleDictionary dictionary = new TitleDictionary(file)) {
+            assertEquals(0, dictionary.size());
+            assertNull(dictionary.find("Douglas Adams"));
+        }
+    }
+
+    private static String title(int i) {
+        return switch (i % 3) {
+            case 0 -> "Page " + i;
+            case 1 -> "Seite_" + Integer.toHexString(i) + " (Begriffsklärung)";
+            default -> "页面 " + i;
+        };
+    }
+}
@@ -0,0 +1,141 @@
+package com.github.msorkhpar.graphengine;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.msorkhpar.graphengine.GraphEngineServer.*;
+import static com.github.msorkhpar.textserver.TextServer.*;
+
+/**
+ * The candidate set endpoints of the {@link GraphEngineServer}, backed by a {@link ComponentRegistry}:
+ * <pre>
+ * POST /components          sets of entities one per line, separated by empty lines, answers the id of every set
+ * POST /components/merge    one {@code from \t to} pair of ids per line, moves the members of the first component to
+ *                           the second one and answers the id of the merged component, -1 when one does not exist
+ * POST /components/remove   one id per line, drops the components
+ * POST /components/members  the members of the {@code component} parameter among the given entities, all of them
+ *                           when no entity is given
+ * POST /components/of       one entity per line, a {@code entity \t id} line per component of every entity
+ * POST /components/closest  the closest pairs between the {@code from} and {@code to} components, answered like
+ *                           {@code /closest}
+ * </pre>
+ * Components are only kept in memory, they are the candidate sets of the running summarization.
+ */
+class ComponentEndpoints implements HttpHandler {
+
+    private final ComponentRegistry components;
+    private final GraphEngineServer server;
+
+    ComponentEndpoints(ComponentRegistry components, GraphEngineServer server) {
+        this.components = components;
+        this.server = server;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        switch (path) {
+            case "/components" -> create(exchange);
+            case "/components/merge" -> merge(exchange);
+            case "/components/remove" -> remove(exchange);
+            case "/components/members" -> members(exchange);
+            case "/components/of" -> componentsOf(exchange);
+            case "/components/closest" -> closest(exchange);
+            default -> respond(exchange, 404, "Unknown component endpoint [" + path + "]\n");
+        }
+    }
+
+    private void create(HttpExchange exchange) throws IOException {
+        String posted = readPost(exchange, "POST sets of entities separated by empty lines\n");
+        if (posted == null) {
+            return;
+        }
+        String body = posted.strip();
+        StringBuilder ids = new StringBuilder();
+        if (!body.isEmpty()) {
+            for (String set : body.split("\\R\\s*\\R")) {
+                ids.append(components.create(entities(set))).append('\n');
+            }
+        }
+        respond(exchange, 200, ids.toString());
+    }
+
+    private void merge(HttpExchange exchange) throws IOException {
+        List<String> lines = readLines(exchange);
+        if (lines == null) {
+            return;
+        }
+        StringBuilder ids = new StringBuilder();
+        for (String line : lines) {
+            String[] pair = line.split("\t");
+            if (pair.length == 2) {
+                ids.append(components.merge(Integer.parseInt(pair[0].strip()), Integer.parseInt(pair[1].strip())))
+                        .append('\n');
+            }
+        }
+        respond(exchange, 200, ids.toString());
+    }
+
+    private void remove(HttpExchange exchange) throws IOException {
+        List<String> lines = readLines(exchange);
+        if (lines == null) {
+            return;
+        }
+        for (String line : lines) {
+            components.remove(Integer.parseInt(line));
+        }
+        respond(exchange, 200, "");
+    }
+
+    private void members(HttpExchange exchange) throws IOException {
+        List<String> lines = readLines(exchange);
+        if (lines == null) {
+            return;
+        }
+        RoaringBitmap members = components.members(intParameter(parameters(exchange), "component", 0));
+        StringBuilder body = new StringBuilder();
+        if (lines.isEmpty()) {
+            for (int member : members) {
+                body.append('Q').append(member).append('\n');
+            }
+        } else {
+            for (String line : lines) {
+                long entity = parseEntity(line);
+                if (entity >= 0 && entity <= Integer.MAX_VALUE && members.contains((int) entity)) {
+                    body.append('Q').append(entity).append('\n');
+                }
+            }
+        }
+        respond(exchange, 200, body.toString());
+    }
+
+    private void componentsOf(HttpExchange exchange) throws IOException {
+        List<String> lines = readLines(exchange);
+        if (lines == null) {
+            return;
+        }
+        StringBuilder body = new StringBuilder();
+        for (String line : lines) {
+            long entity = parseEntity(line);
+            for (int id : components.componentsOf(entity)) {
+                body.append('Q').append(entity).append('\t').append(id).append('\n');
+            }
+        }
+        respond(exchange, 200, body.toString());
+    }
+
+    private void closest(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = parameters(exchange);
+        long[] sources = ComponentRegistry.entities(components.members(intParameter(parameters, "from", 0)));
+        long[] targets = ComponentRegistry.entities(components.members(intParameter(parameters, "to", 0)));
+        List<EntityPath> paths = server.pathFinder(parameters).closestPairs(sources, targets,
+                intParameter(parameters, "max-depth", DEFAULT_MAX_DEPTH),
+                intParameter(parameters, "limit", DEFAULT_LIMIT));
+        respond(exchange, 200, pairs(paths));
+    }
+}
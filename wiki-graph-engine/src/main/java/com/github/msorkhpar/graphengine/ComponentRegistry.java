@@ -0,0 +1,122 @@
+package com.github.msorkhpar.graphengine;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Candidate sets of entities as compressed bitmaps of their item numbers, instead of a label and an index per set in
+ * Neo4j. Every set gets an id, merged sets are the components of a {@link UnionFind} and any id of a component stands
+ * for all of it. A published bitmap is never changed, a merge publishes a new one, so queries need no locks; changes
+ * are serialized.
+ */
+public class ComponentRegistry {
+
+    private final UnionFind components = new UnionFind();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    // the members of every component by its root id, removed components have none
+    private final Map<Integer, RoaringBitmap> members = new ConcurrentHashMap<>();
+
+    /**
+     * @return the id of the new component
+     */
+    public int create(long[] entities) {
+        RoaringBitmap set = new RoaringBitmap();
+        for (long entity : entities) {
+            if (entity < 0 || entity > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Q" + entity + " can not be a member of a component");
+            }
+            set.add((int) entity);
+        }
+        set.runOptimize();
+        synchronized (this) {
+            // queries take ids below nextId as added to the union-find, so the id is published last
+            int id = nextId.get();
+            components.add(id);
+            members.put(id, set);
+            nextId.set(id + 1);
+            return id;
+        }
+    }
+
+    /**
+     * Moves the members of the first component to the second one, both ids stand for the merged component afterwards.
+     *
+     * @return the id of the merged component, -1 when one of them does not exist
+     */
+    public synchronized int merge(int from, int to) {
+        if (!exists(from) || !exists(to)) {
+            return -1;
+        }
+        int fromRoot = components.find(from);
+        int toRoot = components.find(to);
+        if (fromRoot == toRoot) {
+            return toRoot;
+        }
+        RoaringBitmap merged = RoaringBitmap.or(members.get(fromRoot), members.get(toRoot));
+        int root = components.union(fromRoot, toRoot);
+        members.put(root, merged);
+        members.remove(root == fromRoot ? toRoot : fromRoot);
+        return root;
+    }
+
+    /**
+     * Drops the component of the id, the ids of the component do not exist afterwards.
+     */
+    public synchronized void remove(int id) {
+        if (exists(id)) {
+            members.remove(components.find(id));
+        }
+    }
+
+    public boolean exists(int id) {
+        return id > 0 && id < nextId.get() && members.containsKey(components.find(id));
+    }
+
+    /**
+     * @return the members of the component of the id, empty when it does not exist; the bitmap must not be changed
+     */
+    public RoaringBitmap members(int id) {
+        if (id <= 0 || id >= nextId.get()) {
+            return new RoaringBitmap();
+        }
+        return members.getOrDefault(components.find(id), new RoaringBitmap());
+    }
+
+    public boolean contains(int id, long entity) {
+        return entity >= 0 && entity <= Integer.MAX_VALUE && members(id).contains((int) entity);
+    }
+
+    /**
+     * @return the ids of the components the entity is a member of
+     */
+    public List<Integer> componentsOf(long entity) {
+        List<Integer> result = new ArrayList<>(1);
+        if (entity < 0 || entity > Integer.MAX_VALUE) {
+            return result;
+        }
+        for (Map.Entry<Integer, RoaringBitmap> component : members.entrySet()) {
+            if (component.getValue().contains((int) entity)) {
+                result.add(component.getKey());
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    public static long[] entities(RoaringBitmap members) {
+        long[] entities = new long[members.getCardinality()];
+        int i = 0;
+        for (int member : members) {
+            entities[i++] = member;
+        }
+        return entities;
+    }
+}
@@ -0,0 +1,225 @@
+package com.github.msorkhpar.graphengine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.msorkhpar.graphengine.CsrGraphFormat.*;
+
+/**
+ * Answers neighbor and edge queries from a file written by {@link CsrGraphWriter}. An entity is turned into its node
+ * index with the rank of its bit in the entity bitmap, its edges are then one range of the memory-mapped edge arrays.
+ * Queries are thread-safe.
+ */
+public class CsrGraph implements Closeable {
+
+    private final Path file;
+    private final MappedFile mapped;
+    private final CsrGraphFormat format;
+    private final long nodes;
+    private final long edges;
+    private final long words;
+    private final int[] predicates;
+
+    public CsrGraph(Path file) throws IOException {
+        this.file = file;
+        this.mapped = MappedFile.read(file);
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            mapped.get(0, magic);
+            if (!Arrays.equals(magic, MAGIC) || mapped.getInt(8) != VERSION) {
+                throw new IOException("[" + file + "] is not a CSR graph of version [" + VERSION + "]");
+            }
+            predicates = new int[mapped.getInt(12)];
+            nodes = mapped.getLong(16);
+            edges = mapped.getLong(24);
+            words = mapped.getLong(32);
+            format = new CsrGraphFormat(predicates.length, nodes, edges, words);
+            for (int i = 0; i < predicates.length; i++) {
+                predicates[i] = mapped.getInt(format.predicatesStart() + (long) i * Integer.BYTES);
+            }
+        } catch (IOException | RuntimeException e) {
+            mapped.close();
+            throw e;
+        }
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public long entities() {
+        return nodes;
+    }
+
+    public long edges() {
+        return edges;
+    }
+
+    /**
+     * @return the node index of the item, or -1 when it is not part of the graph
+     */
+    public int index(long entity) {
+        long word = entity >>> 6;
+        if (entity < 0 || word >= words) {
+            return -1;
+        }
+        long bits = mapped.getLong(format.bitmapStart() + word * Long.BYTES);
+        if ((bits & (1L << entity)) == 0) {
+            return -1;
+        }
+        return mapped.getInt(format.ranksStart() + word * Integer.BYTES)
+               + Long.bitCount(bits & ((1L << entity) - 1));
+    }
+
+    public long entity(int index) {
+        return mapped.getLong(format.nodesStart() + (long) index * Long.BYTES);
+    }
+
+    public int outDegree(long entity) {
+        int index = index(entity);
+        return index < 0 ? 0 : (int) (end(format.outOffsetsStart(), index) - start(format.outOffsetsStart(), index));
+    }
+
+    public int inDegree(long entity) {
+        int index = index(entity);
+        return index < 0 ? 0 : (int) (end(format.inOffsetsStart(), index) - start(format.inOffsetsStart(), index));
+    }
+
+    /**
+     * @return the edges starting at the entity, sorted by object and predicate
+     */
+    public List<Edge> outEdges(long entity) {
+        List<Edge> result = new ArrayList<>();
+        addOutEdges(entity, result);
+        return result;
+    }
+
+    /**
+     * @return the edges ending at the entity, sorted by subject and predicate
+     */
+    public List<Edge> inEdges(long entity) {
+        List<Edge> result = new ArrayList<>();
+        addInEdges(entity, result, false);
+        return result;
+    }
+
+    /**
+     * @return the out edges and then the in edges of the entity, a loop is returned once
+     */
+    public List<Edge> neighbors(long entity) {
+        List<Edge> result = new ArrayList<>();
+        addOutEdges(entity, result);
+        addInEdges(entity, result, true);
+        return result;
+    }
+
+    /**
+     * @return the edges from the subject to the object, one per predicate
+     */
+    public List<Edge> edges(long subject, long object) {
+        int source = index(subject);
+        int target = index(object);
+        if (source < 0 || target < 0) {
+            return List.of();
+        }
+        long low = start(format.outOffsetsStart(), source);
+        long high = end(format.outOffsetsStart(), source);
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (mapped.getInt(format.outTargetsStart() + middle * Integer.BYTES) < target) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        List<Edge> result = new ArrayList<>(1);
+        long last = end(format.outOffsetsStart(), source);
+        for (long i = low; i < last && mapped.getInt(format.outTargetsStart() + i * Integer.BYTES) == target; i++) {
+            result.add(new Edge(subject, predicate(format.outPredicatesStart(), i), object));
+        }
+        return result;
+    }
+
+    public boolean hasEdge(long subject, long object) {
+        return !edges(subject, object).isEmpty();
+    }
+
+    private void addOutEdges(long entity, List<Edge> result) {
+        int index = index(entity);
+        if (index < 0) {
+            return;
+        }
+        for (long i = start(format.outOffsetsStart(), index); i < end(format.outOffsetsStart(), index); i++) {
+            result.add(new Edge(entity, predicate(format.outPredicatesStart(), i),
+                    entity(mapped.getInt(format.outTargetsStart() + i * Integer.BYTES))));
+        }
+    }
+
+    private void addInEdges(long entity, List<Edge> result, boolean skipLoops) {
+        int index = index(entity);
+        if (index < 0) {
+            return;
+        }
+        for (long i = start(format.inOffsetsStart(), index); i < end(format.inOffsetsStart(), index); i++) {
+            int source = mapped.getInt(format.inSourcesStart() + i * Integer.BYTES);
+            if (!skipLoops || source != index) {
+                result.add(new Edge(entity(source), predicate(format.inPredicatesStart(), i), entity));
+            }
+        }
+    }
+
+    // rows by node index for the traversals of PathFinder
+
+    long outStart(int index) {
+        return start(format.outOffsetsStart(), index);
+    }
+
+    long outEnd(int index) {
+        return end(format.outOffsetsStart(), index);
+    }
+
+    int outTarget(long edge) {
+        return mapped.getInt(format.outTargetsStart() + edge * Integer.BYTES);
+    }
+
+    int outPredicate(long edge) {
+        return predicate(format.outPredicatesStart(), edge);
+    }
+
+    long inStart(int index) {
+        return start(format.inOffsetsStart(), index);
+    }
+
+    long inEnd(int index) {
+        return end(format.inOffsetsStart(), index);
+    }
+
+    int inSource(long edge) {
+        return mapped.getInt(format.inSourcesStart() + edge * Integer.BYTES);
+    }
+
+    int inPredicate(long edge) {
+        return predicate(format.inPredicatesStart(), edge);
+    }
+
+    private int predicate(long predicatesStart, long edge) {
+        return predicates[mapped.getUnsignedShort(predicatesStart + edge * Short.BYTES)];
+    }
+
+    private long start(long offsetsStart, int index) {
+        return mapped.getLong(offsetsStart + (long) index * Long.BYTES);
+    }
+
+    private long end(long offsetsStart, int index) {
+        return mapped.getLong(offsetsStart + (index + 1L) * Long.BYTES);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mapped.close();
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.msorkhpar.graphengine;
+
+import java.nio.ByteOrder;
+
+/**
+ * Layout of a CSR graph file, all numbers little-endian:
+ * <pre>
+ * header         magic "WKCSRGRF", int version, int predicates, long nodes, long edges, long words,
+ *                zero padding up to 64 bytes
+ * predicates     int[predicates], the property number of every predicate index, zero padding up to a multiple of 8
+ * bitmap         long[words], bit q is set for every entity Qq of the graph
+ * ranks          int[words], the set bits before every word, zero padding up to a multiple of 8
+ * nodes          long[nodes], the item number of every node index in ascending order
+ * out offsets    long[nodes + 1], the out edges of node i are the entries offsets[i] until offsets[i + 1]
+ * in offsets     long[nodes + 1], the same for the in edges
+ * out targets    int[edges], node indexes, zero padding up to a multiple of 8
+ * in sources     int[edges], node indexes, zero padding up to a multiple of 8
+ * out predicates unsigned short[edges], predicate indexes, zero padding up to a multiple of 8
+ * in predicates  unsigned short[edges], predicate indexes, zero padding up to a multiple of 8
+ * </pre>
+ * The edges of a node are sorted by the other node and then by predicate. Every section starts at a multiple of 8, so
+ * no value crosses the end of a mapped region.
+ */
+final class CsrGraphFormat {
+
+    static final byte[] MAGIC = {'W', 'K', 'C', 'S', 'R', 'G', 'R', 'F'};
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int MAX_PREDICATES = 1 << 16;
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private final long predicates;
+    private final long nodes;
+    private final long edges;
+    private final long words;
+
+    CsrGraphFormat(long predicates, long nodes, long edges, long words) {
+        this.predicates = predicates;
+        this.nodes = nodes;
+        this.edges = edges;
+        this.words = words;
+    }
+
+    long predicatesStart() {
+        return HEADER_SIZE;
+    }
+
+    long bitmapStart() {
+        return predicatesStart() + align(predicates * Integer.BYTES);
+    }
+
+    long ranksStart() {
+        return bitmapStart() + words * Long.BYTES;
+    }
+
+    long nodesStart() {
+        return ranksStart() + align(words * Integer.BYTES);
+    }
+
+    long outOffsetsStart() {
+        return nodesStart() + nodes * Long.BYTES;
+    }
+
+    long inOffsetsStart() {
+        return outOffsetsStart() + (nodes + 1) * Long.BYTES;
+    }
+
+    long outTargetsStart() {
+        return inOffsetsStart() + (nodes + 1) * Long.BYTES;
+    }
+
+    long inSourcesStart() {
+        return outTargetsStart() + align(edges * Integer.BYTES);
+    }
+
+    long outPredicatesStart() {
+        return inSourcesStart() + align(edges * Integer.BYTES);
+    }
+
+    long inPredicatesStart() {
+        return outPredicatesStart() + align(edges * Short.BYTES);
+    }
+
+    long size() {
+        return inPredicatesStart() + align(edges * Short.BYTES);
+    }
+
+    static long align(long length) {
+        return (length + 7) & ~7L;
+    }
+}
@@ -0,0 +1,268 @@
+package com.github.msorkhpar.graphengine;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static com.github.msorkhpar.graphengine.CsrGraphFormat.*;
+
+/**
+ * Collects the edges of a graph and writes them as a {@link CsrGraph}. The edges are appended to a spill file, only
+ * the entity bitmap and the predicates stay in heap, and the CSR arrays are built in the memory-mapped output file,
+ * so the heap needed does not grow with the number of edges. Not thread-safe.
+ */
+@Slf4j
+public class CsrGraphWriter implements Closeable {
+
+    private static final int EDGE_SIZE = 20;
+    // item numbers above this do not exist yet and would make the bitmap an array of more than 2^31 words
+    private static final long MAX_ENTITY = (1L << 37) - 1;
+    private static final int SORT_BLOCK = 1 << 14;
+
+    private final Path spill;
+    private final FileChannel spillChannel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(EDGE_SIZE * 65536).order(ORDER);
+    private long spillSize;
+    private long[] bitmap = new long[1024];
+    // predicate index + 1 by property number
+    private int[] predicateIndexes = new int[1024];
+    private int[] predicates = new int[64];
+    private int predicateCount;
+    private long edges;
+
+    /**
+     * @param spill the file the edges are appended to until they are written, it is deleted on close
+     */
+    public CsrGraphWriter(Path spill) throws IOException {
+        this.spill = spill;
+        this.spillChannel = FileChannel.open(spill, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    public void add(long subject, int predicate, long object) throws IOException {
+        if (subject < 0 || subject > MAX_ENTITY || object < 0 || object > MAX_ENTITY || predicate < 0) {
+            throw new IllegalArgumentException("Q" + subject + " -P" + predicate + "-> Q" + object
+                                               + " can not be stored in a CSR graph");
+        }
+        mark(subject);
+        mark(object);
+        predicateIndex(predicate);
+        if (buffer.remaining() < EDGE_SIZE) {
+            flushSpill();
+        }
+        buffer.putLong(subject).putInt(predicate).putLong(object);
+        edges++;
+    }
+
+    public long edges() {
+        return edges;
+    }
+
+    /**
+     * Builds the CSR arrays next to the file, then moves them to the file. The spill is kept, so the graph can be
+     * written again with more edges.
+     */
+    public void write(Path file) throws IOException {
+        long start = System.currentTimeMillis();
+        flushSpill();
+        int words = bitmap.length;
+        int[] ranks = new int[words];
+        long nodes = 0;
+        for (int i = 0; i < words; i++) {
+            ranks[i] = (int) nodes;
+            nodes += Long.bitCount(bitmap[i]);
+        }
+        if (nodes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("A CSR graph can not have more than 2^31 - 1 entities");
+        }
+        CsrGraphFormat format = new CsrGraphFormat(predicateCount, nodes, edges, words);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (MappedFile output = MappedFile.create(temporary, format.size())) {
+            writeHeader(output, nodes, words);
+            writeNodes(output, format, ranks);
+            forEachEdge((subject, predicate, object) -> {
+                increment(output, format.outOffsetsStart() + (index(subject, ranks) + 1L) * Long.BYTES);
+                increment(output, format.inOffsetsStart() + (index(object, ranks) + 1L) * Long.BYTES);
+            });
+            // the offsets are the starts of the rows, used as cursors they end as the starts of the next rows
+            prefixSums(output, format.outOffsetsStart(), nodes);
+            prefixSums(output, format.inOffsetsStart(), nodes);
+            forEachEdge((subject, predicate, object) -> {
+                int source = index(subject, ranks);
+                int target = index(object, ranks);
+                int predicateIndex = predicateIndexes[predicate] - 1;
+                long out = increment(output, format.outOffsetsStart() + (long) source * Long.BYTES);
+                output.putInt(format.outTargetsStart() + out * Integer.BYTES, target);
+                output.putShort(format.outPredicatesStart() + out * Short.BYTES, predicateIndex);
+                long in = increment(output, format.inOffsetsStart() + (long) target * Long.BYTES);
+                output.putInt(format.inSourcesStart() + in * Integer.BYTES, source);
+                output.putShort(format.inPredicatesStart() + in * Short.BYTES, predicateIndex);
+            });
+            shiftOffsets(output, format.outOffsetsStart(), nodes);
+            shiftOffsets(output, format.inOffsetsStart(), nodes);
+            sortRows(output, nodes, format.outOffsetsStart(), format.outTargetsStart(), format.outPredicatesStart());
+            sortRows(output, nodes, format.inOffsetsStart(), format.inSourcesStart(), format.inPredicatesStart());
+            output.force();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("CSR graph [{}] is written in [{}ms]: [{}] entities, [{}] edges, [{}] predicates",
+                file, System.currentTimeMillis() - start, nodes, edges, predicateCount);
+    }
+
+    private void writeHeader(MappedFile output, long nodes, int words) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ORDER);
+        header.put(MAGIC).putInt(VERSION).putInt(predicateCount).putLong(nodes).putLong(edges).putLong(words);
+        output.put(0, header.array());
+    }
+
+    private void writeNodes(MappedFile output, CsrGraphFormat format, int[] ranks) {
+        for (int i = 0; i < predicateCount; i++) {
+            output.putInt(format.predicatesStart() + (long) i * Integer.BYTES, predicates[i]);
+        }
+        long node = 0;
+        for (int i = 0; i < bitmap.length; i++) {
+            output.putLong(format.bitmapStart() + (long) i * Long.BYTES, bitmap[i]);
+            output.putInt(format.ranksStart() + (long) i * Integer.BYTES, ranks[i]);
+            long word = bitmap[i];
+            while (word != 0) {
+                long entity = ((long) i << 6) + Long.numberOfTrailingZeros(word);
+                output.putLong(format.nodesStart() + node++ * Long.BYTES, entity);
+                word &= word - 1;
+            }
+        }
+    }
+
+    private void forEachEdge(EdgeConsumer consumer) throws IOException {
+        ByteBuffer input = ByteBuffer.allocateDirect(EDGE_SIZE * 65536).order(ORDER);
+        long position = 0;
+        while (position < spillSize) {
+            input.clear();
+            while (input.hasRemaining() && position + input.position() < spillSize) {
+                spillChannel.read(input, position + input.position());
+            }
+            input.flip();
+            position += input.limit();
+            while (input.remaining() >= EDGE_SIZE) {
+                consumer.accept(input.getLong(), input.getInt(), input.getLong());
+            }
+        }
+    }
+
+    private void mark(long entity) {
+        int word = (int) (entity >>> 6);
+        if (word >= bitmap.length) {
+            bitmap = Arrays.copyOf(bitmap, Math.max(word + 1, bitmap.length * 2));
+        }
+        bitmap[word] |= 1L << entity;
+    }
+
+    private int index(long entity, int[] ranks) {
+        int word = (int) (entity >>> 6);
+        return ranks[word] + Long.bitCount(bitmap[word] & ((1L << entity) - 1));
+    }
+
+    private void predicateIndex(int predicate) {
+        if (predicate >= predicateIndexes.length) {
+            predicateIndexes = Arrays.copyOf(predicateIndexes, Math.max(predicate + 1, predicateIndexes.length * 2));
+        }
+        if (predicateIndexes[predicate] != 0) {
+            return;
+        }
+        if (predicateCount == MAX_PREDICATES) {
+            throw new IllegalStateException("A CSR graph can not have more than " + MAX_PREDICATES + " predicates");
+        }
+        if (predicateCount == predicates.length) {
+            predicates = Arrays.copyOf(predicates, predicateCount * 2);
+        }
+        predicates[predicateCount] = predicate;
+        predicateIndexes[predicate] = ++predicateCount;
+    }
+
+    private void flushSpill() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            spillSize += spillChannel.write(buffer, spillSize);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * @return the value before the increment
+     */
+    private static long increment(MappedFile output, long position) {
+        long value = output.getLong(position);
+        output.putLong(position, value + 1);
+        return value;
+    }
+
+    private static void prefixSums(MappedFile output, long offsetsStart, long nodes) {
+        long sum = 0;
+        for (long i = 0; i <= nodes; i++) {
+            sum += output.getLong(offsetsStart + i * Long.BYTES);
+            output.putLong(offsetsStart + i * Long.BYTES, sum);
+        }
+    }
+
+    private static void shiftOffsets(MappedFile output, long offsetsStart, long nodes) {
+        for (long i = nodes; i > 0; i--) {
+            output.putLong(offsetsStart + i * Long.BYTES, output.getLong(offsetsStart + (i - 1) * Long.BYTES));
+        }
+        output.putLong(offsetsStart, 0);
+    }
+
+    /**
+     * Sorts the entries of every row by node and then predicate, blocks of rows in parallel.
+     */
+    private static void sortRows(MappedFile output, long nodes, long offsetsStart, long nodesStart,
+                                 long predicatesStart) {
+        IntStream.range(0, (int) ((nodes + SORT_BLOCK - 1) / SORT_BLOCK)).parallel().forEach(block -> {
+            long[] keys = new long[16];
+            long last = Math.min(nodes, (long) (block + 1) * SORT_BLOCK);
+            for (long node = (long) block * SORT_BLOCK; node < last; node++) {
+                long from = output.getLong(offsetsStart + node * Long.BYTES);
+                int length = (int) (output.getLong(offsetsStart + (node + 1) * Long.BYTES) - from);
+                if (length < 2) {
+                    continue;
+                }
+                if (keys.length < length) {
+                    keys = new long[Math.max(length, keys.length * 2)];
+                }
+                for (int i = 0; i < length; i++) {
+                    keys[i] = ((long) output.getInt(nodesStart + (from + i) * Integer.BYTES) << 16)
+                              | output.getUnsignedShort(predicatesStart + (from + i) * Short.BYTES);
+                }
+                Arrays.sort(keys, 0, length);
+                for (int i = 0; i < length; i++) {
+                    output.putInt(nodesStart + (from + i) * Integer.BYTES, (int) (keys[i] >>> 16));
+                    output.putShort(predicatesStart + (from + i) * Short.BYTES, (int) (keys[i] & 0xFFFF));
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            spillChannel.close();
+        } finally {
+            Files.deleteIfExists(spill);
+        }
+    }
+
+    @FunctionalInterface
+    private interface EdgeConsumer {
+        void accept(long subject, int predicate, long object);
+    }
+}
@@ -0,0 +1,12 @@
+package com.github.msorkhpar.graphengine;
+
+/**
+ * An edge of the graph by item and property numbers.
+ */
+public record Edge(long subject, int predicate, long object) {
+
+    @Override
+    public String toString() {
+        return "Q" + subject + "\tP" + predicate + "\tQ" + object;
+    }
+}
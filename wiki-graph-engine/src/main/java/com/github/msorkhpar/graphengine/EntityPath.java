@@ -0,0 +1,13 @@
+package com.github.msorkhpar.graphengine;
+
+import java.util.List;
+
+/**
+ * A path from the source to the target entity, its legs in path order and every leg in the direction it is stored.
+ */
+public record EntityPath(long source, long target, List<Edge> legs) {
+
+    public int hops() {
+        return legs.size();
+    }
+}
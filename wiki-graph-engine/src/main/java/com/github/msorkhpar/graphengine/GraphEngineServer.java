@@ -0,0 +1,220 @@
+package com.github.msorkhpar.graphengine;
+
+import com.github.msorkhpar.textserver.ReloadingFile;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+
+import static com.github.msorkhpar.textserver.TextServer.*;
+
+/**
+ * Serves a CSR graph on localhost, every query answers one {@code subject \t predicate \t object} line per edge:
+ * <pre>
+ * POST /out        one entity per line, e.g. Q42, the edges starting at the entities
+ * POST /in         one entity per line, the edges ending at the entities
+ * POST /neighbors  one entity per line, the edges starting or ending at the entities
+ * POST /edges      one {@code subject \t object} pair per line, the edges from the subject to the object
+ * POST /path       one {@code source \t target} pair per line, the legs of a shortest path per pair followed by an
+ *                  empty line, only the empty line when there is none; {@code max-depth} and {@code max-visited}
+ *                  parameters bound the searches
+ * POST /closest    the sources one per line, an empty line and the targets one per line, per closest pair of a
+ *                  source and a target a {@code source \t target} line, the legs and an empty line, ordered by hops;
+ *                  the {@code limit} parameter is the number of pairs, 10 by default
+ * GET  /health     the number of entities, edges and components
+ * </pre>
+ * The candidate set endpoints under {@code /components} are described in {@link ComponentEndpoints}.
+ * Lines which are not entities are skipped. Paths ignore the direction of the edges and their legs are in the
+ * direction they are stored, see {@link PathFinder}. The graph is reopened when its file is replaced, e.g. by the graph
+ * builder at the end of a load.
+ * <p>
+ * Usage: {@code java -jar wiki-graph-engine-server.jar <graph file> [port, 9471]}
+ */
+@Slf4j
+public class GraphEngineServer {
+
+    private static final int DEFAULT_PORT = 9471;
+    private static final long RELOAD_CHECK_SECONDS = 30;
+    static final int DEFAULT_MAX_DEPTH = 15;
+    private static final int DEFAULT_MAX_VISITED = 5_000_000;
+    static final int DEFAULT_LIMIT = 10;
+
+    private final ReloadingFile<CsrGraph> graph;
+    private final ComponentRegistry components = new ComponentRegistry();
+
+    GraphEngineServer(Path file) throws IOException {
+        this.graph = new ReloadingFile<>(file, CsrGraph::new,
+                current -> "[" + current.entities() + "] entities and [" + current.edges() + "] edges");
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java -jar wiki-graph-engine-server.jar <graph file> [port]");
+            System.exit(1);
+        }
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        new GraphEngineServer(Path.of(args[0])).start(port);
+    }
+
+    void start(int port) throws IOException {
+        HttpServer server = create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/out", exchange -> entityQuery(exchange, CsrGraph::outEdges));
+        server.createContext("/in", exchange -> entityQuery(exchange, CsrGraph::inEdges));
+        server.createContext("/neighbors", exchange -> entityQuery(exchange, CsrGraph::neighbors));
+        server.createContext("/edges", this::edgeQuery);
+        server.createContext("/path", withParameters(this::pathQuery));
+        server.createContext("/closest", withParameters(this::closestQuery));
+        server.createContext("/components", withParameters(new ComponentEndpoints(components, this)));
+        server.createContext("/health", exchange -> {
+            CsrGraph current = graph.get();
+            respond(exchange, 200, current.entities() + " entities, " + current.edges() + " edges, "
+                    + components.size() + " components\n");
+        });
+        server.start();
+        graph.watch("graph-reload", RELOAD_CHECK_SECONDS);
+        logger.info("[{}] entities and [{}] edges of [{}] are served on [http://localhost:{}]",
+                graph.get().entities(), graph.get().edges(), graph.file(), port);
+    }
+
+    private void entityQuery(HttpExchange exchange, BiFunction<CsrGraph, Long, List<Edge>> query)
+            throws IOException {
+        List<String> lines = readLines(exchange);
+        if (lines == null) {
+            return;
+        }
+        CsrGraph current = graph.get();
+        StringBuilder body = new StringBuilder(lines.size() * 64);
+        for (String line : lines) {
+            long entity = parseEntity(line);
+            if (entity >= 0) {
+                append(body, query.apply(current, entity));
+            }
+        }
+        respond(exchange, 200, body.toString());
+    }
+
+    private void edgeQuery(HttpExchange exchange) throws IOException {
+        List<String> lines = readLines(exchange);
+        if (lines == null) {
+            return;
+        }
+        CsrGraph current = graph.get();
+        StringBuilder body = new StringBuilder(lines.size() * 32);
+        for (String line : lines) {
+            int separator = line.indexOf('\t');
+            if (separator < 0) {
+                continue;
+            }
+            long subject = parseEntity(line.substring(0, separator));
+            long object = parseEntity(line.substring(separator + 1));
+            if (subject >= 0 && object >= 0) {
+                append(body, current.edges(subject, object));
+            }
+        }
+        respond(exchange, 200, body.toString());
+    }
+
+    private void pathQuery(HttpExchange exchange) throws IOException {
+        List<String> lines = readLines(exchange);
+        if (lines == null) {
+            return;
+        }
+        Map<String, String> parameters = parameters(exchange);
+        List<long[]> pairs = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            int separator = line.indexOf('\t');
+            if (separator >= 0) {
+                pairs.add(new long[]{
+                        parseEntity(line.substring(0, separator)), parseEntity(line.substring(separator + 1))});
+            }
+        }
+        List<EntityPath> paths = pathFinder(parameters).shortestPaths(pairs,
+                intParameter(parameters, "max-depth", DEFAULT_MAX_DEPTH));
+        StringBuilder body = new StringBuilder(paths.size() * 128);
+        for (EntityPath path : paths) {
+            if (path != null) {
+                append(body, path.legs());
+            }
+            body.append('\n');
+        }
+        respond(exchange, 200, body.toString());
+    }
+
+    private void closestQuery(HttpExchange exchange) throws IOException {
+        String body = readPost(exchange, "POST the sources, an empty line and the targets\n");
+        if (body == null) {
+            return;
+        }
+        String[] sets = body.split("\\R\\s*\\R", 2);
+        if (sets.length < 2) {
+            respond(exchange, 400, "POST the sources, an empty line and the targets\n");
+            return;
+        }
+        Map<String, String> parameters = parameters(exchange);
+        List<EntityPath> paths = pathFinder(parameters).closestPairs(entities(sets[0]), entities(sets[1]),
+                intParameter(parameters, "max-depth", DEFAULT_MAX_DEPTH),
+                intParameter(parameters, "limit", DEFAULT_LIMIT));
+        respond(exchange, 200, pairs(paths));
+    }
+
+    static String pairs(List<EntityPath> paths) {
+        StringBuilder body = new StringBuilder(paths.size() * 128);
+        for (EntityPath path : paths) {
+            body.append('Q').append(path.source()).append("\tQ").append(path.target()).append('\n');
+            append(body, path.legs());
+            body.append('\n');
+        }
+        return body.toString();
+    }
+
+    PathFinder pathFinder(Map<String, String> parameters) {
+        return new PathFinder(graph.get(), intParameter(parameters, "max-visited", DEFAULT_MAX_VISITED));
+    }
+
+    static long[] entities(String lines) {
+        return lines.lines().mapToLong(GraphEngineServer::parseEntity).filter(entity -> entity >= 0).toArray();
+    }
+
+    static List<String> readLines(HttpExchange exchange) throws IOException {
+        String body = readPost(exchange, "POST one query per line\n");
+        if (body == null) {
+            return null;
+        }
+        return body.lines()
+                .map(String::strip)
+                .filter(line -> !line.isEmpty())
+                .toList();
+    }
+
+    /**
+     * @return the item number of {@code Q<number>}, or -1 for anything else
+     */
+    static long parseEntity(String text) {
+        String value = text.strip();
+        if (value.length() < 2 || value.length() > 19 || value.charAt(0) != 'Q') {
+            return -1;
+        }
+        for (int i = 1; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                return -1;
+            }
+        }
+        return Long.parseLong(value, 1, value.length(), 10);
+    }
+
+    static void append(StringBuilder body, List<Edge> edges) {
+        for (Edge edge : edges) {
+            body.append(edge).append('\n');
+        }
+    }
+}
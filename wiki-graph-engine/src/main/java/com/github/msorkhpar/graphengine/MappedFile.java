@@ -0,0 +1,113 @@
+package com.github.msorkhpar.graphengine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static com.github.msorkhpar.graphengine.CsrGraphFormat.ORDER;
+
+/**
+ * A file mapped in regions of {@code 1GB} with absolute accessors over the whole file. Values must not cross the end
+ * of a region, which holds for values stored at a multiple of their size. Accessors of disjoint positions can be
+ * used by several threads at once.
+ */
+final class MappedFile implements Closeable {
+
+    private static final int REGION_BITS = 30;
+    private static final long REGION_MASK = (1L << REGION_BITS) - 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] regions;
+
+    private MappedFile(FileChannel channel, FileChannel.MapMode mode, long size) throws IOException {
+        this.channel = channel;
+        try {
+            regions = new MappedByteBuffer[(int) ((size + REGION_MASK) >>> REGION_BITS)];
+            for (int i = 0; i < regions.length; i++) {
+                long start = (long) i << REGION_BITS;
+                regions[i] = channel.map(mode, start, Math.min(REGION_MASK + 1, size - start));
+                regions[i].order(ORDER);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    static MappedFile read(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        return new MappedFile(channel, FileChannel.MapMode.READ_ONLY, channel.size());
+    }
+
+    /**
+     * Creates or truncates the file and maps it with the given size, the content starts zeroed.
+     */
+    static MappedFile create(Path file, long size) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            if (size > 0) {
+                channel.write(ByteBuffer.allocate(1), size - 1);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return new MappedFile(channel, FileChannel.MapMode.READ_WRITE, size);
+    }
+
+    long getLong(long position) {
+        return region(position).getLong(offset(position));
+    }
+
+    int getInt(long position) {
+        return region(position).getInt(offset(position));
+    }
+
+    int getUnsignedShort(long position) {
+        return Short.toUnsignedInt(region(position).getShort(offset(position)));
+    }
+
+    void get(long position, byte[] destination) {
+        region(position).get(offset(position), destination);
+    }
+
+    void putLong(long position, long value) {
+        region(position).putLong(offset(position), value);
+    }
+
+    void putInt(long position, int value) {
+        region(position).putInt(offset(position), value);
+    }
+
+    void putShort(long position, int value) {
+        region(position).putShort(offset(position), (short) value);
+    }
+
+    void put(long position, byte[] bytes) {
+        region(position).put(offset(position), bytes);
+    }
+
+    void force() {
+        for (MappedByteBuffer region : regions) {
+            region.force();
+        }
+    }
+
+    private MappedByteBuffer region(long position) {
+        return regions[(int) (position >>> REGION_BITS)];
+    }
+
+    private static int offset(long position) {
+        return (int) (position & REGION_MASK);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.msorkhpar.graphengine;
+
+import java.util.Arrays;
+
+/**
+ * The search tree of one side of a {@link PathFinder} search: the visited node indexes with the node and edge they
+ * were reached from and the start node of their branch, in open-addressing primitive arrays.
+ */
+final class NodeMap {
+
+    static final int NONE = -1;
+
+    private int[] keys;
+    private int[] parents;
+    private long[] edges;
+    private int[] roots;
+    private int size;
+
+    NodeMap() {
+        allocate(1024);
+    }
+
+    /**
+     * @param edge the edge to the parent, see {@link PathFinder}
+     * @return false if the node was visited before, it is left unchanged then
+     */
+    boolean put(int node, int parent, long edge, int root) {
+        int slot = slot(node);
+        if (keys[slot] != NONE) {
+            return false;
+        }
+        keys[slot] = node;
+        parents[slot] = parent;
+        edges[slot] = edge;
+        roots[slot] = root;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * @return the slot of the node, or NONE when it was not visited
+     */
+    int find(int node) {
+        int slot = slot(node);
+        return keys[slot] == NONE ? NONE : slot;
+    }
+
+    int parent(int slot) {
+        return parents[slot];
+    }
+
+    long edge(int slot) {
+        return edges[slot];
+    }
+
+    int root(int slot) {
+        return roots[slot];
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int slot(int node) {
+        int mask = keys.length - 1;
+        int slot = (node * 0x9E3779B9) & mask;
+        while (keys[slot] != NONE && keys[slot] != node) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldParents = parents;
+        long[] oldEdges = edges;
+        int[] oldRoots = roots;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != NONE) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                parents[slot] = oldParents[i];
+                edges[slot] = oldEdges[i];
+                roots[slot] = oldRoots[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, NONE);
+        parents = new int[capacity];
+        edges = new long[capacity];
+        roots = new int[capacity];
+    }
+}
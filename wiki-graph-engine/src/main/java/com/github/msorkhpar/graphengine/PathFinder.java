@@ -0,0 +1,235 @@
+package com.github.msorkhpar.graphengine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds shortest paths in a {@link CsrGraph}, ignoring the direction of the edges like an undirected Cypher
+ * {@code shortestPath}. A search is a bidirectional breadth-first search which always expands the level of the side
+ * whose frontier has fewer edges, so a hub is only expanded when there is no cheaper way around it. Both sides can
+ * start from many entities at once to find the closest pairs between two sets of entities.
+ * <p>
+ * A search gives up when its sides visited {@code maxVisited} entities together. Searches are independent and
+ * thread-safe.
+ */
+public class PathFinder {
+
+    private final CsrGraph graph;
+    private final int maxVisited;
+
+    public PathFinder(CsrGraph graph, int maxVisited) {
+        this.graph = graph;
+        this.maxVisited = maxVisited;
+    }
+
+    /**
+     * @return a shortest path of at most {@code maxDepth} hops, or null when there is none or the entities are equal
+     */
+    public EntityPath shortestPath(long source, long target, int maxDepth) {
+        int from = graph.index(source);
+        int to = graph.index(target);
+        if (from < 0 || to < 0 || from == to) {
+            return null;
+        }
+        List<EntityPath> paths = search(new int[]{from}, new int[]{to}, maxDepth, 1);
+        return paths.isEmpty() ? null : paths.getFirst();
+    }
+
+    /**
+     * Searches the pairs on all cores.
+     *
+     * @return the shortest path of every pair in the order of the pairs, null for the pairs without one
+     */
+    public List<EntityPath> shortestPaths(List<long[]> pairs, int maxDepth) {
+        return pairs.parallelStream().map(pair -> shortestPath(pair[0], pair[1], maxDepth)).toList();
+    }
+
+    /**
+     * Searches from all sources and all targets at once. Every entity belongs to the branch of the source or target
+     * which reached it first, so a pair is only found when its entities are the closest ones of the branches that
+     * meet. The first pair is a closest one, the search stops at the end of the level which found {@code limit}
+     * pairs.
+     *
+     * @return up to {@code limit} paths of distinct source and target pairs, ordered by hops
+     */
+    public List<EntityPath> closestPairs(long[] sources, long[] targets, int maxDepth, int limit) {
+        int[] from = indexes(sources);
+        int[] to = indexes(targets);
+        if (from.length == 0 || to.length == 0 || limit <= 0) {
+            return List.of();
+        }
+        return search(from, to, maxDepth, limit);
+    }
+
+    private List<EntityPath> search(int[] sources, int[] targets, int maxDepth, int limit) {
+        Side forward = new Side(sources);
+        Side backward = new Side(targets);
+        Search search = new Search(forward, backward, limit);
+        while (forward.depth + backward.depth < maxDepth && forward.frontierSize > 0 && backward.frontierSize > 0
+               && search.paths.size() < limit && forward.visited.size() + backward.visited.size() < maxVisited) {
+            if (forward.frontierEdges() <= backward.frontierEdges()) {
+                search.expand(forward, backward);
+            } else {
+                search.expand(backward, forward);
+            }
+        }
+        // with many sources and targets a closer pair can be found in a later level than a farther one
+        List<EntityPath> paths = new ArrayList<>(search.paths);
+        paths.sort(Comparator.comparingInt(EntityPath::hops));
+        return paths.size() > limit ? paths.subList(0, limit) : paths;
+    }
+
+    private int[] indexes(long[] entities) {
+        int[] indexes = new int[entities.length];
+        int count = 0;
+        for (long entity : entities) {
+            int index = graph.index(entity);
+            if (index >= 0) {
+                indexes[count++] = index;
+            }
+        }
+        return Arrays.copyOf(indexes, count);
+    }
+
+    /**
+     * One side of a search. The edge a node was reached through is its position in the out edges of its parent,
+     * shifted left by one, or its position in the in edges of its parent, shifted left by one and plus one.
+     */
+    private final class Side {
+        private final NodeMap visited = new NodeMap();
+        private int[] frontier;
+        private int frontierSize;
+        private int[] next = new int[16];
+        private int nextSize;
+        private int depth;
+
+        private Side(int[] starts) {
+            frontier = new int[Math.max(16, starts.length)];
+            for (int start : starts) {
+                if (visited.put(start, NodeMap.NONE, 0, start)) {
+                    frontier[frontierSize++] = start;
+                }
+            }
+        }
+
+        private long frontierEdges() {
+            long edges = 0;
+            for (int i = 0; i < frontierSize; i++) {
+                int node = frontier[i];
+                edges += graph.outEnd(node) - graph.outStart(node) + graph.inEnd(node) - graph.inStart(node);
+            }
+            return edges;
+        }
+
+        /**
+         * @return the edges from the root of the node's branch to the node
+         */
+        private List<Edge> legs(int node) {
+            List<Edge> legs = new ArrayList<>(depth);
+            int slot = visited.find(node);
+            while (visited.parent(slot) != NodeMap.NONE) {
+                int parent = visited.parent(slot);
+                legs.add(edge(parent, visited.edge(slot), node));
+                node = parent;
+                slot = visited.find(node);
+            }
+            Collections.reverse(legs);
+            return legs;
+        }
+    }
+
+    private final class Search {
+        private final Side forward;
+        private final Side backward;
+        private final int limit;
+        private final List<EntityPath> paths = new ArrayList<>();
+        private final Set<Long> pairs = new HashSet<>();
+
+        private Search(Side forward, Side backward, int limit) {
+            this.forward = forward;
+            this.backward = backward;
+            this.limit = limit;
+        }
+
+        /**
+         * Visits the neighbors of the frontier of the side. A neighbor the other side visited before closes a path;
+         * as the other side expanded all of its earlier levels, that path is a shortest one.
+         */
+        private void expand(Side side, Side other) {
+            side.nextSize = 0;
+            for (int i = 0; i < side.frontierSize; i++) {
+                int node = side.frontier[i];
+                int root = side.visited.root(side.visited.find(node));
+                for (long position = graph.outStart(node); position < graph.outEnd(node); position++) {
+                    if (visit(side, other, node, root, graph.outTarget(position), position << 1)) {
+                        return;
+                    }
+                }
+                for (long position = graph.inStart(node); position < graph.inEnd(node); position++) {
+                    if (visit(side, other, node, root, graph.inSource(position), position << 1 | 1)) {
+                        return;
+                    }
+                }
+            }
+            int[] frontier = side.frontier;
+            side.frontier = side.next;
+            side.frontierSize = side.nextSize;
+            side.next = frontier;
+            side.depth++;
+        }
+
+        /**
+         * @return true when the search is over
+         */
+        private boolean visit(Side side, Side other, int node, int root, int neighbor, long edge) {
+            int otherSlot = other.visited.find(neighbor);
+            if (otherSlot != NodeMap.NONE && meet(side, node, edge, neighbor, root, other.visited.root(otherSlot))) {
+                return true;
+            }
+            if (side.visited.put(neighbor, node, edge, root)) {
+                if (side.nextSize == side.next.length) {
+                    side.next = Arrays.copyOf(side.next, side.nextSize * 2);
+                }
+                side.next[side.nextSize++] = neighbor;
+                return side.visited.size() + other.visited.size() >= maxVisited;
+            }
+            return false;
+        }
+
+        /**
+         * @return true when the search is for a single path and found it, searches for more paths finish the level
+         */
+        private boolean meet(Side side, int node, long edge, int neighbor, int root, int otherRoot) {
+            int source = side == forward ? root : otherRoot;
+            int target = side == forward ? otherRoot : root;
+            if (source == target || !pairs.add((long) source << 32 | target)) {
+                return false;
+            }
+            int forwardNode = side == forward ? node : neighbor;
+            int backwardNode = side == forward ? neighbor : node;
+            List<Edge> legs = forward.legs(forwardNode);
+            legs.add(edge(node, edge, neighbor));
+            List<Edge> backwardLegs = backward.legs(backwardNode);
+            Collections.reverse(backwardLegs);
+            legs.addAll(backwardLegs);
+            paths.add(new EntityPath(graph.entity(source), graph.entity(target), legs));
+            return limit == 1;
+        }
+    }
+
+    /**
+     * @return the edge between the nodes in the direction it is stored
+     */
+    private Edge edge(int from, long edge, int to) {
+        long position = edge >>> 1;
+        if ((edge & 1) == 0) {
+            return new Edge(graph.entity(from), graph.outPredicate(position), graph.entity(to));
+        }
+        return new Edge(graph.entity(to), graph.inPredicate(position), graph.entity(from));
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.msorkhpar.graphengine;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A union-find over the ids {@code 0, 1, 2, ...} in chunks of atomic arrays, so it grows without copying. Finds halve
+ * the paths they walk with compare-and-set and can run concurrently with each other and with unions; unions link the
+ * root with the larger id under the one with the smaller id, so the root of a set is its smallest id.
+ */
+final class UnionFind {
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int MAX_CHUNKS = 1 << 16;
+
+    private final AtomicReferenceArray<AtomicIntegerArray> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+
+    /**
+     * Makes the id a set of its own.
+     */
+    void add(int id) {
+        int chunk = id >>> CHUNK_BITS;
+        if (chunk >= MAX_CHUNKS) {
+            throw new IllegalStateException("A union-find can not have more than " + MAX_CHUNKS * CHUNK_SIZE + " ids");
+        }
+        if (chunks.get(chunk) == null) {
+            AtomicIntegerArray parents = new AtomicIntegerArray(CHUNK_SIZE);
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                parents.set(i, (chunk << CHUNK_BITS) + i);
+            }
+            chunks.compareAndSet(chunk, null, parents);
+        }
+    }
+
+    int find(int id) {
+        while (true) {
+            int parent = parent(id);
+            if (parent == id) {
+                return id;
+            }
+            int grandParent = parent(parent);
+            if (grandParent != parent) {
+                chunk(id).compareAndSet(id & (CHUNK_SIZE - 1), parent, grandParent);
+            }
+            id = grandParent;
+        }
+    }
+
+    /**
+     * @return the root of the merged set
+     */
+    int union(int first, int second) {
+        while (true) {
+            int firstRoot = find(first);
+            int secondRoot = find(second);
+            if (firstRoot == secondRoot) {
+                return firstRoot;
+            }
+            int root = Math.min(firstRoot, secondRoot);
+            int child = Math.max(firstRoot, secondRoot);
+            if (chunk(child).compareAndSet(child & (CHUNK_SIZE - 1), child, root)) {
+                return root;
+            }
+        }
+    }
+
+    private int parent(int id) {
+        return chunk(id).get(id & (CHUNK_SIZE - 1));
+    }
+
+    private AtomicIntegerArray chunk(int id) {
+        AtomicIntegerArray chunk = chunks.get(id >>> CHUNK_BITS);
+        if (chunk == null) {
+            throw new IllegalArgumentException("[" + id + "] was never added");
+        }
+        return chunk;
+    }
+}
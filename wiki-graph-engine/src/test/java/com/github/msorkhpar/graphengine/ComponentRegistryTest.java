@@ -0,0 +1,67 @@
+package com.github.msorkhpar.graphengine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ComponentRegistryTest {
+
+    @Test
+    void queriesOfTheNextIdsDuringCreationDoNotFail() throws Exception {
+        ComponentRegistry registry = new ComponentRegistry();
+        int components = 100_000;
+        AtomicInteger created = new AtomicInteger();
+        int readers = 4;
+        try (ExecutorService executor = Executors.newFixedThreadPool(readers)) {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int reader = 0; reader < readers; reader++) {
+                workers.add(executor.submit(() -> {
+                    while (created.get() < components) {
+                        // the ids which are being created, across the chunks of the union-find
+                        int last = created.get();
+                        for (int id = last + 1; id <= last + 2; id++) {
+                            if (registry.exists(id)) {
+                                assertTrue(registry.contains(id, id));
+                            }
+                            registry.members(id);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (int i = 1; i <= components; i++) {
+                int id = registry.create(new long[]{i});
+                assertTrue(registry.exists(id));
+                created.set(id);
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        }
+        assertEquals(components, registry.size());
+    }
+
+    @Test
+    void mergedComponentsShareTheirMembers() {
+        ComponentRegistry registry = new ComponentRegistry();
+        int first = registry.create(new long[]{1, 2});
+        int second = registry.create(new long[]{3});
+        int root = registry.merge(first, second);
+        assertTrue(root == first || root == second);
+        assertEquals(3, registry.members(first).getCardinality());
+        assertTrue(registry.contains(second, 1));
+        assertEquals(List.of(root), registry.componentsOf(2));
+
+        registry.remove(second);
+        assertFalse(registry.exists(first));
+        assertFalse(registry.contains(first, 1));
+        assertEquals(-1, registry.merge(first, second));
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.msorkhpar.graphengine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.ToLongFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsrGraphTest {
+
+    private static final Comparator<Edge> ORDER = Comparator.comparingLong(Edge::subject)
+            .thenComparingLong(Edge::object).thenComparingInt(Edge::predicate);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void answersTheEdgesOfARandomGraph() throws IOException {
+        Random random = new Random(21);
+        long[] entities = random.longs(3_000, 1, 1_000_000).distinct().toArray();
+        Set<Edge> edges = new LinkedHashSet<>();
+        while (edges.size() < 20_000) {
+            long subject = entities[random.nextInt(entities.length)];
+            // a few hubs, some loops and parallel edges with other predicates
+            long object = random.nextInt(10) == 0 ? entities[random.nextInt(5)]
+                    : random.nextInt(200) == 0 ? subject : entities[random.nextInt(entities.length)];
+            edges.add(new Edge(subject, 1 + random.nextInt(random.nextBoolean() ? 3 : 2_000), object));
+        }
+
+        try (CsrGraph graph = write(edges)) {
+            Set<Long> nodes = new TreeSet<>();
+            Map<Long, List<Edge>> out = new HashMap<>();
+            Map<Long, List<Edge>> in = new HashMap<>();
+            for (Edge edge : edges) {
+                nodes.add(edge.subject());
+                nodes.add(edge.object());
+                out.computeIfAbsent(edge.subject(), entity -> new ArrayList<>()).add(edge);
+                in.computeIfAbsent(edge.object(), entity -> new ArrayList<>()).add(edge);
+            }
+            assertEquals(nodes.size(), graph.entities());
+            assertEquals(edges.size(), graph.edges());
+
+            int index = 0;
+            for (long entity : nodes) {
+                assertEquals(index, graph.index(entity), "nodes are ranked in entity order");
+                assertEquals(entity, graph.entity(index++));
+                List<Edge> outEdges = graph.outEdges(entity);
+                List<Edge> inEdges = graph.inEdges(entity);
+                assertEquals(sorted(out.getOrDefault(entity, List.of())), sorted(outEdges), "out edges of Q" + entity);
+                assertEquals(sorted(in.getOrDefault(entity, List.of())), sorted(inEdges), "in edges of Q" + entity);
+                assertSortedBy(outEdges, Edge::object);
+                assertSortedBy(inEdges, Edge::subject);
+                assertEquals(outEdges.size(), graph.outDegree(entity));
+                assertEquals(inEdges.size(), graph.inDegree(entity));
+                long loops = outEdges.stream().filter(edge -> edge.object() == entity).count();
+                assertEquals(outEdges.size() + inEdges.size() - loops, graph.neighbors(entity).size());
+            }
+            for (Edge edge : edges) {
+                List<Edge> between = graph.edges(edge.subject(), edge.object());
+                assertTrue(between.contains(edge), edge.toString());
+                assertEquals(out.get(edge.subject()).stream().filter(other -> other.object() == edge.object()).count(),
+                        between.size());
+            }
+        }
+    }
+
+    @Test
+    void unknownEntitiesHaveNoEdges() throws IOException {
+        try (CsrGraph graph = write(List.of(new Edge(64, 31, 65), new Edge(65, 31, 1)))) {
+            assertEquals(-1, graph.index(2));
+            assertEquals(-1, graph.index(-5));
+            assertEquals(-1, graph.index(1_000_000_000L));
+            assertEquals(List.of(), graph.outEdges(2));
+            assertEquals(List.of(), graph.edges(1, 65));
+            assertFalse(graph.hasEdge(65, 64));
+            assertTrue(graph.hasEdge(64, 65));
+        }
+    }
+
+    @Test
+    void rejectsEdgesWhichCanNotBeStored() throws IOException {
+        try (CsrGraphWriter writer = new CsrGraphWriter(directory.resolve("edges.spill"))) {
+            assertThrows(IllegalArgumentException.class, () -> writer.add(-1, 31, 5));
+            assertThrows(IllegalArgumentException.class, () -> writer.add(1, -31, 5));
+        }
+    }
+
+    private CsrGraph write(Iterable<Edge> edges) throws IOException {
+        Path file = directory.resolve("graph.csr");
+        try (CsrGraphWriter writer = new CsrGraphWriter(directory.resolve("edges.spill"))) {
+            for (Edge edge : edges) {
+                writer.add(edge.subject(), edge.predicate(), edge.object());
+            }
+            writer.write(file);
+        }
+        return new CsrGraph(file);
+    }
+
+    private static List<Edge> sorted(List<Edge> edges) {
+        return edges.stream().sorted(ORDER).toList();
+    }
+
+    private static void assertSortedBy(List<Edge> edges, ToLongFunction<Edge> key) {
+        for (int i = 1; i < edges.size(); i++) {
+            assertTrue(key.applyAsLong(edges.get(i - 1)) <= key.applyAsLong(edges.get(i)), edges.toString());
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.github.msorkhpar.graphengine;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PathFinderTest {
+
+    private static final int MAX_DEPTH = 15;
+
+    @TempDir
+    static Path directory;
+    private static long[] entities;
+    private static Set<Edge> edges;
+    private static Map<Long, Set<Long>> adjacent;
+    private static CsrGraph graph;
+
+    @BeforeAll
+    static void writeGraph() throws IOException {
+        Random random = new Random(22);
+        entities = random.longs(2_000, 1, 200_000).distinct().toArray();
+        edges = new LinkedHashSet<>();
+        // sparse enough for several components and paths of many hops
+        while (edges.size() < 2_300) {
+            long subject = entities[random.nextInt(entities.length)];
+            long object = random.nextInt(50) == 0 ? entities[random.nextInt(3)] : entities[random.nextInt(entities.length)];
+            edges.add(new Edge(subject, 1 + random.nextInt(40), object));
+        }
+        adjacent = new HashMap<>();
+        Path file = directory.resolve("graph.csr");
+        try (CsrGraphWriter writer = new CsrGraphWriter(directory.resolve("edges.spill"))) {
+            for (Edge edge : edges) {
+                writer.add(edge.subject(), edge.predicate(), edge.object());
+                adjacent.computeIfAbsent(edge.subject(), entity -> new HashSet<>()).add(edge.object());
+                adjacent.computeIfAbsent(edge.object(), entity -> new HashSet<>()).add(edge.subject());
+            }
+            writer.write(file);
+        }
+        graph = new CsrGraph(file);
+    }
+
+    @AfterAll
+    static void closeGraph() throws IOException {
+        graph.close();
+    }
+
+    @Test
+    void findsPathsAsShortAsABreadthFirstSearch() {
+        PathFinder finder = new PathFinder(graph, 5_000_000);
+        Random random = new Random(1);
+        int found = 0;
+        for (int i = 0; i < 2_000; i++) {
+            long source = entities[random.nextInt(entities.length)];
+            long target = entities[random.nextInt(entities.length)];
+            int hops = distances(source).getOrDefault(target, Integer.MAX_VALUE);
+            EntityPath path = finder.shortestPath(source, target, MAX_DEPTH);
+            if (source == target || hops > MAX_DEPTH) {
+                assertNull(path, "Q" + source + " to Q" + target);
+            } else {
+                assertNotNull(path, "Q" + source + " to Q" + target + " in " + hops + " hops");
+                assertEquals(hops, path.hops());
+                assertWalks(path, source, target);
+                found++;
+            }
+        }
+        assertTrue(found > 100, "the graph should connect enough pairs, found " + found);
+    }
+
+    @Test
+    void givesUpBeyondTheMaximumDepth() {
+        PathFinder finder = new PathFinder(graph, 5_000_000);
+        Random random = new Random(2);
+        int checked = 0;
+        while (checked < 50) {
+            long source = entities[random.nextInt(entities.length)];
+            long target = entities[random.nextInt(entities.length)];
+            int hops = distances(source).getOrDefault(target, Integer.MAX_VALUE);
+            if (hops < 3 || hops == Integer.MAX_VALUE) {
+                continue;
+            }
+            assertNull(finder.shortestPath(source, target, hops - 1));
+            assertEquals(hops, finder.shortestPath(source, target, hops).hops());
+            checked++;
+        }
+    }
+
+    @Test
+    void theFirstClosestPairIsAClosestOne() {
+        PathFinder finder = new PathFinder(graph, 5_000_000);
+        Random random = new Random(3);
+        for (int i = 0; i < 200; i++) {
+            long[] sources = random.ints(5, 0, entities.length / 2).mapToLong(index -> entities[index]).toArray();
+            long[] targets = random.ints(5, entities.length / 2, entities.length)
+                    .mapToLong(index -> entities[index]).toArray();
+            int closest = Integer.MAX_VALUE;
+            for (long source : sources) {
+                Map<Long, Integer> distances = distances(source);
+                for (long target : targets) {
+                    closest = Math.min(closest, distances.getOrDefault(target, Integer.MAX_VALUE));
+                }
+            }
+            List<EntityPath> paths = finder.closestPairs(sources, targets, MAX_DEPTH, 3);
+            if (closest > MAX_DEPTH) {
+                assertEquals(List.of(), paths);
+                continue;
+            }
+            assertFalse(paths.isEmpty());
+            assertEquals(closest, paths.getFirst().hops());
+            Set<List<Long>> pairs = new HashSet<>();
+            for (int p = 0; p < paths.size(); p++) {
+                EntityPath path = paths.get(p);
+                assertTrue(contains(sources, path.source()) && contains(targets, path.target()), path.toString());
+                assertTrue(pairs.add(List.of(path.source(), path.target())), "pairs are distinct");
+                assertTrue(p == 0 || paths.get(p - 1).hops() <= path.hops(), "paths are ordered by hops");
+                assertTrue(distances(path.source()).get(path.target()) <= path.hops());
+                assertWalks(path, path.source(), path.target());
+            }
+        }
+    }
+
+    @Test
+    void unknownEntitiesHaveNoPath() {
+        PathFinder finder = new PathFinder(graph, 5_000_000);
+        assertNull(finder.shortestPath(entities[0], 300_000, MAX_DEPTH));
+        assertEquals(List.of(), finder.closestPairs(new long[]{300_000}, new long[]{entities[0]}, MAX_DEPTH, 10));
+    }
+
+    /**
+     * Every leg is a stored edge which continues the walk from the source, in either direction.
+     */
+    private static void assertWalks(EntityPath path, long source, long target) {
+        assertEquals(source, path.source());
+        assertEquals(target, path.target());
+        long current = source;
+        for (Edge leg : path.legs()) {
+            assertTrue(edges.contains(leg), leg + " is not an edge");
+            if (leg.subject() == current) {
+                current = leg.object();
+            } else {
+                assertEquals(current, leg.object(), leg + " does not continue at Q" + current);
+                current = leg.subject();
+            }
+        }
+        assertEquals(target, current);
+    }
+
+    /**
+     * @return the hops from the source to every entity it is connected to, ignoring the direction of the edges
+     */
+    private static Map<Long, Integer> distances(long source) {
+        Map<Long, Integer> distances = new HashMap<>();
+        distances.put(source, 0);
+        ArrayDeque<Long> queue = new ArrayDeque<>(List.of(source));
+        while (!queue.isEmpty()) {
+            long entity = queue.poll();
+            for (long next : adjacent.getOrDefault(entity, Set.of())) {
+                if (distances.putIfAbsent(next, distances.get(entity) + 1) == null) {
+                    queue.add(next);
+                }
+            }
+        }
+        return distances;
+    }
+
+    private static boolean contains(long[] entities, long entity) {
+        for (long candidate : entities) {
+            if (candidate == entity) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.msorkhpar.graphengine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnionFindTest {
+
+    private static final int IDS = 100_000;
+
+    @Test
+    void concurrentUnionsMergeLikeSequentialOnes() throws Exception {
+        Random random = new Random(23);
+        int[][] pairs = new int[80_000][];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = new int[]{random.nextInt(IDS), random.nextInt(IDS)};
+        }
+        int[] expected = sequentialRoots(pairs);
+
+        UnionFind unionFind = new UnionFind();
+        for (int id = 0; id < IDS; id++) {
+            unionFind.add(id);
+        }
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                int first = thread;
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = first; i < pairs.length; i += threads) {
+                        int root = unionFind.union(pairs[i][0], pairs[i][1]);
+                        assertTrue(root <= Math.min(pairs[i][0], pairs[i][1]));
+                        // finds compress the paths while other threads link roots
+                        unionFind.find(scattered(i));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        }
+        for (int id = 0; id < IDS; id++) {
+            assertEquals(expected[id], unionFind.find(id), "root of " + id);
+        }
+    }
+
+    @Test
+    void theRootOfASetIsItsSmallestId() {
+        UnionFind unionFind = new UnionFind();
+        for (int id = 0; id < 10_000; id++) {
+            unionFind.add(id);
+        }
+        assertEquals(5, unionFind.union(9_000, 5));
+        assertEquals(5, unionFind.union(7, 9_000));
+        assertEquals(3, unionFind.union(7, 3));
+        assertEquals(3, unionFind.find(9_000));
+        assertEquals(3, unionFind.union(5, 9_000));
+        assertEquals(8, unionFind.find(8));
+    }
+
+    @Test
+    void idsMustBeAddedFirst() {
+        UnionFind unionFind = new UnionFind();
+        unionFind.add(1);
+        assertThrows(IllegalArgumentException.class, () -> unionFind.find(1 << 20));
+        assertThrows(IllegalStateException.class, () -> unionFind.add(Integer.MAX_VALUE));
+    }
+
+    private static int[] sequentialRoots(int[][] pairs) {
+        int[] parents = new int[IDS];
+        for (int id = 0; id < IDS; id++) {
+            parents[id] = id;
+        }
+        for (int[] pair : pairs) {
+            int first = root(parents, pair[0]);
+            int second = root(parents, pair[1]);
+            parents[Math.max(first, second)] = Math.min(first, second);
+        }
+        int[] roots = new int[IDS];
+        for (int id = 0; id < IDS; id++) {
+            roots[id] = root(parents, id);
+        }
+        return roots;
+    }
+
+    private static int root(int[] parents, int id) {
+        while (parents[id] != id) {
+            id = parents[id];
+        }
+        return id;
+    }
+
+    private static int scattered(int seed) {
+        return (int) ((seed * 0x9E3779B97F4A7C15L >>> 20) % IDS);
+    }
+}
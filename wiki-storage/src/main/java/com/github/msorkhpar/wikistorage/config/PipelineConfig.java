@@ -0,0 +1,44 @@
+package com.github.msorkhpar.wikistorage.config;
+
+import com.github.msorkhpar.wikistorage.pipeline.PipelineExecutors;
+import com.github.msorkhpar.wikistorage.pipeline.PipelineSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class PipelineConfig {
+
+    @Value("${app.pipeline.queue-capacity}")
+    private int queueCapacity;
+
+    @Value("${app.pipeline.parser-threads}")
+    private int parserThreads;
+
+    @Value("${app.pipeline.writer-threads}")
+    private int writerThreads;
+
+    @Value("${app.pipeline.batch-size}")
+    private int batchSize;
+
+    @Value("${app.executor-pool.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    // the writers mostly wait for the databases, so there can be many more of them on virtual threads
+    @Value("${app.pipeline.virtual-writer-threads:64}")
+    private int virtualWriterThreads;
+
+    @Value("${app.dump-files.decompression-threads}")
+    private int decompressionThreads;
+
+    @Bean
+    public PipelineSettings pipelineSettings() {
+        return new PipelineSettings(queueCapacity, virtualThreads ? virtualWriterThreads : writerThreads, batchSize);
+    }
+
+    // shared by the dump files processed at once, closed with the context
+    @Bean
+    public PipelineExecutors pipelineExecutors() {
+        return new PipelineExecutors(parserThreads, writerThreads, virtualThreads, decompressionThreads);
+    }
+}
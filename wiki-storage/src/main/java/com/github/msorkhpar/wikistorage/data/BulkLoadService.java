@@ -0,0 +1,203 @@
+package com.github.msorkhpar.wikistorage.data;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs a load with {@code app.bulk-load.enabled} without the primary keys and indexes of the loaded tables, so the
+ * inserts do not maintain any B-tree. Afterwards the duplicated keys of reruns are removed and the indexes are built
+ * with {@code CREATE INDEX CONCURRENTLY}, several at once and each with parallel maintenance workers, followed by a
+ * verification report.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class BulkLoadService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Optional<Driver> driver;
+
+    @Value("${app.bulk-load.enabled:false}")
+    private boolean enabled;
+    @Value("${app.bulk-load.parallel-builds:2}")
+    private int parallelBuilds;
+    @Value("${app.bulk-load.maintenance-workers:4}")
+    private int maintenanceWorkers;
+    @Value("${app.bulk-load.maintenance-work-mem:1GB}")
+    private String maintenanceWorkMem;
+    @Value("${app.neo4j.typed-relationships:false}")
+    private boolean typedRelationships;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void beforeLoad(List<BulkLoadTable> tables) {
+        if (!enabled) {
+            return;
+        }
+        for (BulkLoadTable table : tables) {
+            logger.info("Dropping the indexes of [{}] for the bulk load", table.table());
+            jdbcTemplate.execute("alter table " + table.table() + " drop constraint if exists " + table.primaryKey());
+            jdbcTemplate.execute("drop index if exists " + table.primaryKey());
+            for (BulkLoadTable.SecondaryIndex index : table.indexes()) {
+                jdbcTemplate.execute("drop index if exists " + index.name());
+            }
+        }
+    }
+
+    public void afterLoad(List<BulkLoadTable> tables) {
+        if (!enabled) {
+            return;
+        }
+        Map<BulkLoadTable, Integer> duplicates = new EnumMap<>(BulkLoadTable.class);
+        for (BulkLoadTable table : tables) {
+            duplicates.put(table, removeDuplicates(table));
+            jdbcTemplate.execute("analyze " + table.table());
+        }
+        long start = System.currentTimeMillis();
+        List<CompletableFuture<Void>> builds = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(parallelBuilds,
+                Thread.ofPlatform().name("index-build-", 1).factory())) {
+            for (BulkLoadTable table : tables) {
+                builds.add(CompletableFuture.runAsync(() -> buildPrimaryKey(table), executor));
+                for (BulkLoadTable.SecondaryIndex index : table.indexes()) {
+                    builds.add(CompletableFuture.runAsync(() -> buildIndex(table, index), executor));
+                }
+            }
+        }
+        for (CompletableFuture<Void> build : builds) {
+            try {
+                build.join();
+            } catch (Exception e) {
+                logger.error("Index build failed", e);
+            }
+        }
+        logger.info("Indexes are rebuilt in [{}ms]", System.currentTimeMillis() - start);
+        report(tables, duplicates);
+    }
+
+    /**
+     * Keeps the row of every key which was loaded last by its {@code load_seq}, rows stored before the column existed
+     * count as the oldest.
+     */
+    private int removeDuplicates(BulkLoadTable table) {
+        if (constraintExists(table)) {
+            return 0;
+        }
+        int removed = jdbcTemplate.update("delete from " + table.table() + " a using " + table.table() + " b"
+                                          + " where a." + table.key() + " = b." + table.key()
+                                          + " and coalesce(a.load_seq, 0) < coalesce(b.load_seq, 0)");
+        if (removed > 0) {
+            logger.warn("[{}] duplicated rows are removed from [{}]", removed, table.table());
+        }
+        return removed;
+    }
+
+    private void buildPrimaryKey(BulkLoadTable table) {
+        if (constraintExists(table)) {
+            return;
+        }
+        createIndex(table.primaryKey(), "create unique index concurrently " + table.primaryKey()
+                                        + " on " + table.table() + " (" + table.key() + ")");
+        jdbcTemplate.execute("alter table " + table.table() + " add constraint " + table.primaryKey()
+                             + " primary key using index " + table.primaryKey());
+    }
+
+    private void buildIndex(BulkLoadTable table, BulkLoadTable.SecondaryIndex index) {
+        createIndex(index.name(), "create index concurrently " + index.name()
+                                  + " on " + table.table() + " (" + index.columns() + ")");
+    }
+
+    private void createIndex(String name, String ddl) {
+        Boolean valid = jdbcTemplate.query("select i.indisvalid from pg_index i join pg_class c on c.oid = i.indexrelid"
+                                           + " where c.relname = ?", rs -> rs.next() ? rs.getBoolean(1) : null, name);
+        if (Boolean.TRUE.equals(valid)) {
+            return;
+        }
+        if (valid != null) {
+            // left over from an interrupted concurrent build
+            jdbcTemplate.execute("drop index concurrently if exists " + name);
+        }
+        long start = System.currentTimeMillis();
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("set max_parallel_maintenance_workers = " + maintenanceWorkers);
+                statement.execute("set maintenance_work_mem = '" + maintenanceWorkMem + "'");
+                try {
+                    statement.execute(ddl);
+                } finally {
+                    statement.execute("reset max_parallel_maintenance_workers");
+                    statement.execute("reset maintenance_work_mem");
+                }
+            }
+            return null;
+        });
+        logger.info("Index [{}] is built in [{}ms]", name, System.currentTimeMillis() - start);
+    }
+
+    private boolean constraintExists(BulkLoadTable table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "select exists(select 1 from pg_constraint where conname = ? and conrelid = ?::regclass)",
+                Boolean.class, table.primaryKey(), table.table()));
+    }
+
+    private void report(List<BulkLoadTable> tables, Map<BulkLoadTable, Integer> duplicates) {
+        StringBuilder report = new StringBuilder("Bulk load verification report");
+        for (BulkLoadTable table : tables) {
+            Long rows = jdbcTemplate.queryForObject("select count(*) from " + table.table(), Long.class);
+            Long remaining = jdbcTemplate.queryForObject(
+                    "select count(*) from (select " + table.key() + " from " + table.table()
+                    + " group by " + table.key() + " having count(*) > 1) d", Long.class);
+            report.append("\n  table ").append(table.table())
+                    .append(": rows=").append(rows)
+                    .append(", duplicates removed=").append(duplicates.get(table))
+                    .append(", duplicated keys=").append(remaining)
+                    .append(", primary key=").append(constraintExists(table) ? "present" : "MISSING");
+            jdbcTemplate.query("select c.relname, i.indisvalid, i.indisready from pg_index i"
+                               + " join pg_class c on c.oid = i.indexrelid where i.indrelid = ?::regclass"
+                               + " order by c.relname",
+                    rs -> {
+                        report.append("\n    index ").append(rs.getString(1))
+                                .append(": valid=").append(rs.getBoolean(2))
+                                .append(", ready=").append(rs.getBoolean(3));
+                    }, table.table());
+        }
+        driver.ifPresent(neo4j -> {
+            try (Session session = neo4j.session()) {
+                long nodes = session.run("MATCH (n:WikiEntity) RETURN count(n)").single().get(0).asLong();
+                // typed relationships are every relationship but the summaries
+                long relationships = session.run("MATCH ()-[r:" + (typedRelationships ? "!SUMMARY" : "HAS_TYPE")
+                                                 + "]->() RETURN count(r)").single().get(0).asLong();
+                report.append("\n  neo4j: WikiEntity nodes=").append(nodes)
+                        .append(typedRelationships ? ", typed relationships=" : ", HAS_TYPE relationships=")
+                        .append(relationships);
+                for (Record index : session.run("SHOW INDEXES YIELD name, state, populationPercent").list()) {
+                    report.append("\n    index ").append(index.get("name").asString())
+                            .append(": state=").append(index.get("state").asString())
+                            .append(", populated=").append(index.get("populationPercent").asDouble()).append('%');
+                }
+            } catch (Exception e) {
+                report.append("\n  neo4j: not reachable, ").append(e.getMessage());
+            }
+        });
+        logger.info(report.toString());
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.msorkhpar.wikistorage.data;
+
+import java.util.List;
+
+/**
+ * Tables whose indexes are dropped before a bulk load and rebuilt after it. {@code predicates} is left out, it is
+ * filled by the migrations.
+ */
+public enum BulkLoadTable {
+
+    SUBJECTS("subjects", "name", List.of()),
+    WIKIPEDIA_PAGES("wikipedia_pages", "id", List.of(new SecondaryIndex("idx_wikipedia_pages_title", "title"))),
+    WIKIPEDIA_PAGE_LEADS("wikipedia_page_leads", "page_id", List.of()),
+    WIKIPEDIA_REDIRECTS("wikipedia_redirects", "id", List.of());
+
+    private final String table;
+    private final String key;
+    private final List<SecondaryIndex> indexes;
+
+    BulkLoadTable(String table, String key, List<SecondaryIndex> indexes) {
+        this.table = table;
+        this.key = key;
+        this.indexes = indexes;
+    }
+
+    public String table() {
+        return table;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public String primaryKey() {
+        return table + "_pkey";
+    }
+
+    public List<SecondaryIndex> indexes() {
+        return indexes;
+    }
+
+    public record SecondaryIndex(String name, String columns) {
+    }
+}
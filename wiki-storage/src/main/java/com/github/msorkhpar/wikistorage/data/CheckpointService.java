@@ -0,0 +1,70 @@
+package com.github.msorkhpar.wikistorage.data;
+
+import com.github.msorkhpar.wikistorage.pipeline.CheckpointTracker;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+public class CheckpointService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.checkpoint.enabled:true}")
+    private boolean enabled;
+    @Value("${app.checkpoint.interval:30s}")
+    private Duration interval;
+
+    /**
+     * Starts tracking a dump file from its stored checkpoint. With checkpoints disabled the file starts from its
+     * beginning and nothing is stored.
+     */
+    public CheckpointTracker open(String application, String dumpFile, boolean enabled) {
+        if (!this.enabled || !enabled) {
+            return CheckpointTracker.disabled();
+        }
+        IngestionCheckpoint start = find(application, dumpFile).orElse(IngestionCheckpoint.START);
+        return new CheckpointTracker(checkpoint -> save(application, dumpFile, checkpoint), dumpFile, start,
+                interval);
+    }
+
+    public Optional<IngestionCheckpoint> find(String application, String dumpFile) {
+        return jdbcTemplate.query(
+                "select last_page_id, block_offset, pages, completed, reserved_page_id from ingestion_checkpoints"
+                + " where application = ? and dump_file = ?",
+                (rs, row) -> {
+                    // without a reservation any page after the checkpoint may be stored already
+                    Long reserved = (Long) rs.getObject(5);
+                    return new IngestionCheckpoint(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getBoolean(4),
+                            reserved == null ? Long.MAX_VALUE : reserved);
+                },
+                application, dumpFile).stream().findFirst();
+    }
+
+    /**
+     * Stores the checkpoint unless the file is already marked as completed.
+     */
+    public void save(String application, String dumpFile, IngestionCheckpoint checkpoint) {
+        jdbcTemplate.update("""
+                        insert into ingestion_checkpoints
+                            (application, dump_file, last_page_id, block_offset, pages, completed, reserved_page_id,
+                             updated_at)
+                        values (?, ?, ?, ?, ?, ?, ?, now())
+                        on conflict (application, dump_file) do update
+                            set last_page_id     = excluded.last_page_id,
+                                block_offset     = excluded.block_offset,
+                                pages            = excluded.pages,
+                                completed        = excluded.completed,
+                                reserved_page_id = excluded.reserved_page_id,
+                                updated_at       = excluded.updated_at
+                        where not ingestion_checkpoints.completed
+                        """,
+                application, dumpFile, checkpoint.lastPageId(), checkpoint.blockOffset(), checkpoint.pages(),
+                checkpoint.completed(), checkpoint.reservedPageId());
+    }
+}
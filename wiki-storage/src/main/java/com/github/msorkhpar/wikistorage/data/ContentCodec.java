@@ -0,0 +1,161 @@
+package com.github.msorkhpar.wikistorage.data;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdException;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compresses page content with zstd and a dictionary shared by all pages, stored in {@code content_dictionaries}.
+ * With {@code app.content.compression: zstd} the content is written to {@code content_zstd} instead of
+ * {@code content}. The dictionary is trained once, from a pool of the first {@code dictionary-samples} pages which
+ * are compressed or as many as fit into a hundred times the dictionary size, and is kept for later runs. The pages
+ * compressed while the pool fills up, and all pages when the training fails, are compressed without a dictionary.
+ * <p>
+ * Both columns are read by {@link #decode}, so tables with partly compressed content can be read.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ContentCodec {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.content.compression:none}")
+    private String compression;
+    @Value("${app.content.level:3}")
+    private int level;
+    @Value("${app.content.dictionary-size:112KB}")
+    private DataSize dictionarySize;
+    @Value("${app.content.dictionary-samples:5000}")
+    private int dictionarySamples;
+
+    private final Map<Integer, ZstdDictDecompress> decompressors = new ConcurrentHashMap<>();
+    private volatile Dictionary dictionary;
+    private volatile boolean trainingFailed;
+    // the sample pool, until the dictionary is trained
+    private ZstdDictTrainer trainer;
+    private int samples;
+
+    @PostConstruct
+    void start() {
+        if (!"none".equals(compression) && !"zstd".equals(compression)) {
+            throw new IllegalStateException("app.content.compression must be none or zstd, not [" + compression + "]");
+        }
+        if (isEnabled()) {
+            jdbcTemplate.query("select id, dictionary from content_dictionaries order by id desc limit 1", rs -> {
+                dictionary = new Dictionary(rs.getInt(1), new ZstdDictCompress(rs.getBytes(2), level));
+                logger.info("Page content is compressed with dictionary [{}]", dictionary.id());
+            });
+        }
+    }
+
+    public boolean isEnabled() {
+        return "zstd".equals(compression);
+    }
+
+    /**
+     * @return the pages with their content compressed, or the given pages when compression is disabled
+     */
+    public List<WikipediaPage> encode(List<WikipediaPage> pages) {
+        if (!isEnabled() || pages.isEmpty()) {
+            return pages;
+        }
+        Dictionary current = dictionary(pages);
+        return pages.stream().map(page -> {
+            if (page.getContent() == null) {
+                return page;
+            }
+            byte[] content = page.getContent().getBytes(StandardCharsets.UTF_8);
+            byte[] compressed = current == null ? Zstd.compress(content, level) : Zstd.compress(content, current.compress());
+            return new WikipediaPage(page.getId(), page.getTitle(), null, page.getContentLength(), page.getRevisionId(),
+                    page.getSha1(), compressed, current == null ? null : current.id());
+        }).toList();
+    }
+
+    public String decode(WikipediaPage page) {
+        return decode(page.getContent(), page.getContentZstd(), page.getDictionaryId());
+    }
+
+    /**
+     * @return the plain content, or the decompressed one when the plain content is null
+     */
+    public String decode(String content, byte[] contentZstd, Integer dictionaryId) {
+        if (content != null || contentZstd == null) {
+            return content;
+        }
+        int size = (int) Zstd.getFrameContentSize(contentZstd);
+        byte[] decompressed = dictionaryId == null
+                ? Zstd.decompress(contentZstd, size)
+                : Zstd.decompress(contentZstd, decompressor(dictionaryId), size);
+        return new String(decompressed, StandardCharsets.UTF_8);
+    }
+
+    private ZstdDictDecompress decompressor(int dictionaryId) {
+        return decompressors.computeIfAbsent(dictionaryId, id -> new ZstdDictDecompress(jdbcTemplate.queryForObject(
+                "select dictionary from content_dictionaries where id = ?", byte[].class, id)));
+    }
+
+    private Dictionary dictionary(List<WikipediaPage> pages) {
+        Dictionary current = dictionary;
+        if (current != null || trainingFailed) {
+            return current;
+        }
+        synchronized (this) {
+            if (dictionary != null || trainingFailed) {
+                return dictionary;
+            }
+            int size = (int) dictionarySize.toBytes();
+            if (trainer == null) {
+                // zstd recommends about a hundred times the dictionary size of samples
+                trainer = new ZstdDictTrainer(size * 100, size);
+            }
+            boolean full = samples == dictionarySamples;
+            for (int i = 0; i < pages.size() && !full; i++) {
+                String content = pages.get(i).getContent();
+                if (content == null) {
+                    continue;
+                }
+                full = !trainer.addSample(content.getBytes(StandardCharsets.UTF_8)) || ++samples == dictionarySamples;
+            }
+            if (full) {
+                dictionary = train();
+            }
+            return dictionary;
+        }
+    }
+
+    private Dictionary train() {
+        byte[] trained;
+        try {
+            trained = trainer.trainSamples();
+        } catch (ZstdException e) {
+            trainingFailed = true;
+            logger.warn("No dictionary could be trained from [{}] pages, content is compressed without one: {}",
+                    samples, e.getMessage());
+            return null;
+        } finally {
+            trainer = null;
+        }
+        Integer id = jdbcTemplate.queryForObject(
+                "insert into content_dictionaries (dictionary) values (?) returning id", Integer.class, trained);
+        logger.info("Dictionary [{}] of [{}] bytes is trained from [{}] pages", id, trained.length, samples);
+        return new Dictionary(id, new ZstdDictCompress(trained, level));
+    }
+
+    private record Dictionary(int id, ZstdDictCompress compress) {
+    }
+}
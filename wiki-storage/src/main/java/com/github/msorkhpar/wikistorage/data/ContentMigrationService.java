@@ -0,0 +1,64 @@
+package com.github.msorkhpar.wikistorage.data;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Compresses the plain content of stored pages with {@link ContentCodec}, in batches ordered by page id so an
+ * interrupted run simply continues with the pages which are still plain. The space of the old rows is only given back
+ * to the operating system by a {@code VACUUM FULL} afterwards.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ContentMigrationService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ContentCodec contentCodec;
+
+    @Value("${app.content.migrate-existing:false}")
+    private boolean enabled;
+    @Value("${app.content.migration-batch-size:1000}")
+    private int batchSize;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void compressExisting() {
+        if (!contentCodec.isEnabled()) {
+            throw new IllegalStateException("app.content.migrate-existing needs app.content.compression: zstd");
+        }
+        long start = System.currentTimeMillis();
+        long lastId = Long.MIN_VALUE;
+        long pages = 0;
+        while (true) {
+            List<WikipediaPage> batch = jdbcTemplate.query(
+                    "select id, content from wikipedia_pages where id > ? and content is not null order by id limit ?",
+                    (rs, row) -> new WikipediaPage(rs.getLong(1), null, rs.getString(2), null, null, null),
+                    lastId, batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            List<WikipediaPage> compressed = contentCodec.encode(batch);
+            jdbcTemplate.batchUpdate(
+                    "update wikipedia_pages set content = null, content_zstd = ?, dictionary_id = ? where id = ?",
+                    compressed, compressed.size(), (statement, page) -> {
+                        statement.setBytes(1, page.getContentZstd());
+                        statement.setObject(2, page.getDictionaryId());
+                        statement.setLong(3, page.getId());
+                    });
+            lastId = batch.getLast().getId();
+            pages += batch.size();
+            if (pages % (batchSize * 100L) < batchSize) {
+                logger.info("[{}] pages are compressed, last page id [{}]", pages, lastId);
+            }
+        }
+        logger.info("Content of [{}] pages is compressed in [{}ms]", pages, System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.msorkhpar.wikistorage.data;
+
+import com.github.msorkhpar.wikistorage.utils.PackedTriple;
+import com.github.msorkhpar.wikistorage.utils.TripleBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The revision of an entity which is stored in the graph.
+ *
+ * @param subject  number of the entity's item id
+ * @param revision id of the dump revision, -1 when it is not known
+ * @param triples  the sorted, distinct statement triples of the revision, packed as in {@link PackedTriple}
+ */
+public record EntityRevision(long subject, long revision, long[] triples) {
+
+    private static final long[] NO_TRIPLES = new long[0];
+
+    /**
+     * Keeps the statements of the packed triples of an entity, without its qualifiers.
+     */
+    public static EntityRevision of(long subject, long revision, long[] packedTriples) {
+        long[] statements = Arrays.stream(packedTriples).filter(triple -> !PackedTriple.isQualifier(triple))
+                .sorted().distinct().toArray();
+        return new EntityRevision(subject, revision, statements);
+    }
+
+    /**
+     * @return true if both revisions are known and the same
+     */
+    public boolean isSameRevision(EntityRevision other) {
+        return other != null && revision >= 0 && revision == other.revision;
+    }
+
+    /**
+     * Adds the statements which this revision has and the stored one has not to {@code added}, and the other way
+     * around to {@code removed}.
+     *
+     * @param stored the stored revision of the same entity, null when it has none
+     */
+    public void diff(EntityRevision stored, TripleBuffer added, TripleBuffer removed) {
+        long[] before = stored == null ? NO_TRIPLES : stored.triples;
+        int i = 0;
+        int j = 0;
+        while (i < triples.length || j < before.length) {
+            if (j == before.length || i < triples.length && triples[i] < before[j]) {
+                add(added, triples[i++]);
+            } else if (i == triples.length || before[j] < triples[i]) {
+                add(removed, before[j++]);
+            } else {
+                i++;
+                j++;
+            }
+        }
+    }
+
+    /**
+     * Adds every statement of this revision to the buffer.
+     */
+    public void statements(TripleBuffer buffer) {
+        for (long triple : triples) {
+            add(buffer, triple);
+        }
+    }
+
+    private void add(TripleBuffer buffer, long triple) {
+        buffer.add(subject, PackedTriple.predicate(triple), PackedTriple.object(triple));
+    }
+
+    byte[] triplesBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(triples.length * Long.BYTES);
+        buffer.asLongBuffer().put(triples);
+        return buffer.array();
+    }
+
+    static long[] triples(byte[] bytes) {
+        long[] triples = new long[bytes.length / Long.BYTES];
+        ByteBuffer.wrap(bytes).asLongBuffer().get(triples);
+        return triples;
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.msorkhpar.wikistorage.data;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the revision and the statements of every entity in the graph, so a newer dump only has to apply what
+ * changed. Revisions are recorded with {@code app.incremental.track-revisions} and always in incremental runs.
+ */
+@Service
+@RequiredArgsConstructor
+public class EntityRevisionService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PgCopyWriter copyWriter;
+
+    @Value("${app.incremental.enabled:false}")
+    private boolean incremental;
+    @Value("${app.incremental.track-revisions:false}")
+    private boolean trackRevisions;
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public boolean isTracking() {
+        return incremental || trackRevisions;
+    }
+
+    /**
+     * @return the stored revisions of the given subjects, subjects without one are missing
+     */
+    public Map<Long, EntityRevision> find(long[] subjects) {
+        Map<Long, EntityRevision> revisions = new HashMap<>(subjects.length * 2);
+        if (subjects.length == 0) {
+            return revisions;
+        }
+        Long[] boxed = Arrays.stream(subjects).boxed().toArray(Long[]::new);
+        jdbcTemplate.query(
+                "select subject, revision_id, triples from entity_revisions where subject = any(?)",
+                statement -> statement.setArray(1, statement.getConnection().createArrayOf("bigint", boxed)),
+                rs -> {
+                    long subject = rs.getLong(1);
+                    revisions.put(subject,
+                            new EntityRevision(subject, rs.getLong(2), EntityRevision.triples(rs.getBytes(3))));
+                });
+        return revisions;
+    }
+
+    /**
+     * @return up to {@code limit} stored subjects after the given one, in their order
+     */
+    public long[] subjectsAfter(long subject, int limit) {
+        return jdbcTemplate.queryForList(
+                        "select subject from entity_revisions where subject > ? order by subject limit ?",
+                        Long.class, subject, limit)
+                .stream().mapToLong(Long::longValue).toArray();
+    }
+
+    public void save(List<EntityRevision> revisions) {
+        copyWriter.write(PgCopyWriter.ENTITY_REVISIONS, revisions);
+    }
+
+    public void delete(long[] subjects) {
+        if (subjects.length == 0) {
+            return;
+        }
+        Long[] boxed = Arrays.stream(subjects).boxed().toArray(Long[]::new);
+        jdbcTemplate.update("delete from entity_revisions where subject = any(?)",
+                statement -> statement.setArray(1, statement.getConnection().createArrayOf("bigint", boxed)));
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.msorkhpar.wikistorage.data;
+
+/**
+ * How far a dump file is stored.
+ *
+ * @param lastPageId     id of the last page which is stored together with every page before it
+ * @param blockOffset    bit offset of a bzip2 block in the dump file before the start of that page
+ * @param pages          number of pages stored so far
+ * @param completed      the whole file is stored
+ * @param reservedPageId no page after this id was handed to the writers, pages up to it may be stored although they
+ *                       are after {@code lastPageId}
+ */
+public record IngestionCheckpoint(long lastPageId, long blockOffset, long pages, boolean completed,
+                                  long reservedPageId) {
+
+    public static final IngestionCheckpoint START = new IngestionCheckpoint(-1, 0, 0, false, -1);
+
+    public boolean isStart() {
+        return lastPageId < 0;
+    }
+
+    public IngestionCheckpoint reserving(long pageId) {
+        return new IngestionCheckpoint(lastPageId, blockOffset, pages, completed, pageId);
+    }
+}
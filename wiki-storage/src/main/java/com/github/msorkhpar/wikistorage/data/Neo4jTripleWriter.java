@@ -0,0 +1,412 @@
+package com.github.msorkhpar.wikistorage.data;
+
+import com.github.msorkhpar.wikistorage.utils.LongHashSet;
+import com.github.msorkhpar.wikistorage.utils.TripleBuffer;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Query;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.async.AsyncSession;
+import org.neo4j.driver.async.AsyncTransactionContext;
+import org.neo4j.driver.async.ResultCursor;
+import org.neo4j.driver.exceptions.ClientException;
+import org.neo4j.driver.exceptions.RetryableException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Collects triples of many pages into large UNWIND batches and commits them with the async driver, keeping up to
+ * {@code max-in-flight} transactions open at once. A batch is sent when it is full or when its first triple waited
+ * longer than {@code flush-interval}. Batches failing with a transient error are retried until they succeed.
+ * <p>
+ * A batch is sent as three parallel lists of numbers instead of one map per triple. With the {@link NodeRegistry}
+ * a batch first creates the nodes it claimed, merges the nodes other batches are still creating and then matches both
+ * ends of its relationships. If the registry turns out to be wrong, the nodes of the batch are merged instead.
+ * <p>
+ * With {@code merge-relationships}, which incremental runs use, relationships and nodes are merged instead, so
+ * triples already in the graph are not duplicated; {@link #remove(TripleBuffer)} deletes the ones a newer revision
+ * dropped. A resumed run merges the triples of the pages which its crashed run may have stored, see
+ * {@link #write(TripleBuffer, boolean)}.
+ * <p>
+ * Relationships are {@code HAS_TYPE} with the predicate in their {@code type} property, or with
+ * {@code typed-relationships} typed by the predicate itself, such as {@code :P31}. A relationship type can not be a
+ * parameter, so the triples of a batch are then written with one statement per predicate.
+ * <p>
+ * Every attempt is timed as {@code neo4j.write}, tagged with its outcome: {@code success}, {@code retry},
+ * {@code fallback} to merging, or {@code failure}.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class Neo4jTripleWriter {
+
+    private static final String CREATE_NODES = """
+            UNWIND $nodes AS node
+            CREATE (:WikiEntity {entityName: 'Q' + toString(node)})
+            """;
+    private static final String MERGE_NODES = """
+            UNWIND $nodes AS node
+            MERGE (:WikiEntity {entityName: 'Q' + toString(node)})
+            """;
+    // %s is the relationship: its type and, in the generic form, its type property
+    private static final String CREATE_RELATIONSHIPS = """
+            UNWIND range(0, size($subjects) - 1) AS i
+            MATCH (source:WikiEntity {entityName: 'Q' + toString($subjects[i])})
+            MATCH (target:WikiEntity {entityName: 'Q' + toString($objects[i])})
+            CREATE (source)-[r:%s]->(target)
+            RETURN count(r) AS created
+            """;
+    private static final String MERGE_RELATIONSHIPS = """
+            UNWIND range(0, size($subjects) - 1) AS i
+            MATCH (source:WikiEntity {entityName: 'Q' + toString($subjects[i])})
+            MATCH (target:WikiEntity {entityName: 'Q' + toString($objects[i])})
+            MERGE (source)-[r:%s]->(target)
+            RETURN count(r) AS created
+            """;
+    private static final String DELETE_RELATIONSHIPS = """
+            UNWIND range(0, size($subjects) - 1) AS i
+            MATCH (:WikiEntity {entityName: 'Q' + toString($subjects[i])})
+                  -[r:%s]->
+                  (:WikiEntity {entityName: 'Q' + toString($objects[i])})
+            DELETE r
+            """;
+    private static final String GENERIC_RELATIONSHIP = "HAS_TYPE {type: 'P' + toString($predicates[i])}";
+    private static final String CONSTRAINT_VIOLATION = "Neo.ClientError.Schema.ConstraintValidationFailed";
+    private static final long[] NO_NODES = new long[0];
+
+    private final Optional<Driver> driver;
+    private final NodeRegistry nodeRegistry;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.neo4j.batch-size:20000}")
+    private int batchSize;
+    @Value("${app.neo4j.flush-interval:5s}")
+    private Duration flushInterval;
+    @Value("${app.neo4j.max-in-flight:4}")
+    private int maxInFlight;
+    @Value("${app.neo4j.max-retry-backoff:30s}")
+    private Duration maxRetryBackoff;
+    @Value("${app.neo4j.merge-relationships:${app.incremental.enabled:false}}")
+    private boolean mergeRelationships;
+    @Value("${app.neo4j.typed-relationships:false}")
+    private boolean typedRelationships;
+
+    private final Object lock = new Object();
+    private final Set<CompletableFuture<Void>> pending = ConcurrentHashMap.newKeySet();
+    private Semaphore inFlight;
+    private ScheduledExecutorService flusher;
+    private ScheduledExecutorService retries;
+    private Batch current;
+    private DistributionSummary batchRows;
+
+    @PostConstruct
+    void start() {
+        inFlight = new Semaphore(maxInFlight);
+        current = new Batch(batchSize, mergeRelationships);
+        flusher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("neo4j-flusher").daemon().factory());
+        retries = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("neo4j-retries").daemon().factory());
+        long period = Math.max(flushInterval.toMillis() / 2, 10);
+        flusher.scheduleAtFixedRate(this::flushExpired, period, period, TimeUnit.MILLISECONDS);
+        batchRows = DistributionSummary.builder("neo4j.batch.size").baseUnit("triples").register(meterRegistry);
+        Gauge.builder("neo4j.batches.in-flight", () -> maxInFlight - inFlight.availablePermits())
+                .register(meterRegistry);
+        Gauge.builder("neo4j.batches.pending", pending, Set::size).register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() {
+        flusher.shutdownNow();
+        try {
+            flush().get(maxRetryBackoff.toMillis() * 2, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            logger.error("[{}] triple batches could not be committed before shutdown", pending.size(), e);
+        }
+        retries.shutdownNow();
+    }
+
+    public boolean isTypedRelationships() {
+        return typedRelationships;
+    }
+
+    /**
+     * Adds the triples to the current batch. Blocks while {@code max-in-flight} transactions are open and a batch is
+     * ready to be sent, so the callers are throttled by Neo4j.
+     *
+     * @return a future which completes when every given triple is committed
+     */
+    public CompletableFuture<Void> write(TripleBuffer triples) {
+        return write(triples, false);
+    }
+
+    /**
+     * Like {@link #write(TripleBuffer)}, with {@code merge} the relationships of the batches holding the triples are
+     * merged even without {@code merge-relationships}, because some of them may be in the graph already.
+     */
+    public CompletableFuture<Void> write(TripleBuffer triples, boolean merge) {
+        if (driver.isEmpty() || triples.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<Batch> ready = new ArrayList<>();
+        Set<CompletableFuture<Void>> committed = new HashSet<>();
+        synchronized (lock) {
+            for (int i = 0; i < triples.size(); i++) {
+                if (current.rows.isEmpty() || i == 0) {
+                    committed.add(current.committed);
+                }
+                current.merge |= merge;
+                current.add(triples.subject(i), triples.predicate(i), triples.object(i));
+                if (current.rows.size() >= batchSize) {
+                    ready.add(detach());
+                }
+            }
+        }
+        ready.forEach(this::dispatch);
+        return CompletableFuture.allOf(committed.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Sends the current batch right away.
+     *
+     * @return a future which completes when every batch sent so far is committed
+     */
+    public CompletableFuture<Void> flush() {
+        Batch batch;
+        synchronized (lock) {
+            batch = current.rows.isEmpty() ? null : detach();
+        }
+        if (batch != null) {
+            dispatch(batch);
+        }
+        return CompletableFuture.allOf(pending.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Deletes the relationships of the given triples, in batches of {@code batch-size}. Unlike {@link #write} it
+     * returns once they are deleted.
+     */
+    public void remove(TripleBuffer triples) {
+        if (driver.isEmpty() || triples.isEmpty()) {
+            return;
+        }
+        try (Session session = driver.get().session()) {
+            for (int from = 0; from < triples.size(); from += batchSize) {
+                TripleBuffer chunk = new TripleBuffer(batchSize);
+                for (int i = from; i < Math.min(triples.size(), from + batchSize); i++) {
+                    chunk.add(triples.subject(i), triples.predicate(i), triples.object(i));
+                }
+                List<Query> queries = relationships(DELETE_RELATIONSHIPS, chunk);
+                session.executeWriteWithoutResult(tx -> queries.forEach(query -> tx.run(query).consume()));
+            }
+        }
+    }
+
+    private void flushExpired() {
+        Batch batch = null;
+        synchronized (lock) {
+            if (!current.rows.isEmpty() && System.nanoTime() - current.createdAt >= flushInterval.toNanos()) {
+                batch = detach();
+            }
+        }
+        if (batch != null) {
+            dispatch(batch);
+        }
+    }
+
+    private Batch detach() {
+        Batch batch = current;
+        current = new Batch(batchSize, mergeRelationships);
+        pending.add(batch.committed);
+        batch.committed.whenComplete((ignored, error) -> pending.remove(batch.committed));
+        return batch;
+    }
+
+    private void dispatch(Batch batch) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            batch.committed.completeExceptionally(e);
+            return;
+        }
+        batch.plan(nodeRegistry, !batch.merge);
+        batchRows.record(batch.rows.size());
+        submit(batch, 0);
+    }
+
+    private void submit(Batch batch, int attempt) {
+        AsyncSession session = driver.orElseThrow().session(AsyncSession.class);
+        long start = System.nanoTime();
+        List<Query> relationships = relationships(batch.merge ? MERGE_RELATIONSHIPS : CREATE_RELATIONSHIPS,
+                batch.rows);
+        session.executeWriteAsync(tx -> write(tx, batch, relationships))
+                .whenComplete((summary, error) -> session.closeAsync())
+                .whenComplete((summary, error) -> {
+                    if (error == null) {
+                        record(start, "success");
+                        inFlight.release();
+                        nodeRegistry.commit(batch.created);
+                        nodeRegistry.commit(batch.merged);
+                        batch.committed.complete(null);
+                        return;
+                    }
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (!batch.mergeAll && (cause instanceof MissingNodesException
+                                            || cause instanceof ClientException client
+                                               && CONSTRAINT_VIOLATION.equals(client.code()))) {
+                        logger.warn("Node registry is out of sync with Neo4j, merging the nodes of the batch: {}",
+                                cause.getMessage());
+                        record(start, "fallback");
+                        batch.mergeAll();
+                        submit(batch, attempt);
+                        return;
+                    }
+                    if (cause instanceof RetryableException) {
+                        record(start, "retry");
+                        long backoff = Math.min(maxRetryBackoff.toMillis(), 100L << Math.min(attempt, 16));
+                        logger.warn("Batch of [{}] triples failed, retry [{}] in [{}ms]: {}",
+                                batch.rows.size(), attempt + 1, backoff, cause.getMessage());
+                        retries.schedule(() -> submit(batch, attempt + 1), backoff, TimeUnit.MILLISECONDS);
+                        return;
+                    }
+                    record(start, "failure");
+                    logger.error("Exception during triple insertion, [{}] triples are not stored",
+                            batch.rows.size(), cause);
+                    inFlight.release();
+                    batch.committed.completeExceptionally(cause);
+                });
+    }
+
+    private void record(long start, String outcome) {
+        Timer.builder("neo4j.write").tag("outcome", outcome).publishPercentileHistogram().register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the statement of the triples in the generic form, one statement per predicate in the typed form
+     */
+    private List<Query> relationships(String template, TripleBuffer triples) {
+        if (!typedRelationships) {
+            return List.of(new Query(template.formatted(GENERIC_RELATIONSHIP), Map.of(
+                    "subjects", triples.subjects(),
+                    "predicates", triples.predicates(),
+                    "objects", triples.objects()
+            )));
+        }
+        Map<Integer, TripleBuffer> byPredicate = new TreeMap<>();
+        for (int i = 0; i < triples.size(); i++) {
+            byPredicate.computeIfAbsent(triples.predicate(i), predicate -> new TripleBuffer())
+                    .add(triples.subject(i), triples.predicate(i), triples.object(i));
+        }
+        List<Query> queries = new ArrayList<>(byPredicate.size());
+        byPredicate.forEach((predicate, rows) -> queries.add(new Query(template.formatted("P" + predicate), Map.of(
+                "subjects", rows.subjects(),
+                "objects", rows.objects()
+        ))));
+        return queries;
+    }
+
+    private static CompletionStage<Void> write(AsyncTransactionContext tx, Batch batch, List<Query> relationships) {
+        CompletionStage<Long> created = run(tx, CREATE_NODES, Map.of("nodes", batch.created))
+                .thenCompose(ignored -> run(tx, MERGE_NODES, Map.of("nodes", batch.merged)))
+                .thenApply(ignored -> 0L);
+        for (Query relationship : relationships) {
+            created = created.thenCompose(count -> tx.runAsync(relationship)
+                    .thenCompose(ResultCursor::singleAsync)
+                    .thenApply(row -> count + row.get("created").asLong()));
+        }
+        return created.thenAccept(count -> {
+            if (count != batch.rows.size()) {
+                throw new MissingNodesException(batch.rows.size() - count);
+            }
+        });
+    }
+
+    private static CompletionStage<?> run(AsyncTransactionContext tx, String query, Map<String, Object> parameters) {
+        long[] nodes = (long[]) parameters.get("nodes");
+        if (nodes.length == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return tx.runAsync(query, parameters).thenCompose(ResultCursor::consumeAsync);
+    }
+
+    private static final class MissingNodesException extends RuntimeException {
+        private MissingNodesException(long missing) {
+            super("[" + missing + "] relationships did not find their nodes");
+        }
+    }
+
+    private static final class Batch {
+        private final TripleBuffer rows;
+        private final CompletableFuture<Void> committed = new CompletableFuture<>();
+        private long createdAt;
+        // nodes this batch claimed and creates, and the nodes it merges
+        private long[] created = NO_NODES;
+        private long[] merged = NO_NODES;
+        private boolean mergeAll;
+        // merge the relationships instead of creating them
+        private boolean merge;
+
+        private Batch(int batchSize, boolean merge) {
+            this.rows = new TripleBuffer(batchSize);
+            this.merge = merge;
+        }
+
+        private void add(long subject, int predicate, long object) {
+            if (rows.isEmpty()) {
+                createdAt = System.nanoTime();
+            }
+            rows.add(subject, predicate, object);
+        }
+
+        /**
+         * @param claim false to merge the nodes which are not known to be committed instead of claiming them
+         */
+        private void plan(NodeRegistry registry, boolean claim) {
+            LongHashSet nodes = new LongHashSet(rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                nodes.add(rows.subject(i));
+                nodes.add(rows.object(i));
+            }
+            if (!registry.isEnabled()) {
+                merged = nodes.toArray();
+                mergeAll = true;
+                return;
+            }
+            LongHashSet create = new LongHashSet();
+            LongHashSet merge = new LongHashSet();
+            for (long node : nodes.toArray()) {
+                if (registry.isCommitted(node)) {
+                    continue;
+                }
+                if (claim && registry.claim(node)) {
+                    create.add(node);
+                } else {
+                    merge.add(node);
+                }
+            }
+            created = create.toArray();
+            merged = merge.toArray();
+        }
+
+        private void mergeAll() {
+            LongHashSet nodes = new LongHashSet(rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                nodes.add(rows.subject(i));
+                nodes.add(rows.object(i));
+            }
+            merged = nodes.toArray();
+            mergeAll = true;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.github.msorkhpar.wikistorage.data;
+
+import com.github.msorkhpar.wikistorage.utils.QidSet;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers which {@code WikiEntity} nodes exist, so the triple writer creates a node once and matches it afterwards
+ * instead of merging it in every batch. A node is claimed by the batch which creates it and becomes committed with
+ * that batch; other batches merge claimed nodes until then.
+ * <p>
+ * The committed nodes are written to {@code app.neo4j.node-registry.snapshot} every {@code snapshot-interval} and on
+ * shutdown, and are loaded from there on startup. A snapshot with more nodes than the database has is ignored.
+ * <p>
+ * The registry is only enabled when the graph is written through Bolt, {@code app.graph.output} is {@code neo4j}.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class NodeRegistry {
+
+    private final Optional<Driver> driver;
+
+    @Value("${app.neo4j.node-registry.enabled:true}")
+    private volatile boolean enabled;
+    @Value("${app.graph.output:neo4j}")
+    private String graphOutput;
+    @Value("${app.neo4j.node-registry.snapshot:}")
+    private String snapshot;
+    @Value("${app.neo4j.node-registry.snapshot-interval:10m}")
+    private Duration snapshotInterval;
+
+    private volatile QidSet claimed = new QidSet();
+    private volatile QidSet committed = new QidSet();
+    private ScheduledExecutorService snapshots;
+
+    public boolean isEnabled() {
+        return enabled && driver.isPresent() && "neo4j".equals(graphOutput);
+    }
+
+    /**
+     * Falls back to merging every node, e.g. when the uniqueness constraint the registry relies on is missing.
+     */
+    public void disable(String reason) {
+        if (enabled) {
+            enabled = false;
+            logger.warn("Node registry is disabled, every node is merged: {}", reason);
+        }
+    }
+
+    /**
+     * @return true if the caller is the first one to claim the node and has to create it
+     */
+    public boolean claim(long node) {
+        return claimed.add(node);
+    }
+
+    public boolean isCommitted(long node) {
+        return committed.contains(node);
+    }
+
+    public void commit(long[] nodes) {
+        for (long node : nodes) {
+            claimed.add(node);
+            committed.add(node);
+        }
+    }
+
+    @PostConstruct
+    void load() {
+        if (!isEnabled() || snapshot.isBlank()) {
+            return;
+        }
+        Path file = Path.of(snapshot);
+        if (Files.exists(file)) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                QidSet nodes = QidSet.readFrom(input);
+                long registered = nodes.count();
+                long stored = countStoredNodes();
+                if (registered > stored) {
+                    logger.warn("Node registry snapshot [{}] has [{}] nodes but Neo4j has [{}], ignoring it",
+                            file, registered, stored);
+                } else {
+                    committed = nodes;
+                    claimed = nodes.copy();
+                    logger.info("[{}] nodes are loaded from [{}]", registered, file);
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.error("Node registry snapshot [{}] could not be loaded", file, e);
+            }
+        }
+        snapshots = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("node-registry-snapshot").daemon().factory());
+        snapshots.scheduleWithFixedDelay(this::save, snapshotInterval.toMillis(), snapshotInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (snapshots != null) {
+            snapshots.shutdownNow();
+            save();
+        }
+    }
+
+    private synchronized void save() {
+        Path file = Path.of(snapshot);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        long start = System.currentTimeMillis();
+        try {
+            try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+                committed.writeTo(output);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Node registry snapshot is written to [{}] in [{}ms]", file, System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            logger.error("Node registry snapshot [{}] could not be written", file, e);
+        }
+    }
+
+    private long countStoredNodes() {
+        try (Session session = driver.orElseThrow().session()) {
+            return session.run("MATCH (n:WikiEntity) RETURN count(n)").single().get(0).asLong();
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package com.github.msorkhpar.wikistorage.data;
 
-import com.github.msorkhpar.wikistorage.utils.KGTriple;
+import com.github.msorkhpar.wikistorage.utils.TripleBuffer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.neo4j.driver.*;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 
 @Service
@@ -14,58 +15,110 @@ import java.util.*;
 @RequiredArgsConstructor
 public class PersistenceService {
 
+    // plain indexes on entityName, the one created by older versions has a generated name
+    private static final String NEO4J_LEGACY_INDEXES = """
+            SHOW INDEXES YIELD name, labelsOrTypes, properties, owningConstraint
+            WHERE labelsOrTypes = ['WikiEntity'] AND properties = ['entityName'] AND owningConstraint IS NULL
+            RETURN name
+            """;
+    public static final String NEO4J_CONSTRAINT = "CREATE CONSTRAINT wiki_entity_name_unique IF NOT EXISTS "
+                                                  + "FOR (n:WikiEntity) REQUIRE n.entityName IS UNIQUE";
+    // predicate lookups of the generic form, the typed form has a relationship type per predicate instead
+    public static final String NEO4J_RELATIONSHIP_INDEX = "CREATE INDEX has_type_type IF NOT EXISTS "
+                                                          + "FOR ()-[r:HAS_TYPE]-() ON (r.type)";
+
     private final Optional<Driver> driver;
-    private final SubjectRepo subjectRepo;
-    private final WikiPageRepo wikiPageRepo;
+    private final NodeRegistry nodeRegistry;
+    private final PgCopyWriter copyWriter;
+    private final Neo4jTripleWriter tripleWriter;
+    private final ContentCodec contentCodec;
 
+    /**
+     * Replaces the plain index on {@code entityName} with a uniqueness constraint, which is backed by an index too.
+     * Without the constraint the node registry could create duplicated nodes, so it is disabled. Relationships of the
+     * generic form get an index on their {@code type}.
+     */
     public void createNeo4jIndexes() {
         if (driver.isPresent()) {
             try (Session session = driver.get().session()) {
+                // the constraint can not be created while a plain index covers the same property
+                List<String> legacyIndexes = session.executeRead(
+                        tx -> tx.run(NEO4J_LEGACY_INDEXES).list(row -> row.get("name").asString()));
+                for (String index : legacyIndexes) {
+                    logger.info("Dropping the index [{}] of WikiEntity.entityName", index);
+                    session.executeWriteWithoutResult(
+                            tx -> tx.run("DROP INDEX `" + index.replace("`", "``") + "` IF EXISTS").consume());
+                }
                 session.executeWriteWithoutResult(tx -> {
-                    var result = tx.run("CREATE INDEX FOR (n:WikiEntity) ON (n.entityName)").consume();
+                    var result = tx.run(NEO4J_CONSTRAINT).consume();
                     logger.info(result.toString());
                 });
             } catch (Exception e) {
-                logger.info("Neo4j index could not be created");
+                logger.warn("Neo4j constraint could not be created", e);
+                nodeRegistry.disable(e.getMessage());
+            }
+            if (tripleWriter.isTypedRelationships()) {
+                return;
+            }
+            // only slows down the lookups by predicate, the registry does not depend on it
+            try (Session session = driver.get().session()) {
+                session.executeWriteWithoutResult(tx -> tx.run(NEO4J_RELATIONSHIP_INDEX).consume());
+            } catch (Exception e) {
+                logger.warn("Neo4j index on the type of HAS_TYPE relationships could not be created", e);
             }
         }
     }
 
-    // https://github.com/vikramshanbogar/Neo4j-Java
-    public boolean persistTriples(List<KGTriple> triples) {
+    /**
+     * Queues the triples on the batching writer.
+     *
+     * @return a future which completes when the triples are committed, empty when no Neo4j is configured
+     */
+    public Optional<CompletableFuture<Void>> persistTriples(TripleBuffer triples) {
+        return persistTriples(triples, false);
+    }
+
+    /**
+     * Like {@link #persistTriples(TripleBuffer)}, with {@code merge} the relationships are merged because some of them
+     * may be stored already.
+     */
+    public Optional<CompletableFuture<Void>> persistTriples(TripleBuffer triples, boolean merge) {
         if (driver.isPresent()) {
-            List<Map<String, Object>> paramsList = triples.stream()
-                    .map(triple -> Map.<String, Object>of(
-                            "subject", triple.getSubjectQid(),
-                            "object", triple.getObjectQid(),
-                            "predicate", triple.getPropertyId()
-                    ))
-                    .toList();
-            try (Session session = driver.get().session()) {
-                session.executeWriteWithoutResult(tx -> {
-                    var params = Map.<String, Object>of("props", paramsList);
-                    tx.run("""
-                            UNWIND $props AS triple
-                            MERGE (source:WikiEntity {entityName: triple.subject})
-                            MERGE (target:WikiEntity {entityName: triple.object})
-                            CREATE (source)-[r:HAS_TYPE {type: triple.predicate}]->(target)
-                            """, params
-                    );
-                });
-                return true;
-            } catch (Exception e) {
-                logger.error("Exception during triple insertion", e);
-                throw e;
-            }
+            return Optional.of(tripleWriter.write(triples, merge));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Deletes the relationships of the triples, returns once they are deleted.
+     */
+    public void removeTriples(TripleBuffer triples) {
+        if (driver.isPresent()) {
+            tripleWriter.remove(triples);
         }
-        return false;
     }
 
-    public void persistSubject(String subjectName, String label, String description) {
-        subjectRepo.save(new Subject(subjectName, label, description));
+    /**
+     * Waits until every queued triple is committed.
+     */
+    public void awaitTriples() {
+        tripleWriter.flush().join();
+    }
+
+    public void persistSubjects(List<Subject> subjects) {
+        copyWriter.write(PgCopyWriter.SUBJECTS, subjects);
+    }
+
+    /**
+     * Writes the pages and their leads in one transaction. A page whose lead was lost would be skipped as unchanged by
+     * the next run, so neither is stored without the other.
+     */
+    public void persistWikiPages(List<WikipediaPage> pages, List<WikipediaPageLead> leads) {
+        copyWriter.write(new PgCopyWriter.Rows<>(PgCopyWriter.WIKIPEDIA_PAGES, contentCodec.encode(pages)),
+                new PgCopyWriter.Rows<>(PgCopyWriter.WIKIPEDIA_PAGE_LEADS, leads));
     }
 
-    public WikipediaPage persistWikiPage(Long id, String title, String content) {
-        return wikiPageRepo.save(new WikipediaPage(id, title, content, content.length()));
+    public void persistWikiRedirects(List<WikipediaRedirect> redirects) {
+        copyWriter.write(PgCopyWriter.WIKIPEDIA_REDIRECTS, redirects);
     }
 }
\ No newline at end of file
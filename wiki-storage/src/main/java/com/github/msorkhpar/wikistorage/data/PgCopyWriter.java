@@ -0,0 +1,317 @@
+package com.github.msorkhpar.wikistorage.data;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.util.PSQLState;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Writes rows with {@code COPY ... FROM STDIN} in the text format, streaming them to the server in chunks of
+ * {@code copy-buffer-size} bytes. A batch is copied straight into its table; if it collides with rows of a previous
+ * run, it is copied into a temporary table instead and merged with {@code INSERT ... ON CONFLICT DO UPDATE}.
+ * <p>
+ * At most {@code max-concurrent-writes} batches are written at once, so writers on virtual threads wait here instead of
+ * timing out on the connection pool.
+ * <p>
+ * Writes are timed as {@code postgres.write}, tagged with the table, the mode ({@code copy} or {@code upsert}) and
+ * the outcome.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PgCopyWriter {
+
+    private static final String UNIQUE_VIOLATION = PSQLState.UNIQUE_VIOLATION.getState();
+
+    public static final CopyTable<Subject> SUBJECTS = new CopyTable<>("subjects",
+            List.of("name", "label", "description"),
+            subject -> new Object[]{subject.getName(), subject.getLabel(), subject.getDescription()});
+
+    public static final CopyTable<WikipediaPage> WIKIPEDIA_PAGES = new CopyTable<>("wikipedia_pages",
+            List.of("id", "title", "content", "content_length", "revision_id", "sha1", "content_zstd",
+                    "dictionary_id", "processed"),
+            // a written page is new or changed, so it has to be processed again
+            page -> new Object[]{page.getId(), page.getTitle(), page.getContent(), page.getContentLength(),
+                    page.getRevisionId(), page.getSha1(), bytea(page.getContentZstd()), page.getDictionaryId(), false});
+
+    public static final CopyTable<WikipediaRedirect> WIKIPEDIA_REDIRECTS = new CopyTable<>("wikipedia_redirects",
+            List.of("id", "title", "target"),
+            redirect -> new Object[]{redirect.id(), redirect.title(), redirect.target()});
+
+    public static final CopyTable<WikipediaPageLead> WIKIPEDIA_PAGE_LEADS = new CopyTable<>("wikipedia_page_leads",
+            List.of("page_id", "lead", "links"),
+            lead -> new Object[]{lead.pageId(), lead.lead(), textArray(lead.links())});
+
+    public static final CopyTable<SummaryCandidates> SUMMARY_CANDIDATES = new CopyTable<>("summary_candidates",
+            List.of("page_id", "revision_id", "candidates"),
+            candidates -> new Object[]{candidates.pageId(), candidates.revisionId(), candidates.candidates()});
+
+    public static final CopyTable<EntityRevision> ENTITY_REVISIONS = new CopyTable<>("entity_revisions",
+            List.of("subject", "revision_id", "triples"),
+            revision -> new Object[]{revision.subject(), revision.revision(), bytea(revision.triplesBytes())});
+
+    private final DataSource dataSource;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.storage.copy-buffer-size:8MB}")
+    private DataSize bufferSize;
+    @Value("${app.storage.max-concurrent-writes:${spring.datasource.hikari.maximum-pool-size:10}}")
+    private int maxConcurrentWrites;
+
+    private Semaphore connections;
+
+    @PostConstruct
+    void start() {
+        connections = new Semaphore(maxConcurrentWrites, true);
+    }
+
+    public <T> void write(CopyTable<T> table, List<T> rows) {
+        write(new Rows<>(table, rows));
+    }
+
+    /**
+     * Writes the rows of several tables in one transaction, either all of them are stored or none.
+     */
+    public void write(Rows<?>... tables) {
+        List<Rows<?>> batches = Arrays.stream(tables).filter(rows -> !rows.rows().isEmpty()).toList();
+        if (batches.isEmpty()) {
+            return;
+        }
+        connections.acquireUninterruptibly();
+        try {
+            copyRows(batches);
+        } finally {
+            connections.release();
+        }
+    }
+
+    private static String bytea(byte[] value) {
+        return value == null ? null : "\\x" + HexFormat.of().formatHex(value);
+    }
+
+    /**
+     * @return the array literal, every element quoted, which is escaped once more as a COPY value
+     */
+    private static String textArray(List<String> values) {
+        StringBuilder literal = new StringBuilder("{");
+        for (String value : values) {
+            if (literal.length() > 1) {
+                literal.append(',');
+            }
+            literal.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    literal.append('\\');
+                }
+                literal.append(c);
+            }
+            literal.append('"');
+        }
+        return literal.append('}').toString();
+    }
+
+    private void copyRows(List<Rows<?>> batches) {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+                for (Rows<?> batch : batches) {
+                    copyRows(connection, copyManager, batch);
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Copying " + batches.stream()
+                    .map(batch -> "[" + batch.rows().size() + "] rows into [" + batch.table().name() + "]")
+                    .collect(Collectors.joining(" and ")) + " failed", e);
+        }
+    }
+
+    private <T> void copyRows(Connection connection, CopyManager copyManager, Rows<T> batch) throws SQLException {
+        CopyTable<T> table = batch.table();
+        List<T> rows = batch.rows();
+        DistributionSummary.builder("postgres.batch.size").baseUnit("rows").tag("table", table.name())
+                .register(meterRegistry).record(rows.size());
+        long start = System.nanoTime();
+        String mode = "copy";
+        String outcome = "failure";
+        try {
+            Savepoint savepoint = connection.setSavepoint();
+            try {
+                copy(copyManager, table.name(), table, rows);
+            } catch (SQLException e) {
+                if (!UNIQUE_VIOLATION.equals(e.getSQLState())) {
+                    throw e;
+                }
+                connection.rollback(savepoint);
+                logger.debug("[{}] rows collide with existing rows of [{}], upserting them", rows.size(), table.name());
+                mode = "upsert";
+                upsert(connection, copyManager, table, rows);
+            }
+            outcome = "success";
+        } finally {
+            Timer.builder("postgres.write").tags("table", table.name(), "mode", mode, "outcome", outcome)
+                    .publishPercentileHistogram().register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private <T> void upsert(Connection connection, CopyManager copyManager, CopyTable<T> table, List<T> rows)
+            throws SQLException {
+        String staging = table.name() + "_staging";
+        String key = table.columns().getFirst();
+        String columns = String.join(", ", table.columns());
+        String updates = table.columns().stream().skip(1)
+                .map(column -> column + " = excluded." + column)
+                .collect(Collectors.joining(", "));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create temp table if not exists " + staging
+                              + " (like " + table.name() + " including defaults) on commit delete rows");
+            copy(copyManager, staging, table, rows);
+            statement.execute("insert into " + table.name() + " (" + columns + ")"
+                              + " select distinct on (" + key + ") " + columns + " from " + staging
+                              + " on conflict (" + key + ") do update set " + updates);
+        }
+    }
+
+    private <T> void copy(CopyManager copyManager, String target, CopyTable<T> table, List<T> rows)
+            throws SQLException {
+        int limit = (int) bufferSize.toBytes();
+        RowBuffer buffer = new RowBuffer(limit + (limit >> 2));
+        CopyIn copyIn = copyManager.copyIn(
+                "copy " + target + " (" + String.join(", ", table.columns()) + ") from stdin");
+        try {
+            for (T row : rows) {
+                buffer.append(table.values().apply(row));
+                if (buffer.length >= limit) {
+                    copyIn.writeToCopy(buffer.bytes, 0, buffer.length);
+                    buffer.length = 0;
+                }
+            }
+            if (buffer.length > 0) {
+                copyIn.writeToCopy(buffer.bytes, 0, buffer.length);
+            }
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    /**
+     * A table written with COPY; the first column is the key used for upserts. {@code bytea} values are given in the hex
+     * format, {@code \x...}.
+     */
+    public record CopyTable<T>(String name, List<String> columns, Function<T, Object[]> values) {
+    }
+
+    /**
+     * The rows of a batch and the table they are written to.
+     */
+    public record Rows<T>(CopyTable<T> table, List<T> rows) {
+    }
+
+    /**
+     * Encodes rows in the COPY text format: tab separated, {@code \N} for null, backslash escapes.
+     */
+    private static final class RowBuffer {
+        private byte[] bytes;
+        private int length;
+
+        private RowBuffer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        private void append(Object[] values) {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    put((byte) '\t');
+                }
+                if (values[i] == null) {
+                    put((byte) '\\');
+                    put((byte) 'N');
+                } else {
+                    escape(values[i].toString());
+                }
+            }
+            put((byte) '\n');
+        }
+
+        private void escape(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\\' -> putEscaped('\\');
+                    case '\n' -> putEscaped('n');
+                    case '\r' -> putEscaped('r');
+                    case '\t' -> putEscaped('t');
+                    // text columns can not hold NUL
+                    case '\0' -> {
+                    }
+                    default -> {
+                        if (c < 0x80) {
+                            put((byte) c);
+                        } else {
+                            int end = i + 1;
+                            while (end < value.length() && value.charAt(end) >= 0x80) {
+                                end++;
+                            }
+                            byte[] encoded = value.substring(i, end).getBytes(StandardCharsets.UTF_8);
+                            ensure(encoded.length);
+                            System.arraycopy(encoded, 0, bytes, length, encoded.length);
+                            length += encoded.length;
+                            i = end - 1;
+                        }
+                    }
+                }
+            }
+        }
+
+        private void putEscaped(char c) {
+            put((byte) '\\');
+            put((byte) c);
+        }
+
+        private void put(byte b) {
+            ensure(1);
+            bytes[length++] = b;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.github.msorkhpar.wikistorage.data;
+
+/**
+ * @param revisionId revision of the page the candidates are computed from
+ * @param candidates the edges between the page's item and every item linked from its lead section, a block of
+ *                   {@code subject \t predicate \t object} lines per linked item which ends with an empty line
+ */
+public record SummaryCandidates(long pageId, Long revisionId, String candidates) {
+}
@@ -26,4 +26,23 @@ public class WikipediaPage {
 
     @Column(name = "content_length")
     private Integer contentLength;
+
+    @Column(name = "revision_id")
+    private Long revisionId;
+
+    @Column(name = "sha1", columnDefinition = "varchar(32)")
+    private String sha1;
+
+    /**
+     * The content compressed by {@link ContentCodec}, {@link #content} is null then.
+     */
+    @Column(name = "content_zstd")
+    private byte[] contentZstd;
+
+    @Column(name = "dictionary_id")
+    private Integer dictionaryId;
+
+    public WikipediaPage(Long id, String title, String content, Integer contentLength, Long revisionId, String sha1) {
+        this(id, title, content, contentLength, revisionId, sha1, null, null);
+    }
 }
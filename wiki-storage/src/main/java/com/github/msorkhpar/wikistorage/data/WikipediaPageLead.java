@@ -0,0 +1,10 @@
+package com.github.msorkhpar.wikistorage.data;
+
+import java.util.List;
+
+/**
+ * @param lead  wikitext of the page's lead section
+ * @param links normalized targets of the wikilinks in the lead section, in document order
+ */
+public record WikipediaPageLead(long pageId, String lead, List<String> links) {
+}
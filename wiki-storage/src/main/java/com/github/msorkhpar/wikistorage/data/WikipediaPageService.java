@@ -0,0 +1,84 @@
+package com.github.msorkhpar.wikistorage.data;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Detects the pages of a reload which did not change since the stored load: a page whose revision id and SHA-1 are
+ * the stored ones is skipped, so neither its row nor its {@code processed} flag is rewritten. Skipped pages are
+ * counted as {@code wikipedia.pages.unchanged}.
+ * <p>
+ * It is off during a bulk load, as the stored pages can not be looked up without the primary key. It also reads the
+ * content of stored pages, whether it is compressed or not.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class WikipediaPageService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BulkLoadService bulkLoadService;
+    private final MeterRegistry meterRegistry;
+    private final ContentCodec contentCodec;
+
+    @Value("${app.wikipedia.skip-unchanged:true}")
+    private boolean skipUnchanged;
+
+    private Counter unchanged;
+
+    @PostConstruct
+    void start() {
+        unchanged = meterRegistry.counter("wikipedia.pages.unchanged");
+        if (skipUnchanged && bulkLoadService.isEnabled()) {
+            logger.info("Unchanged pages are not detected during a bulk load, every page is written");
+        }
+    }
+
+    /**
+     * @return the content of the page, decompressed if it is stored compressed
+     */
+    public Optional<String> content(String title) {
+        return jdbcTemplate.query("select content, content_zstd, dictionary_id from wikipedia_pages where title = ?",
+                (rs, row) -> contentCodec.decode(rs.getString(1), rs.getBytes(2), rs.getObject(3, Integer.class)),
+                title).stream().findFirst();
+    }
+
+    /**
+     * @return the pages which are new or whose revision differs from the stored one
+     */
+    public List<WikipediaPage> changed(List<WikipediaPage> pages) {
+        if (!skipUnchanged || bulkLoadService.isEnabled() || pages.isEmpty()) {
+            return pages;
+        }
+        Long[] ids = pages.stream().map(WikipediaPage::getId).toArray(Long[]::new);
+        Map<Long, StoredRevision> stored = new HashMap<>(ids.length * 2);
+        jdbcTemplate.query("select id, revision_id, sha1 from wikipedia_pages where id = any(?)",
+                statement -> statement.setArray(1, statement.getConnection().createArrayOf("bigint", ids)),
+                rs -> {
+                    stored.put(rs.getLong(1), new StoredRevision(rs.getObject(2, Long.class), rs.getString(3)));
+                });
+        List<WikipediaPage> changed = pages.stream().filter(page -> !isUnchanged(page, stored.get(page.getId())))
+                .toList();
+        unchanged.increment(pages.size() - changed.size());
+        return changed;
+    }
+
+    private static boolean isUnchanged(WikipediaPage page, StoredRevision stored) {
+        return stored != null && page.getRevisionId() != null && page.getRevisionId() >= 0 && page.getSha1() != null
+               && page.getRevisionId().equals(stored.revisionId()) && page.getSha1().equals(stored.sha1());
+    }
+
+    private record StoredRevision(Long revisionId, String sha1) {
+    }
+}
@@ -0,0 +1,8 @@
+package com.github.msorkhpar.wikistorage.data;
+
+/**
+ * @param id     page id of the redirect
+ * @param target title of the page the redirect points to
+ */
+public record WikipediaRedirect(long id, String title, String target) {
+}
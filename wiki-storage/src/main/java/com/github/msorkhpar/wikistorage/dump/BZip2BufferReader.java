@@ -0,0 +1,31 @@
+package com.github.msorkhpar.wikistorage.dump;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+public class BZip2BufferReader {
+
+    public static BufferedReader createBufferedReader(Path dumpFile) throws IOException {
+        return createBufferedReader(dumpFile, Runtime.getRuntime().availableProcessors());
+    }
+
+    public static BufferedReader createBufferedReader(Path dumpFile, int decompressionThreads) throws IOException {
+        return createBufferedReader(new ParallelBZip2InputStream(dumpFile, decompressionThreads));
+    }
+
+    public static BufferedReader createBufferedReader(InputStream input) {
+        return new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param input a stream which starts in the middle of a dump
+     */
+    public static Reader createResumedReader(InputStream input) {
+        return new PageAlignedReader(createBufferedReader(input));
+    }
+}
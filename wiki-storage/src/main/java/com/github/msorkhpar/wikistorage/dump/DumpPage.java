@@ -0,0 +1,10 @@
+package com.github.msorkhpar.wikistorage.dump;
+
+/**
+ * @param redirect   title the page redirects to, {@code null} if it is not a redirect
+ * @param revisionId id of the page's revision in the dump, {@code -1} if it has none
+ * @param sha1       base36 SHA-1 of the revision's text, {@code null} if it has none
+ */
+public record DumpPage(int namespace, long id, String title, String redirect, long revisionId, String sha1,
+                       String text) {
+}
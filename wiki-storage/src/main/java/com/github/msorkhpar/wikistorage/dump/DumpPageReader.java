@@ -0,0 +1,138 @@
+package com.github.msorkhpar.wikistorage.dump;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.LongSupplier;
+
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+/**
+ * Pulls the pages of a MediaWiki XML dump one at a time, keeping only the fields the extractors use.
+ */
+public class DumpPageReader implements Closeable {
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private final Reader source;
+    private final XMLStreamReader xml;
+    private final LongSupplier offsets;
+    private long pageOffset = -1;
+
+    public DumpPageReader(Reader source) throws XMLStreamException {
+        this(source, () -> -1);
+    }
+
+    /**
+     * @param offsets asked for the position of every page when its start tag is read, see {@link #pageOffset()}
+     */
+    public DumpPageReader(Reader source, LongSupplier offsets) throws XMLStreamException {
+        this.source = source;
+        this.offsets = offsets;
+        this.xml = FACTORY.createXMLStreamReader(source);
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        // the escaped quotes of a whole dump add up to far more than the JDK's default of 50M entity characters
+        factory.setProperty("jdk.xml.totalEntitySizeLimit", 0);
+        factory.setProperty("jdk.xml.maxGeneralEntitySizeLimit", 0);
+        return factory;
+    }
+
+    /**
+     * @return the next page of the dump, or {@code null} when the dump is exhausted
+     */
+    public DumpPage next() throws XMLStreamException {
+        while (xml.hasNext()) {
+            if (xml.next() == START_ELEMENT && "page".equals(xml.getLocalName())) {
+                pageOffset = offsets.getAsLong();
+                return readPage();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the position given by the offsets supplier when the start tag of the last page was read
+     */
+    public long pageOffset() {
+        return pageOffset;
+    }
+
+    private DumpPage readPage() throws XMLStreamException {
+        int namespace = -1;
+        long id = -1;
+        String title = null;
+        String redirect = null;
+        long revisionId = -1;
+        String sha1 = null;
+        String text = null;
+        boolean insideRevision = false;
+        int depth = 1;
+        while (depth > 0) {
+            int event = xml.next();
+            if (event == END_ELEMENT) {
+                if (--depth == 1) {
+                    insideRevision = false;
+                }
+                continue;
+            }
+            if (event != START_ELEMENT) {
+                continue;
+            }
+            depth++;
+            String name = xml.getLocalName();
+            if (depth == 2) {
+                switch (name) {
+                    case "ns" -> {
+                        namespace = Integer.parseInt(xml.getElementText().trim());
+                        depth--;
+                    }
+                    case "id" -> {
+                        id = Long.parseLong(xml.getElementText().trim());
+                        depth--;
+                    }
+                    case "title" -> {
+                        title = xml.getElementText();
+                        depth--;
+                    }
+                    case "redirect" -> {
+                        String target = xml.getAttributeValue(null, "title");
+                        redirect = target == null ? "" : target;
+                    }
+                    case "revision" -> insideRevision = true;
+                    default -> {
+                    }
+                }
+            } else if (depth == 3 && insideRevision && revisionId < 0 && "id".equals(name)) {
+                revisionId = Long.parseLong(xml.getElementText().trim());
+                depth--;
+            } else if (depth == 3 && insideRevision && sha1 == null && "sha1".equals(name)) {
+                sha1 = xml.getElementText().trim();
+                depth--;
+            } else if (depth == 3 && insideRevision && text == null && "text".equals(name)) {
+                text = xml.getElementText();
+                depth--;
+            }
+        }
+        return new DumpPage(namespace, id, title, redirect, revisionId, sha1, text);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            source.close();
+        }
+    }
+}
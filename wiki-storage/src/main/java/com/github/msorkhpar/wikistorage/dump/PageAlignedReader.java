@@ -0,0 +1,57 @@
+package com.github.msorkhpar.wikistorage.dump;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Turns the text of a dump decompressed from the middle of the file into a document the XML reader accepts: the text
+ * before the first {@code <page>} is dropped and a {@code <mediawiki>} root element is put in front of it. The closing
+ * tag of the original root ends the document.
+ */
+public class PageAlignedReader extends Reader {
+
+    private static final String PAGE = "<page>";
+    private static final String ROOT = "<mediawiki>";
+
+    private final Reader source;
+    private String prefix;
+    private int prefixPosition;
+
+    public PageAlignedReader(Reader source) {
+        this.source = source;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        if (prefix == null) {
+            prefix = skipToPage() ? ROOT + PAGE : ROOT;
+        }
+        if (prefixPosition < prefix.length()) {
+            int count = Math.min(length, prefix.length() - prefixPosition);
+            prefix.getChars(prefixPosition, prefixPosition + count, buffer, offset);
+            prefixPosition += count;
+            return count;
+        }
+        return source.read(buffer, offset, length);
+    }
+
+    private boolean skipToPage() throws IOException {
+        int matched = 0;
+        int c;
+        while ((c = source.read()) != -1) {
+            if (c == PAGE.charAt(matched)) {
+                if (++matched == PAGE.length()) {
+                    return true;
+                }
+            } else {
+                matched = c == PAGE.charAt(0) ? 1 : 0;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+}
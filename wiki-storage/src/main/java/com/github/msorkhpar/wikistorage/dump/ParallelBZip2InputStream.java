@@ -0,0 +1,443 @@
+package com.github.msorkhpar.wikistorage.dump;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decompresses a (multi-stream) bzip2 file on several threads.
+ * <p>
+ * A scanner thread splits the compressed file at bzip2 block boundaries (the 48-bit block and end-of-stream magics,
+ * which are not byte aligned), every block is re-wrapped into a standalone single-block bzip2 stream and decoded on a
+ * worker pool, and the decoded blocks are served to the reader in their original order.
+ * <p>
+ * Either magic can show up inside compressed data by chance. The bits from an end-of-stream magic up to the next magic
+ * are kept as a candidate too: they are dropped when the block before them decodes, and a block which fails is joined
+ * with the following candidates until it decodes.
+ * <p>
+ * The stream can start at any block of the file given by its bit offset, see {@link #checkpointPosition()}.
+ */
+@Slf4j
+public class ParallelBZip2InputStream extends InputStream {
+
+    private static final long BLOCK_MAGIC = 0x314159265359L;
+    private static final long EOS_MAGIC = 0x177245385090L;
+    private static final long MAGIC_MASK = 0xFFFFFFFFFFFFL;
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+    // a compressed block of 900k is never much larger, joining beyond it can not repair a false split
+    private static final long MAX_BLOCK_BITS = 8L << 20;
+    // more than the readers on top of this stream can buffer ahead of the page they are parsing
+    private static final long READ_AHEAD_MARGIN = 4L << 20;
+    private static final Block END = new Block(null, 0, 0, -1, false);
+    private static final AtomicInteger STREAM_COUNTER = new AtomicInteger();
+
+    private final Path dumpFile;
+    private final long startBit;
+    private final ExecutorService workers;
+    private final boolean ownsWorkers;
+    private final BlockingQueue<Block> blocks;
+    private final Thread scanner;
+
+    private byte[] current = new byte[0];
+    private int position;
+    private boolean finished;
+    // (first decoded byte, block position) of the recently served blocks
+    private final ArrayDeque<long[]> served = new ArrayDeque<>();
+    private long servedBytes;
+    // progress for monitoring, updated once per block
+    private volatile long compressedBytes;
+    private volatile long decompressedBytes;
+    private volatile boolean closed;
+
+    public ParallelBZip2InputStream(Path dumpFile, int threads) {
+        this(dumpFile, threads, 0);
+    }
+
+    /**
+     * @param startBit bit offset of the block to start from, as returned by {@link #checkpointPosition()}
+     */
+    public ParallelBZip2InputStream(Path dumpFile, int threads, long startBit) {
+        this(dumpFile, null, threads, threads * 2, startBit);
+    }
+
+    /**
+     * @param workers   decodes the blocks, shared with other streams and left running when this stream is closed
+     * @param readAhead the number of blocks scanned ahead of the reader
+     * @param startBit  bit offset of the block to start from, as returned by {@link #checkpointPosition()}
+     */
+    public ParallelBZip2InputStream(Path dumpFile, ExecutorService workers, int readAhead, long startBit) {
+        this(dumpFile, workers, 0, readAhead, startBit);
+    }
+
+    private ParallelBZip2InputStream(Path dumpFile, ExecutorService sharedWorkers, int threads, int readAhead,
+                                     long startBit) {
+        this.dumpFile = dumpFile;
+        this.startBit = startBit;
+        int streamId = STREAM_COUNTER.incrementAndGet();
+        this.ownsWorkers = sharedWorkers == null;
+        if (ownsWorkers) {
+            AtomicInteger workerCounter = new AtomicInteger();
+            this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable,
+                        "bzip2-" + streamId + "-worker-" + workerCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.workers = sharedWorkers;
+        }
+        this.blocks = new ArrayBlockingQueue<>(readAhead);
+        this.scanner = new Thread(this::scan, "bzip2-" + streamId + "-scanner");
+        this.scanner.setDaemon(true);
+        this.scanner.start();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        servedBytes++;
+        return current[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        int count = Math.min(length, current.length - position);
+        System.arraycopy(current, position, buffer, offset, count);
+        position += count;
+        servedBytes += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    /**
+     * @return the bit offset of a block which starts before every byte the readers on top of this stream have not
+     * consumed yet, a safe place to restart from
+     */
+    public long checkpointPosition() {
+        if (served.isEmpty()) {
+            return startBit;
+        }
+        long consumed = servedBytes - READ_AHEAD_MARGIN;
+        long[] safe = served.pollFirst();
+        while (!served.isEmpty() && served.peekFirst()[0] <= consumed) {
+            safe = served.pollFirst();
+        }
+        served.addFirst(safe);
+        return safe[1];
+    }
+
+    /**
+     * @return the compressed bytes from the start position up to the block served last
+     */
+    public long compressedBytes() {
+        return compressedBytes;
+    }
+
+    /**
+     * @return the decompressed bytes of the blocks served so far
+     */
+    public long decompressedBytes() {
+        return decompressedBytes;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        scanner.interrupt();
+        if (ownsWorkers) {
+            workers.shutdownNow();
+        }
+        blocks.clear();
+    }
+
+    private boolean ensureAvailable() throws IOException {
+        while (position == current.length) {
+            if (finished) {
+                return false;
+            }
+            Block block = take();
+            if (block == END) {
+                finished = true;
+                return false;
+            }
+            if (block.endOfStream) {
+                // the block before it decoded, so it is a real end of stream
+                continue;
+            }
+            current = decoded(block);
+            position = 0;
+            compressedBytes = (block.position - startBit) >>> 3;
+            decompressedBytes += current.length;
+            served.addLast(new long[]{servedBytes, block.position});
+            if (served.size() > 64) {
+                checkpointPosition();
+            }
+        }
+        return true;
+    }
+
+    private Block take() throws IOException {
+        try {
+            return blocks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for [" + dumpFile.getFileName() + "]");
+        }
+    }
+
+    private byte[] decoded(Block block) throws IOException {
+        try {
+            return block.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for [" + dumpFile.getFileName() + "]");
+        } catch (ExecutionException e) {
+            if (block.source == null) {
+                throw new IOException("Reading [" + dumpFile.getFileName() + "] failed", e.getCause());
+            }
+            // A magic inside compressed data splits a block, its first part fails and it decodes once it is joined
+            // again. A block can be split more than once.
+            return joined(block, e.getCause());
+        }
+    }
+
+    private byte[] joined(Block block, Throwable failure) throws IOException {
+        Block joined = block;
+        while (true) {
+            Block next = take();
+            if (next == END || next.source == null || next.position != joined.position + joined.bits()
+                || joined.bits() + next.bits() > MAX_BLOCK_BITS) {
+                throw new IOException("Corrupted bzip2 block in [" + dumpFile.getFileName() + "]", failure);
+            }
+            logger.warn("Joining a falsely split bzip2 block of [{}] at bit [{}]",
+                    dumpFile.getFileName(), next.position);
+            joined = Block.join(joined, next);
+            try {
+                return decode(joined);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+    private void scan() {
+        try (InputStream input = new FileInputStream(dumpFile.toFile())) {
+            input.skipNBytes(startBit >>> 3);
+            long firstBit = (startBit >>> 3) << 3;
+            byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+            // raw bytes starting at the byte which holds the first bit of the current block
+            byte[] pending = new byte[READ_BUFFER_SIZE];
+            int pendingLength = 0;
+            long pendingBaseBit = firstBit;
+            long blockStartBit = -1;
+            // the current block starts with an end-of-stream magic
+            boolean endOfStream = false;
+            long register = 0;
+            long bitsRead = firstBit;
+            int read;
+            while (!closed && (read = input.read(readBuffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    if (pendingLength == pending.length) {
+                        pending = Arrays.copyOf(pending, pending.length * 2);
+                    }
+                    pending[pendingLength++] = readBuffer[i];
+                    register = (register << 8) | (readBuffer[i] & 0xFF);
+                    bitsRead += 8;
+                    if (bitsRead - firstBit < 48) {
+                        continue;
+                    }
+                    for (int shift = 0; shift < 8; shift++) {
+                        long candidate = (register >>> shift) & MAGIC_MASK;
+                        if (candidate != BLOCK_MAGIC && candidate != EOS_MAGIC) {
+                            continue;
+                        }
+                        long magicStartBit = bitsRead - shift - 48;
+                        if (blockStartBit >= 0) {
+                            byte[] source = Arrays.copyOf(pending, pendingLength);
+                            submit(new Block(source, blockStartBit - pendingBaseBit, magicStartBit - pendingBaseBit,
+                                    blockStartBit, endOfStream));
+                        }
+                        blockStartBit = magicStartBit;
+                        endOfStream = candidate == EOS_MAGIC;
+                        int keepFrom = (int) ((magicStartBit - pendingBaseBit) >>> 3);
+                        pendingLength -= keepFrom;
+                        System.arraycopy(pending, keepFrom, pending, 0, pendingLength);
+                        pendingBaseBit += (long) keepFrom << 3;
+                        break;
+                    }
+                }
+            }
+            if (blockStartBit >= 0 && !closed) {
+                if (!endOfStream) {
+                    logger.warn("[{}] ends in the middle of a bzip2 block", dumpFile.getFileName());
+                }
+                submit(new Block(Arrays.copyOf(pending, pendingLength), blockStartBit - pendingBaseBit,
+                        bitsRead - pendingBaseBit, blockStartBit, endOfStream));
+            }
+            blocks.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            if (!closed) {
+                Block failed = new Block(null, 0, 0, -1, false);
+                failed.result.completeExceptionally(e);
+                // the reader waits for the failure, only closing the stream interrupts this
+                try {
+                    blocks.put(failed);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private void submit(Block block) throws InterruptedException {
+        blocks.put(block);
+        if (block.endOfStream) {
+            // only decoded as part of a joined block
+            block.result.complete(new byte[0]);
+            return;
+        }
+        workers.execute(() -> {
+            // nobody waits for the blocks of a closed stream, shared workers skip them
+            if (closed) {
+                block.result.cancel(false);
+                return;
+            }
+            try {
+                block.result.complete(decode(block));
+            } catch (Throwable e) {
+                block.result.completeExceptionally(e);
+            }
+        });
+    }
+
+    private static byte[] decode(Block block) throws IOException {
+        try (BZip2CompressorInputStream input = new BZip2CompressorInputStream(
+                new ByteArrayInputStream(block.toStandaloneStream()), false)) {
+            return input.readAllBytes();
+        }
+    }
+
+    private static final class Block {
+        private final byte[] source;
+        private final long fromBit;
+        private final long toBit;
+        // bit offset of the block magic in the compressed file
+        private final long position;
+        // starts with an end-of-stream magic
+        private final boolean endOfStream;
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+
+        private Block(byte[] source, long fromBit, long toBit, long position, boolean endOfStream) {
+            this.source = source;
+            this.fromBit = fromBit;
+            this.toBit = toBit;
+            this.position = position;
+            this.endOfStream = endOfStream;
+        }
+
+        private static Block join(Block first, Block second) {
+            BitWriter writer = new BitWriter(new byte[(int) ((first.bits() + second.bits() + 7) >>> 3)]);
+            writer.copy(first.source, first.fromBit, first.toBit);
+            writer.copy(second.source, second.fromBit, second.toBit);
+            writer.flush();
+            return new Block(writer.buffer, 0, first.bits() + second.bits(), first.position, false);
+        }
+
+        private long bits() {
+            return toBit - fromBit;
+        }
+
+        /**
+         * "BZh9" + the block (magic, CRC, data) + end-of-stream magic + stream CRC. The CRC of a single-block stream is
+         * the CRC of that block.
+         */
+        private byte[] toStandaloneStream() {
+            BitWriter writer = new BitWriter(new byte[4 + (int) ((bits() + 80 + 7) >>> 3)]);
+            writer.write('B', 8);
+            writer.write('Z', 8);
+            writer.write('h', 8);
+            writer.write('9', 8);
+            writer.copy(source, fromBit, toBit);
+            writer.write(EOS_MAGIC, 48);
+            writer.write(BitWriter.read(source, fromBit + 48, 32), 32);
+            writer.flush();
+            return writer.buffer;
+        }
+    }
+
+    private static final class BitWriter {
+        private final byte[] buffer;
+        private int index;
+        private long accumulator;
+        private int accumulated;
+
+        private BitWriter(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        private static long read(byte[] source, long fromBit, int count) {
+            long value = 0;
+            for (long bit = fromBit; bit < fromBit + count; bit++) {
+                value = (value << 1) | ((source[(int) (bit >>> 3)] >>> (7 - (bit & 7))) & 1);
+            }
+            return value;
+        }
+
+        private void write(long value, int count) {
+            for (int remaining = count; remaining > 0; ) {
+                int chunk = Math.min(remaining, 32);
+                remaining -= chunk;
+                accumulator = (accumulator << chunk) | ((value >>> remaining) & ((1L << chunk) - 1));
+                accumulated += chunk;
+                while (accumulated >= 8) {
+                    accumulated -= 8;
+                    buffer[index++] = (byte) (accumulator >>> accumulated);
+                }
+            }
+        }
+
+        private void copy(byte[] source, long fromBit, long toBit) {
+            long bit = fromBit;
+            while ((bit & 7) != 0 && bit < toBit) {
+                write(read(source, bit++, 1), 1);
+            }
+            for (; bit + 8 <= toBit; bit += 8) {
+                write(source[(int) (bit >>> 3)] & 0xFF, 8);
+            }
+            if (bit < toBit) {
+                write(read(source, bit, (int) (toBit - bit)), (int) (toBit - bit));
+            }
+        }
+
+        private void flush() {
+            if (accumulated > 0) {
+                buffer[index++] = (byte) (accumulator << (8 - accumulated));
+                accumulated = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.msorkhpar.wikistorage.metrics;
+
+import com.github.msorkhpar.textserver.TextServer;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the metrics in the Prometheus text format. The applications have no web server, so a small HTTP server
+ * answers scrapes on {@code app.metrics.prometheus-port} under {@code /metrics}, and for runs nothing can scrape, the
+ * same text is written to {@code app.metrics.file} every {@code file-interval} and on shutdown.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class MetricsExporter {
+
+    private final PrometheusMeterRegistry registry;
+
+    @Value("${app.metrics.prometheus-port:0}")
+    private int port;
+    @Value("${app.metrics.file:}")
+    private String file;
+    @Value("${app.metrics.file-interval:30s}")
+    private Duration fileInterval;
+
+    private HttpServer server;
+    private ScheduledExecutorService dumps;
+
+    @PostConstruct
+    void start() throws IOException {
+        if (port > 0) {
+            server = TextServer.create(new InetSocketAddress(port), Executors.newSingleThreadExecutor(
+                    Thread.ofPlatform().name("metrics-http").daemon().factory()));
+            server.createContext("/metrics", exchange -> TextServer.respond(exchange, 200,
+                    "text/plain; version=0.0.4; charset=utf-8", registry.scrape()));
+            server.start();
+            logger.info("Metrics are served on [http://localhost:{}/metrics]", port);
+        }
+        if (!file.isBlank()) {
+            dumps = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("metrics-file").daemon().factory());
+            dumps.scheduleWithFixedDelay(this::dump, fileInterval.toMillis(), fileInterval.toMillis(),
+                    TimeUnit.MILLISECONDS);
+            logger.info("Metrics are written to [{}] every [{}]", file, fileInterval);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (dumps != null) {
+            dumps.shutdownNow();
+            dump();
+        }
+    }
+
+    private synchronized void dump() {
+        Path target = Path.of(file);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            Files.writeString(temporary, registry.scrape());
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("Metrics could not be written to [{}]", target, e);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.msorkhpar.wikistorage.pipeline;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@FunctionalInterface
+public interface BatchWriter<T> {
+
+    /**
+     * @return a future which completes once the batch is durably stored
+     */
+    CompletableFuture<?> write(List<T> batch);
+}
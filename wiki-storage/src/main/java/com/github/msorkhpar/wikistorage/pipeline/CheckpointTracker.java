@@ -0,0 +1,147 @@
+package com.github.msorkhpar.wikistorage.pipeline;
+
+import com.github.msorkhpar.wikistorage.data.IngestionCheckpoint;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Turns the commit progress of a pipeline into checkpoints of its dump file. The reader registers the id and bzip2
+ * block offset of every page it hands to the pipeline, the newest checkpoint is stored every {@code interval} and
+ * when the tracker is closed.
+ * <p>
+ * Batches commit out of order, so pages after the checkpoint can be stored when a run stops. Before the reader hands
+ * over a page past the reserved page id, a checkpoint reserving the next {@value #RESERVED_PAGES} ids is stored, so
+ * the next run knows up to which page its writes may repeat stored ones, see {@link #mayBeStored(long)}.
+ */
+@Slf4j
+public class CheckpointTracker implements AutoCloseable {
+
+    static final long RESERVED_PAGES = 100_000;
+
+    private final Consumer<IngestionCheckpoint> store;
+    private final String dumpFile;
+    private final IngestionCheckpoint start;
+    // page id and block offset by the reading order of the pages which are not committed yet
+    private final ConcurrentSkipListMap<Long, long[]> marks = new ConcurrentSkipListMap<>();
+    private final ScheduledExecutorService saver;
+    private long sequence;
+    private volatile IngestionCheckpoint latest;
+    private volatile long reserved;
+    private IngestionCheckpoint saved;
+
+    public CheckpointTracker(Consumer<IngestionCheckpoint> store, String dumpFile, IngestionCheckpoint start,
+                             Duration interval) {
+        this.store = store;
+        this.dumpFile = dumpFile;
+        this.start = start;
+        this.latest = start;
+        this.reserved = start.reservedPageId();
+        this.saved = start;
+        if (store == null) {
+            this.saver = null;
+            return;
+        }
+        this.saver = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("checkpoint-" + dumpFile).daemon().factory());
+        saver.scheduleWithFixedDelay(this::save, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public static CheckpointTracker disabled() {
+        return new CheckpointTracker(null, null, IngestionCheckpoint.START, Duration.ZERO);
+    }
+
+    public IngestionCheckpoint start() {
+        return start;
+    }
+
+    /**
+     * @return true if the page was stored by an earlier run
+     */
+    public boolean isCommitted(long pageId) {
+        return pageId <= start.lastPageId();
+    }
+
+    /**
+     * @return true if an earlier run may have stored the page after its checkpoint, writing it again must not
+     * duplicate anything
+     */
+    public boolean mayBeStored(long pageId) {
+        return !start.isStart() && pageId <= start.reservedPageId();
+    }
+
+    /**
+     * Registers the next page handed to the pipeline, must be called in reading order before the page is handed
+     * over. Fails if the page needs a new reservation which can not be stored.
+     */
+    public void read(long pageId, long blockOffset) {
+        if (store == null) {
+            return;
+        }
+        marks.put(sequence++, new long[]{pageId, blockOffset});
+        if (pageId > reserved) {
+            reserve(pageId + RESERVED_PAGES);
+        }
+    }
+
+    /**
+     * Listener for {@link IngestionPipeline#onCommitted}.
+     */
+    public void committed(long pages) {
+        if (store == null) {
+            return;
+        }
+        long[] mark = marks.get(pages - 1);
+        marks.headMap(pages - 1).clear();
+        latest = new IngestionCheckpoint(mark[0], mark[1], start.pages() + pages, false, reserved);
+    }
+
+    /**
+     * Marks the whole file as stored.
+     */
+    public void complete() {
+        if (store == null) {
+            return;
+        }
+        saver.shutdownNow();
+        IngestionCheckpoint last = latest;
+        latest = new IngestionCheckpoint(last.lastPageId(), last.blockOffset(), last.pages(), true, reserved);
+        save();
+    }
+
+    @Override
+    public void close() {
+        if (store == null) {
+            return;
+        }
+        saver.shutdownNow();
+        save();
+    }
+
+    private synchronized void reserve(long pageId) {
+        IngestionCheckpoint checkpoint = latest.reserving(pageId);
+        store.accept(checkpoint);
+        reserved = pageId;
+        saved = checkpoint;
+        logger.debug("Pages of [{}] up to [{}] are reserved", dumpFile, pageId);
+    }
+
+    private synchronized void save() {
+        IngestionCheckpoint checkpoint = latest.reserving(reserved);
+        if (checkpoint.equals(saved)) {
+            return;
+        }
+        try {
+            store.accept(checkpoint);
+            saved = checkpoint;
+            logger.debug("Checkpoint of [{}]: {}", dumpFile, checkpoint);
+        } catch (RuntimeException e) {
+            logger.error("Checkpoint of [{}] could not be stored", dumpFile, e);
+        }
+    }
+}
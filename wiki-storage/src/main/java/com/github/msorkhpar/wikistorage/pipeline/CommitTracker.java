@@ -0,0 +1,41 @@
+package com.github.msorkhpar.wikistorage.pipeline;
+
+import java.util.BitSet;
+import java.util.function.LongConsumer;
+
+/**
+ * Follows the pages of a pipeline, numbered in reading order, which are stored or skipped, and reports how many
+ * pages from the start are done without a gap. A page which failed is never done, so the count stops before it.
+ */
+class CommitTracker {
+
+    private static final int COMPACT_AFTER = 1 << 20;
+
+    private final LongConsumer listener;
+    private final BitSet done = new BitSet();
+    // sequence number of done.get(0)
+    private long base;
+    private long committed;
+
+    CommitTracker(LongConsumer listener) {
+        this.listener = listener;
+    }
+
+    synchronized void done(long sequence) {
+        done.set((int) (sequence - base));
+        long before = committed;
+        while (done.get((int) (committed - base))) {
+            committed++;
+        }
+        if (committed == before) {
+            return;
+        }
+        if (committed - base >= COMPACT_AFTER) {
+            BitSet rest = done.get((int) (committed - base), Math.max(done.length(), (int) (committed - base)));
+            done.clear();
+            done.or(rest);
+            base = committed;
+        }
+        listener.accept(committed);
+    }
+}
@@ -0,0 +1,273 @@
+package com.github.msorkhpar.wikistorage.pipeline;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+/**
+ * Runs a dump file through three stages: the calling thread reads pages, the parser threads of the
+ * {@link PipelineExecutors} turn them into records and its writer threads persist the records in batches. The pages
+ * waiting to be parsed and the batches waiting to be written are bounded per pipeline, a pipeline at its bound blocks
+ * the stage in front of it, so a slow database throttles parsing and reading instead of filling up the heap. The
+ * threads are shared by all pipelines, running more of them at once does not start more threads.
+ * <p>
+ * Pages are numbered in reading order. A listener given to {@link #onCommitted(LongConsumer)} learns how many pages
+ * from the start are stored, or skipped by the parsers, without a gap. The stages report to the
+ * {@link PipelineMetrics} given to {@link #withMetrics(PipelineMetrics)}.
+ * <p>
+ * The first failure of a writer, also one of its futures, stops the pipeline and is thrown by {@link #run}.
+ *
+ * @param <S> the pages produced by the reader
+ * @param <T> the records produced by the parsers, {@code null} results are dropped
+ */
+@Slf4j
+public class IngestionPipeline<S, T> {
+
+    private final String name;
+    private final PipelineSettings settings;
+    private final PipelineExecutors executors;
+    private final Function<S, T> parser;
+    private final BatchWriter<T> writer;
+
+    // pages read and not added to a batch yet
+    private final Semaphore parsing;
+    // batches handed to the writers which did not return yet
+    private final Semaphore writing;
+    private final Set<CompletableFuture<?>> stored = ConcurrentHashMap.newKeySet();
+    private final AtomicLong parsed = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private volatile Throwable failure;
+    private List<Item> batch;
+    private PipelineMetrics metrics = PipelineMetrics.NONE;
+    private long startedAt;
+    private CommitTracker commits = new CommitTracker(committed -> {
+    });
+
+    public IngestionPipeline(String name, PipelineSettings settings, PipelineExecutors executors,
+                             Function<S, T> parser, Consumer<List<T>> writer) {
+        this(name, settings, executors, parser, (BatchWriter<T>) batch -> {
+            writer.accept(batch);
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * @param writer stores a batch, the pages of the batch count as committed when its future completes
+     */
+    public IngestionPipeline(String name, PipelineSettings settings, PipelineExecutors executors,
+                             Function<S, T> parser, BatchWriter<T> writer) {
+        this.name = name;
+        this.settings = settings;
+        this.executors = executors;
+        this.parser = parser;
+        this.writer = writer;
+        this.parsing = new Semaphore(settings.queueCapacity());
+        this.writing = new Semaphore(settings.writerThreads());
+        this.batch = new ArrayList<>(settings.batchSize());
+    }
+
+    /**
+     * @param listener called with the number of leading pages which are committed whenever it grows, from any thread
+     */
+    public IngestionPipeline<S, T> onCommitted(LongConsumer listener) {
+        this.commits = new CommitTracker(listener);
+        return this;
+    }
+
+    public IngestionPipeline<S, T> withMetrics(PipelineMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Feeds every page of the source through the pipeline and waits until the last batch is stored.
+     *
+     * @return the number of written records
+     */
+    public long run(PageSource<S> source) throws Exception {
+        startedAt = System.nanoTime();
+        metrics.queue("parse", parsing, permits -> settings.queueCapacity() - permits.availablePermits());
+        metrics.queue("write", writing, permits -> settings.writerThreads() - permits.availablePermits());
+        try {
+            S page;
+            long sequence = 0;
+            while (failure == null && (page = source.next()) != null) {
+                acquire(parsing, 1);
+                Item item = new Item(sequence++, page);
+                try {
+                    executors.parsers().execute(() -> parse(item));
+                } catch (RejectedExecutionException e) {
+                    parsing.release();
+                    throw e;
+                }
+                metrics.pagesRead.increment();
+            }
+        } catch (Exception e) {
+            fail(e);
+            throw e;
+        } finally {
+            acquire(parsing, settings.queueCapacity());
+            if (failure == null) {
+                submit(takeBatch());
+            }
+            acquire(writing, settings.writerThreads());
+            awaitStored();
+            metrics.close();
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Pipeline [" + name + "] failed", failure);
+        }
+        return written.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void parse(Item item) {
+        try {
+            if (failure != null) {
+                return;
+            }
+            T record = null;
+            long start = System.nanoTime();
+            try {
+                record = parser.apply((S) item.value);
+            } catch (RuntimeException e) {
+                metrics.parseFailures.increment();
+                logger.error("Parsing a page of [{}] was not successful", name, e);
+            }
+            metrics.parseTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            metrics.pagesParsed.increment();
+            if (record != null) {
+                add(new Item(item.sequence, record));
+            } else {
+                metrics.pagesSkipped.increment();
+                commits.done(item.sequence);
+            }
+            long count = parsed.incrementAndGet();
+            if (count % 10_000 == 0) {
+                double seconds = Math.max(System.nanoTime() - startedAt, 1) / 1e9;
+                logger.info("[{}] pages of [{}] are processed, [{}] pages/s",
+                        count, name, Math.round(count / seconds));
+            }
+        } catch (Throwable e) {
+            logger.error("Parsing [{}] stopped unexpectedly", name, e);
+            fail(e);
+        } finally {
+            parsing.release();
+        }
+    }
+
+    private synchronized List<Item> takeBatch() {
+        List<Item> taken = batch;
+        batch = new ArrayList<>(settings.batchSize());
+        return taken;
+    }
+
+    private void add(Item item) {
+        List<Item> full = null;
+        synchronized (this) {
+            batch.add(item);
+            if (batch.size() >= settings.batchSize()) {
+                full = batch;
+                batch = new ArrayList<>(settings.batchSize());
+            }
+        }
+        if (full != null) {
+            submit(full);
+        }
+    }
+
+    private void submit(List<Item> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        acquire(writing, 1);
+        try {
+            executors.writers().execute(() -> {
+                try {
+                    flush(batch);
+                } catch (Throwable e) {
+                    logger.error("Writing [{}] stopped unexpectedly", name, e);
+                    fail(e);
+                } finally {
+                    writing.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            writing.release();
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void flush(List<Item> batch) {
+        if (failure != null) {
+            return;
+        }
+        List<T> records = new ArrayList<>(batch.size());
+        for (Item item : batch) {
+            records.add((T) item.value);
+        }
+        metrics.batchSize.record(batch.size());
+        CompletableFuture<?> future;
+        try {
+            future = writer.write(records);
+            written.addAndGet(batch.size());
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        // run() waits for the callback, not just the write, so it sees the failure
+        CompletableFuture<?> done = future.whenComplete((ignored, error) -> {
+            if (error != null) {
+                metrics.writeFailures.increment(batch.size());
+                logger.error("Writing a batch of [{}] records of [{}] was not successful", batch.size(), name, error);
+                fail(error);
+                return;
+            }
+            metrics.recordsWritten.increment(batch.size());
+            for (Item item : batch) {
+                commits.done(item.sequence);
+            }
+        });
+        stored.add(done);
+        done.whenComplete((ignored, error) -> stored.remove(done));
+    }
+
+    private void awaitStored() {
+        for (CompletableFuture<?> future : List.copyOf(stored)) {
+            try {
+                future.join();
+            } catch (RuntimeException e) {
+                // recorded as the failure of the pipeline by the callback
+            }
+        }
+    }
+
+    private synchronized void fail(Throwable e) {
+        if (failure == null) {
+            failure = e;
+        }
+    }
+
+    private static void acquire(Semaphore permits, int count) {
+        try {
+            permits.acquire(count);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Item(long sequence, Object value) {
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.msorkhpar.wikistorage.pipeline;
+
+@FunctionalInterface
+public interface PageSource<S> {
+
+    /**
+     * @return the next page, or {@code null} when the source is exhausted
+     */
+    S next() throws Exception;
+}
@@ -0,0 +1,61 @@
+package com.github.msorkhpar.wikistorage.pipeline;
+
+import com.github.msorkhpar.wikistorage.dump.ParallelBZip2InputStream;
+
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The threads shared by every {@link IngestionPipeline} of the application: the parsers, the writers and the bzip2
+ * decoders of the dump streams. Processing more files at once shares these threads instead of starting more.
+ */
+public class PipelineExecutors implements AutoCloseable {
+
+    private final ExecutorService parsers;
+    private final ExecutorService writers;
+    private final ExecutorService decoders;
+    private final int decoderThreads;
+
+    /**
+     * @param virtualWriters run every batch on its own virtual thread instead of a pool of writer threads
+     */
+    public PipelineExecutors(int parserThreads, int writerThreads, boolean virtualWriters, int decoderThreads) {
+        this.parsers = Executors.newFixedThreadPool(parserThreads, platform("pipeline-parser-"));
+        this.writers = virtualWriters
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("pipeline-writer-", 1).factory())
+                : Executors.newFixedThreadPool(writerThreads, platform("pipeline-writer-"));
+        this.decoders = Executors.newFixedThreadPool(decoderThreads, platform("bzip2-worker-"));
+        this.decoderThreads = decoderThreads;
+    }
+
+    /**
+     * @param startBit bit offset of the block to start from, see {@link ParallelBZip2InputStream#checkpointPosition()}
+     */
+    public ParallelBZip2InputStream openDump(Path dumpFile, long startBit) {
+        return new ParallelBZip2InputStream(dumpFile, decoders, decoderThreads * 2, startBit);
+    }
+
+    ExecutorService parsers() {
+        return parsers;
+    }
+
+    /**
+     * @return the writer threads, also for writes which do not go through a pipeline
+     */
+    public ExecutorService writers() {
+        return writers;
+    }
+
+    @Override
+    public void close() {
+        parsers.shutdownNow();
+        writers.shutdownNow();
+        decoders.shutdownNow();
+    }
+
+    private static ThreadFactory platform(String prefix) {
+        return Thread.ofPlatform().name(prefix, 1).daemon().factory();
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.msorkhpar.wikistorage.pipeline;
+
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * The meters of one pipeline run, tagged with the pipeline name: pages read, parsed and written, parse time, batch
+ * sizes, failures and the depth of both queues. Rates such as pages per second are derived from the counters by the
+ * consumer of the metrics.
+ */
+public class PipelineMetrics {
+
+    static final PipelineMetrics NONE = new PipelineMetrics(new CompositeMeterRegistry(), "none");
+
+    private final MeterRegistry registry;
+    private final Tags tags;
+    // meters reading objects which only exist during the run
+    private final List<Meter> runMeters = new ArrayList<>();
+
+    final Counter pagesRead;
+    final Counter pagesParsed;
+    final Counter pagesSkipped;
+    final Counter recordsWritten;
+    final Counter parseFailures;
+    final Counter writeFailures;
+    final Timer parseTime;
+    final DistributionSummary batchSize;
+
+    public PipelineMetrics(MeterRegistry registry, String pipeline) {
+        this.registry = registry;
+        this.tags = Tags.of("pipeline", pipeline);
+        pagesRead = registry.counter("ingestion.pages.read", tags);
+        pagesParsed = registry.counter("ingestion.pages.parsed", tags);
+        pagesSkipped = registry.counter("ingestion.pages.skipped", tags);
+        recordsWritten = registry.counter("ingestion.records.written", tags);
+        parseFailures = registry.counter("ingestion.failures", tags.and("stage", "parse"));
+        writeFailures = registry.counter("ingestion.failures", tags.and("stage", "write"));
+        parseTime = Timer.builder("ingestion.parse").tags(tags).publishPercentileHistogram().register(registry);
+        batchSize = DistributionSummary.builder("ingestion.batch.size").tags(tags).register(registry);
+    }
+
+    /**
+     * Counts the bytes read by a stream of the run, e.g. {@code compressed} and {@code uncompressed} bytes.
+     */
+    public <T> PipelineMetrics bytes(String kind, T stream, ToDoubleFunction<T> bytes) {
+        runMeters.add(FunctionCounter.builder("ingestion.bytes", stream, bytes).baseUnit("bytes")
+                .tags(tags.and("kind", kind)).register(registry));
+        return this;
+    }
+
+    /**
+     * @param size the pages or batches waiting for the stage
+     */
+    <T> void queue(String stage, T state, ToDoubleFunction<T> size) {
+        runMeters.add(Gauge.builder("ingestion.queue.size", state, size)
+                .tags(tags.and("stage", stage)).register(registry));
+    }
+
+    void close() {
+        runMeters.forEach(registry::remove);
+        runMeters.clear();
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.msorkhpar.wikistorage.pipeline;
+
+/**
+ * The bounds of one pipeline, its threads are the shared {@link PipelineExecutors}.
+ *
+ * @param queueCapacity the pages read and not parsed yet
+ * @param writerThreads the batches written at once
+ */
+public record PipelineSettings(int queueCapacity, int writerThreads, int batchSize) {
+}
@@ -0,0 +1,49 @@
+package com.github.msorkhpar.wikistorage.utils;
+
+/**
+ * Converts Wikidata ids between their text form ({@code Q42}, {@code P31}) and their number.
+ */
+public final class EntityIds {
+
+    private EntityIds() {
+    }
+
+    /**
+     * @return the number of an item id like {@code Q42}, or -1 if {@code id} is not one
+     */
+    public static long item(String id) {
+        return number(id, 'Q');
+    }
+
+    /**
+     * @return the number of a property id like {@code P31}, or -1 if {@code id} is not one
+     */
+    public static int property(String id) {
+        long number = number(id, 'P');
+        return number > Integer.MAX_VALUE ? -1 : (int) number;
+    }
+
+    public static String item(long number) {
+        return "Q" + number;
+    }
+
+    public static String property(int number) {
+        return "P" + number;
+    }
+
+    private static long number(String id, char prefix) {
+        int length = id.length();
+        if (length < 2 || length > 19 || id.charAt(0) != prefix) {
+            return -1;
+        }
+        long number = 0;
+        for (int i = 1; i < length; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+}
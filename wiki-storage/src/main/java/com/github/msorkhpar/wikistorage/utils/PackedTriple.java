@@ -0,0 +1,33 @@
+package com.github.msorkhpar.wikistorage.utils;
+
+/**
+ * The predicate, object and qualifier flag of a triple packed into one {@code long}, the subject is known from the
+ * entity the triple belongs to: 23 bits of property number, 40 bits of item number and the qualifier flag.
+ */
+public final class PackedTriple {
+
+    public static final int MAX_PREDICATE = (1 << 23) - 1;
+    public static final long MAX_OBJECT = (1L << 40) - 1;
+
+    private PackedTriple() {
+    }
+
+    public static long pack(int predicate, long object, boolean qualifier) {
+        if (predicate < 0 || predicate > MAX_PREDICATE || object < 0 || object > MAX_OBJECT) {
+            throw new IllegalArgumentException("P" + predicate + " -> Q" + object + " does not fit in a packed triple");
+        }
+        return ((long) predicate << 41) | (object << 1) | (qualifier ? 1 : 0);
+    }
+
+    public static int predicate(long triple) {
+        return (int) (triple >>> 41);
+    }
+
+    public static long object(long triple) {
+        return (triple >>> 1) & MAX_OBJECT;
+    }
+
+    public static boolean isQualifier(long triple) {
+        return (triple & 1) != 0;
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.msorkhpar.wikistorage.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A thread-safe set of item numbers, kept as bits in pages which are allocated on first use. Numbers beyond the pages
+ * fall back to a hash set. The set can be written to and read back from a stream.
+ */
+public class QidSet {
+
+    private static final int PAGE_BITS = 1 << 24;
+    private static final int MAX_PAGES = 1 << 10;
+
+    private final AtomicReferenceArray<AtomicLongArray> pages = new AtomicReferenceArray<>(MAX_PAGES);
+    private final Set<Long> others = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @return true if the number was not in the set before
+     */
+    public boolean add(long number) {
+        if (number < 0 || number >= (long) PAGE_BITS * MAX_PAGES) {
+            return others.add(number);
+        }
+        AtomicLongArray page = page((int) (number / PAGE_BITS), true);
+        int bit = (int) (number % PAGE_BITS);
+        long mask = 1L << (bit & 63);
+        int word = bit >>> 6;
+        long current;
+        do {
+            current = page.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+        } while (!page.compareAndSet(word, current, current | mask));
+        return true;
+    }
+
+    public boolean contains(long number) {
+        if (number < 0 || number >= (long) PAGE_BITS * MAX_PAGES) {
+            return others.contains(number);
+        }
+        AtomicLongArray page = page((int) (number / PAGE_BITS), false);
+        int bit = (int) (number % PAGE_BITS);
+        return page != null && (page.get(bit >>> 6) & (1L << (bit & 63))) != 0;
+    }
+
+    /**
+     * Counts the numbers in the set, not atomic with concurrent additions.
+     */
+    public long count() {
+        long count = others.size();
+        for (int index = 0; index < MAX_PAGES; index++) {
+            AtomicLongArray page = pages.get(index);
+            if (page != null) {
+                for (int word = 0; word < page.length(); word++) {
+                    count += Long.bitCount(page.get(word));
+                }
+            }
+        }
+        return count;
+    }
+
+    public QidSet copy() {
+        QidSet copy = new QidSet();
+        for (int index = 0; index < MAX_PAGES; index++) {
+            AtomicLongArray page = pages.get(index);
+            if (page != null) {
+                AtomicLongArray target = copy.page(index, true);
+                for (int word = 0; word < page.length(); word++) {
+                    target.set(word, page.get(word));
+                }
+            }
+        }
+        copy.others.addAll(others);
+        return copy;
+    }
+
+    /**
+     * Writes the set; additions running at the same time may or may not be part of it.
+     */
+    public void writeTo(DataOutput output) throws IOException {
+        for (int index = 0; index < MAX_PAGES; index++) {
+            AtomicLongArray page = pages.get(index);
+            if (page == null) {
+                continue;
+            }
+            output.writeInt(index);
+            for (int word = 0; word < page.length(); word++) {
+                output.writeLong(page.get(word));
+            }
+        }
+        output.writeInt(-1);
+        Long[] rest = others.toArray(new Long[0]);
+        output.writeInt(rest.length);
+        for (long number : rest) {
+            output.writeLong(number);
+        }
+    }
+
+    public static QidSet readFrom(DataInput input) throws IOException {
+        QidSet set = new QidSet();
+        int index;
+        while ((index = input.readInt()) >= 0) {
+            AtomicLongArray page = set.page(index, true);
+            for (int word = 0; word < page.length(); word++) {
+                page.set(word, input.readLong());
+            }
+        }
+        int rest = input.readInt();
+        for (int i = 0; i < rest; i++) {
+            set.others.add(input.readLong());
+        }
+        return set;
+    }
+
+    private AtomicLongArray page(int index, boolean create) {
+        AtomicLongArray page = pages.get(index);
+        if (page == null && create) {
+            pages.compareAndSet(index, null, new AtomicLongArray(PAGE_BITS / 64));
+            page = pages.get(index);
+        }
+        return page;
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.msorkhpar.wikistorage.utils;
+
+import java.util.Arrays;
+
+/**
+ * Item to item triples as parallel primitive arrays: subject and object item numbers and the property number.
+ * It grows as needed and is meant to be cleared and reused.
+ */
+public class TripleBuffer {
+
+    private long[] subjects;
+    private int[] predicates;
+    private long[] objects;
+    private int size;
+
+    public TripleBuffer() {
+        this(1024);
+    }
+
+    public TripleBuffer(int capacity) {
+        subjects = new long[capacity];
+        predicates = new int[capacity];
+        objects = new long[capacity];
+    }
+
+    public void add(long subject, int predicate, long object) {
+        if (size == subjects.length) {
+            int capacity = Math.max(16, size * 2);
+            subjects = Arrays.copyOf(subjects, capacity);
+            predicates = Arrays.copyOf(predicates, capacity);
+            objects = Arrays.copyOf(objects, capacity);
+        }
+        subjects[size] = subject;
+        predicates[size] = predicate;
+        objects[size] = object;
+        size++;
+    }
+
+    /**
+     * Adds the non-qualifier triples of an entity.
+     */
+    public void addStatements(long subject, long[] packedTriples) {
+        for (long triple : packedTriples) {
+            if (!PackedTriple.isQualifier(triple)) {
+                add(subject, PackedTriple.predicate(triple), PackedTriple.object(triple));
+            }
+        }
+    }
+
+    public long subject(int index) {
+        return subjects[index];
+    }
+
+    public int predicate(int index) {
+        return predicates[index];
+    }
+
+    public long object(int index) {
+        return objects[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public long[] subjects() {
+        return Arrays.copyOf(subjects, size);
+    }
+
+    public int[] predicates() {
+        return Arrays.copyOf(predicates, size);
+    }
+
+    public long[] objects() {
+        return Arrays.copyOf(objects, size);
+    }
+}
@@ -0,0 +1,11 @@
+create table ingestion_checkpoints
+(
+    application  varchar(64)  not null,
+    dump_file    varchar(255) not null,
+    last_page_id bigint       not null,
+    block_offset bigint       not null,
+    pages        bigint       not null,
+    completed    boolean      not null default false,
+    updated_at   timestamp    not null default now(),
+    primary key (application, dump_file)
+);
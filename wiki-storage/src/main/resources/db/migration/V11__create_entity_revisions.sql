@@ -0,0 +1,7 @@
+create table entity_revisions
+(
+    subject     bigint primary key,
+    revision_id bigint not null,
+    -- sorted packed statement triples, 8 bytes each
+    triples     bytea  not null
+);
@@ -0,0 +1,3 @@
+alter table wikipedia_pages
+    add if not exists revision_id bigint,
+    add if not exists sha1        varchar(32);
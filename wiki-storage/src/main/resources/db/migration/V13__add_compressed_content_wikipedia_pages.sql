@@ -0,0 +1,14 @@
+create table content_dictionaries
+(
+    id         serial primary key,
+    dictionary bytea       not null,
+    created_at timestamptz not null default now()
+);
+
+alter table wikipedia_pages
+    add if not exists content_zstd  bytea,
+    add if not exists dictionary_id integer references content_dictionaries (id);
+
+-- the content is already compressed, TOAST should store it as it is
+alter table wikipedia_pages
+    alter column content_zstd set storage external;
@@ -0,0 +1,6 @@
+create table wikipedia_page_leads
+(
+    page_id bigint primary key,
+    lead    text   not null,
+    links   text[] not null
+);
@@ -0,0 +1,6 @@
+create table wikipedia_redirects
+(
+    id     bigint primary key,
+    title  varchar(255) not null,
+    target varchar(255) not null
+);
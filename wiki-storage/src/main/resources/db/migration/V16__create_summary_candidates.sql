@@ -0,0 +1,6 @@
+create table summary_candidates
+(
+    page_id     bigint primary key,
+    revision_id bigint,
+    candidates  text not null
+);
@@ -0,0 +1,15 @@
+-- orders the rows of the bulk loaded tables, a key loaded twice keeps the row loaded last
+-- the default only applies to new rows, so adding the columns does not rewrite the tables
+create sequence bulk_load_seq;
+
+alter table subjects add column load_seq bigint;
+alter table subjects alter column load_seq set default nextval('bulk_load_seq');
+
+alter table wikipedia_pages add column load_seq bigint;
+alter table wikipedia_pages alter column load_seq set default nextval('bulk_load_seq');
+
+alter table wikipedia_page_leads add column load_seq bigint;
+alter table wikipedia_page_leads alter column load_seq set default nextval('bulk_load_seq');
+
+alter table wikipedia_redirects add column load_seq bigint;
+alter table wikipedia_redirects alter column load_seq set default nextval('bulk_load_seq');
@@ -0,0 +1,3 @@
+-- the highest page id a run may have handed to its writers, null for checkpoints stored before it was tracked
+alter table ingestion_checkpoints
+    add column reserved_page_id bigint;
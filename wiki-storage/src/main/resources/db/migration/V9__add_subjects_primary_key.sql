@@ -0,0 +1,10 @@
+delete
+from subjects a
+    using subjects b
+where a.name = b.name
+  and a.ctid < b.ctid;
+
+drop index if exists idx_subjects_pk;
+
+alter table subjects
+    add constraint subjects_pkey primary key (name);
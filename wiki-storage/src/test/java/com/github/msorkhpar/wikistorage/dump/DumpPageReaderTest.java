@@ -0,0 +1,103 @@
+package com.github.msorkhpar.wikistorage.dump;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DumpPageReaderTest {
+
+    @Test
+    void readsThePageFields() throws Exception {
+        String xml = """
+                <mediawiki>
+                  <siteinfo><sitename>Wikipedia</sitename></siteinfo>
+                  <page>
+                    <title>Old name</title>
+                    <ns>0</ns>
+                    <id>10</id>
+                    <redirect title="New name" />
+                    <revision>
+                      <id>100</id>
+                      <contributor><id>5</id></contributor>
+                      <text>#REDIRECT [[New name]]</text>
+                      <sha1>abc</sha1>
+                    </revision>
+                  </page>
+                  <page>
+                    <title>Q42</title>
+                    <ns>0</ns>
+                    <id>11</id>
+                    <revision>
+                      <id>101</id>
+                      <text>{&quot;id&quot;:&quot;Q42&quot;}</text>
+                    </revision>
+                  </page>
+                </mediawiki>
+                """;
+        try (DumpPageReader reader = new DumpPageReader(new StringReader(xml))) {
+            assertEquals(new DumpPage(0, 10, "Old name", "New name", 100, "abc", "#REDIRECT [[New name]]"),
+                    reader.next());
+            assertEquals(new DumpPage(0, 11, "Q42", null, 101, null, "{\"id\":\"Q42\"}"), reader.next());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void readsMoreEntityCharactersThanTheJdkDefaultLimit() throws Exception {
+        int pages = 900;
+        int quotesPerPage = 60_000;
+        long characters = 0;
+        try (DumpPageReader reader = new DumpPageReader(new EscapedPages(pages, quotesPerPage))) {
+            DumpPage page;
+            while ((page = reader.next()) != null) {
+                characters += page.text().length();
+            }
+        }
+        assertTrue(characters > 50_000_000);
+        assertEquals((long) pages * quotesPerPage, characters);
+    }
+
+    /**
+     * Generates a dump of entity pages whose text is nothing but escaped quotes, without holding it in memory.
+     */
+    private static final class EscapedPages extends Reader {
+        private final int pages;
+        private final String text;
+        private final StringBuilder buffer = new StringBuilder("<mediawiki>");
+        private int position;
+        private int page;
+
+        private EscapedPages(int pages, int quotesPerPage) {
+            this.pages = pages;
+            this.text = "&quot;".repeat(quotesPerPage);
+        }
+
+        @Override
+        public int read(char[] target, int offset, int length) {
+            if (position == buffer.length()) {
+                if (page > pages) {
+                    return -1;
+                }
+                buffer.setLength(0);
+                position = 0;
+                if (page++ < pages) {
+                    buffer.append("<page><title>Q").append(page).append("</title><ns>0</ns><id>").append(page)
+                            .append("</id><revision><id>1</id><text>").append(text).append("</text></revision></page>");
+                } else {
+                    buffer.append("</mediawiki>");
+                }
+            }
+            int count = Math.min(length, buffer.length() - position);
+            buffer.getChars(position, position + count, target, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
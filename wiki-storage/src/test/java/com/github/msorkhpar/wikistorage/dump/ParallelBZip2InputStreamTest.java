@@ -0,0 +1,168 @@
+package com.github.msorkhpar.wikistorage.dump;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelBZip2InputStreamTest {
+
+    private static final long BLOCK_MAGIC = 0x314159265359L;
+    private static final long EOS_MAGIC = 0x177245385090L;
+
+    @TempDir
+    static Path directory;
+    private static Path dump;
+    private static byte[] expected;
+
+    /**
+     * Two concatenated streams of 100k blocks, like the multi-stream dumps, large enough to restart past the
+     * read-ahead margin.
+     */
+    @BeforeAll
+    static void writeDump() throws IOException {
+        dump = directory.resolve("dump.xml.bz2");
+        try (OutputStream output = Files.newOutputStream(dump)) {
+            compress(text(new Random(7), 3_000_000), output);
+            compress(text(new Random(11), 3_000_000), output);
+        }
+        try (InputStream input = new BZip2CompressorInputStream(Files.newInputStream(dump), true)) {
+            expected = input.readAllBytes();
+        }
+    }
+
+    @Test
+    void decodesLikeCommonsCompress() throws IOException {
+        for (int threads : new int[]{1, 4}) {
+            try (ParallelBZip2InputStream input = new ParallelBZip2InputStream(dump, threads)) {
+                assertArrayEquals(expected, input.readAllBytes(), threads + " threads");
+            }
+        }
+    }
+
+    @Test
+    void restartsFromCheckpointPosition() throws IOException {
+        long checkpoint;
+        try (ParallelBZip2InputStream input = new ParallelBZip2InputStream(dump, 4)) {
+            input.readAllBytes();
+            checkpoint = input.checkpointPosition();
+        }
+        assertTrue(checkpoint > 0);
+        try (ParallelBZip2InputStream input = new ParallelBZip2InputStream(dump, 4, checkpoint)) {
+            byte[] resumed = input.readAllBytes();
+            assertTrue(resumed.length > 0 && resumed.length < expected.length);
+            assertArrayEquals(Arrays.copyOfRange(expected, expected.length - resumed.length, expected.length), resumed);
+        }
+    }
+
+    @Test
+    void joinsBlocksSplitByAMagicInsideTheirData() throws IOException {
+        for (long magic : new long[]{BLOCK_MAGIC, EOS_MAGIC}) {
+            Path planted = directory.resolve(Long.toHexString(magic) + ".bz2");
+            byte[] data = plantingMagic(new Random(magic), magic, 250_000);
+            try (OutputStream output = Files.newOutputStream(planted)) {
+                compress(data, output);
+                compress(data, output);
+            }
+            byte[] compressed = Files.readAllBytes(planted);
+            // the symbol map follows the block magic, its CRC, the randomised bit and the 24-bit origin pointer
+            List<Long> plantedMagics = positions(compressed, magic);
+            assertTrue(positions(compressed, BLOCK_MAGIC).stream()
+                    .anyMatch(block -> plantedMagics.contains(block + 105)), "the symbol map holds the magic");
+
+            try (ParallelBZip2InputStream input = new ParallelBZip2InputStream(planted, 4)) {
+                byte[] decoded = input.readAllBytes();
+                assertEquals(data.length * 2, decoded.length);
+                assertArrayEquals(data, Arrays.copyOf(decoded, data.length));
+                assertArrayEquals(data, Arrays.copyOfRange(decoded, data.length, decoded.length));
+            }
+        }
+    }
+
+    @Test
+    void failsInsteadOfWaitingWhenTheFileCannotBeRead() {
+        Path missing = directory.resolve("missing.xml.bz2");
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            try (ParallelBZip2InputStream input = new ParallelBZip2InputStream(missing, 2)) {
+                assertThrows(IOException.class, input::read);
+            }
+        });
+    }
+
+    private static void compress(byte[] data, OutputStream output) throws IOException {
+        BZip2CompressorOutputStream stream = new BZip2CompressorOutputStream(output, 1);
+        stream.write(data);
+        stream.finish();
+    }
+
+    /**
+     * Random bytes whose set of symbols is the magic: the symbol map of a block starts with 16 bits telling which
+     * ranges of 16 byte values are used, followed by 16 bits for each used range, so the magic becomes the range bits
+     * and the bits of the first two used ranges.
+     */
+    private static byte[] plantingMagic(Random random, long magic, int length) {
+        int ranges = (int) (magic >>> 32);
+        int[] rangeBits = {(int) (magic >>> 16) & 0xFFFF, (int) magic & 0xFFFF};
+        List<Byte> symbols = new ArrayList<>();
+        int used = 0;
+        for (int range = 0; range < 16; range++) {
+            if ((ranges & (0x8000 >>> range)) == 0) {
+                continue;
+            }
+            int bits = used < rangeBits.length ? rangeBits[used] : 0x8000;
+            used++;
+            for (int value = 0; value < 16; value++) {
+                if ((bits & (0x8000 >>> value)) != 0) {
+                    symbols.add((byte) (range * 16 + value));
+                }
+            }
+        }
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            // no runs, their run length encoding would add the lengths as symbols
+            do {
+                data[i] = symbols.get(random.nextInt(symbols.size()));
+            } while (i > 0 && data[i] == data[i - 1]);
+        }
+        return data;
+    }
+
+    /**
+     * @return the bit offsets of the 48-bit magic in the data
+     */
+    private static List<Long> positions(byte[] data, long magic) {
+        List<Long> positions = new ArrayList<>();
+        long register = 0;
+        for (long bit = 0; bit < data.length * 8L; bit++) {
+            register = ((register << 1) | ((data[(int) (bit >>> 3)] >>> (7 - (bit & 7))) & 1)) & 0xFFFFFFFFFFFFL;
+            if (bit >= 47 && register == magic) {
+                positions.add(bit - 47);
+            }
+        }
+        return positions;
+    }
+
+    private static byte[] text(Random random, int length) {
+        String[] words = {"<page>", "</page>", "title", "Q42", "item", "[[link]]", "revision", "\n", " ", "text"};
+        StringBuilder text = new StringBuilder(length + 16);
+        while (text.length() < length) {
+            text.append(words[random.nextInt(words.length)]).append(random.nextInt(1000));
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,190 @@
+package com.github.msorkhpar.wikistorage.pipeline;
+
+import com.github.msorkhpar.wikistorage.data.IngestionCheckpoint;
+import com.github.msorkhpar.wikistorage.dump.DumpPage;
+import com.github.msorkhpar.wikistorage.dump.DumpPageReader;
+import com.github.msorkhpar.wikistorage.dump.ParallelBZip2InputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static com.github.msorkhpar.wikistorage.dump.BZip2BufferReader.createBufferedReader;
+import static com.github.msorkhpar.wikistorage.dump.BZip2BufferReader.createResumedReader;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Crashes a run of a dump file part way and resumes it from the stored checkpoint, the way the dump file services
+ * read their files and decide which batches merge.
+ */
+class CheckpointResumeTest {
+
+    private static final int PAGES = 3_000;
+    private static final PipelineSettings SETTINGS = new PipelineSettings(100, 3, 50);
+    private static final PipelineExecutors EXECUTORS = new PipelineExecutors(4, 3, false, 4);
+
+    @TempDir
+    static Path directory;
+    private static Path dump;
+
+    @BeforeAll
+    static void writeDump() throws IOException {
+        dump = directory.resolve("pages.xml.bz2");
+        Random random = new Random(9);
+        StringBuilder xml = new StringBuilder("<mediawiki>\n<siteinfo><sitename>Wikidata</sitename></siteinfo>\n");
+        for (int id = 1; id <= PAGES; id++) {
+            xml.append("<page>\n<title>Q").append(id).append("</title>\n<ns>0</ns>\n<id>").append(id)
+                    .append("</id>\n<revision>\n<id>").append(id * 10).append("</id>\n<text>");
+            // random text keeps the pages large after compression, so the dump has many blocks
+            for (int i = 0; i < 1_000; i++) {
+                xml.append((char) ('a' + random.nextInt(26)));
+            }
+            xml.append("</text>\n</revision>\n</page>\n");
+        }
+        xml.append("</mediawiki>\n");
+        try (OutputStream output = new BZip2CompressorOutputStream(Files.newOutputStream(dump), 1)) {
+            output.write(xml.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @AfterAll
+    static void closeExecutors() {
+        EXECUTORS.close();
+    }
+
+    @Test
+    void resumesAfterTheLastCommittedPage() throws Exception {
+        AtomicReference<IngestionCheckpoint> saved = new AtomicReference<>(IngestionCheckpoint.START);
+        Set<Long> firstRun = ConcurrentHashMap.newKeySet();
+        AtomicInteger batches = new AtomicInteger();
+
+        IllegalStateException crash = assertThrows(IllegalStateException.class, () -> ingest(saved, tracker -> batch ->
+                batches.incrementAndGet() == 20
+                        ? CompletableFuture.failedFuture(new IllegalStateException("killed"))
+                        : CompletableFuture.runAsync(() -> firstRun.addAll(batch))));
+        assertEquals("killed", crash.getCause().getMessage());
+
+        IngestionCheckpoint checkpoint = saved.get();
+        assertFalse(checkpoint.isStart(), "pages were committed before the crash");
+        assertFalse(checkpoint.completed());
+        assertTrue(checkpoint.blockOffset() > 0, "the checkpoint is past the first block");
+        assertEquals(checkpoint.lastPageId(), checkpoint.pages());
+        for (long id = 1; id <= checkpoint.lastPageId(); id++) {
+            assertTrue(firstRun.contains(id), "page " + id + " is committed");
+        }
+
+        Set<Long> secondRun = ConcurrentHashMap.newKeySet();
+        ingest(saved, tracker -> batch -> CompletableFuture.runAsync(() -> secondRun.addAll(batch)));
+
+        assertTrue(saved.get().completed());
+        assertEquals(PAGES, saved.get().pages());
+        for (long id = 1; id <= PAGES; id++) {
+            assertEquals(id > checkpoint.lastPageId(), secondRun.contains(id),
+                    "page " + id + " is stored by the second run only after the checkpoint");
+        }
+    }
+
+    @Test
+    void mergesThePagesStoredAfterTheCheckpoint() throws Exception {
+        AtomicReference<IngestionCheckpoint> saved = new AtomicReference<>(IngestionCheckpoint.START);
+        // stored copies of every page, creating a stored page again duplicates it like a created relationship
+        Map<Long, Integer> graph = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> firstRun = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger batches = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> ingest(saved, tracker -> batch -> {
+            // the failing batch commits last, so batches after it are stored before the run stops
+            CompletableFuture<Void> written = batches.incrementAndGet() == 20
+                    ? CompletableFuture.runAsync(() -> sleep(200)).thenRun(() -> {
+                        throw new IllegalStateException("killed");
+                    })
+                    : CompletableFuture.runAsync(() -> {
+                        sleep(ThreadLocalRandom.current().nextInt(20));
+                        store(graph, batch, batch.stream().anyMatch(tracker::mayBeStored));
+                    });
+            firstRun.add(written);
+            return written;
+        }));
+        CompletableFuture.allOf(firstRun.toArray(new CompletableFuture[0])).exceptionally(error -> null).join();
+
+        IngestionCheckpoint checkpoint = saved.get();
+        long lastStored = graph.keySet().stream().mapToLong(Long::longValue).max().orElseThrow();
+        assertTrue(lastStored > checkpoint.lastPageId(), "pages after the checkpoint were stored");
+        assertTrue(checkpoint.reservedPageId() >= lastStored, "every stored page is reserved");
+
+        ingest(saved, tracker -> batch -> CompletableFuture.runAsync(
+                () -> store(graph, batch, batch.stream().anyMatch(tracker::mayBeStored))));
+
+        assertTrue(saved.get().completed());
+        assertEquals(PAGES, graph.size());
+        graph.forEach((id, copies) -> assertEquals(1, copies, "page " + id + " is stored once"));
+    }
+
+    private static void store(Map<Long, Integer> graph, List<Long> batch, boolean merge) {
+        for (long id : batch) {
+            if (merge) {
+                graph.putIfAbsent(id, 1);
+            } else {
+                graph.merge(id, 1, Integer::sum);
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs the dump from the saved checkpoint, storing the checkpoints in it.
+     */
+    private static void ingest(AtomicReference<IngestionCheckpoint> saved,
+                               Function<CheckpointTracker, BatchWriter<Long>> writer) throws Exception {
+        try (CheckpointTracker checkpoint = new CheckpointTracker(saved::set, "pages.xml.bz2", saved.get(),
+                Duration.ofHours(1))) {
+            IngestionCheckpoint resumeFrom = checkpoint.start();
+            ParallelBZip2InputStream input = EXECUTORS.openDump(dump, resumeFrom.blockOffset());
+            Reader text = resumeFrom.isStart() ? createBufferedReader(input) : createResumedReader(input);
+            try (DumpPageReader reader = new DumpPageReader(text, input::checkpointPosition)) {
+                IngestionPipeline<DumpPage, Long> pipeline = new IngestionPipeline<>("pages", SETTINGS, EXECUTORS,
+                        DumpPage::id, writer.apply(checkpoint));
+                pipeline.onCommitted(checkpoint::committed);
+                pipeline.run(() -> {
+                    DumpPage page;
+                    do {
+                        page = reader.next();
+                    } while (page != null && checkpoint.isCommitted(page.id()));
+                    if (page != null) {
+                        checkpoint.read(page.id(), reader.pageOffset());
+                    }
+                    return page;
+                });
+                checkpoint.complete();
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.msorkhpar.wikistorage.pipeline;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestionPipelineTest {
+
+    private static final PipelineSettings SETTINGS = new PipelineSettings(100, 3, 50);
+    private static final PipelineExecutors EXECUTORS = new PipelineExecutors(4, 3, false, 1);
+    private static final int PAGES = 10_000;
+
+    @AfterAll
+    static void closeExecutors() {
+        EXECUTORS.close();
+    }
+
+    @Test
+    void storesEveryRecordAndCommitsEveryPage() throws Exception {
+        Set<Integer> stored = ConcurrentHashMap.newKeySet();
+        AtomicLong committed = new AtomicLong();
+        IngestionPipeline<Integer, Integer> pipeline = new IngestionPipeline<>("test", SETTINGS, EXECUTORS,
+                (Integer page) -> page % 7 == 0 ? null : page,
+                (BatchWriter<Integer>) batch -> CompletableFuture.runAsync(() -> stored.addAll(batch)))
+                .onCommitted(pages -> committed.accumulateAndGet(pages, Math::max));
+
+        long written = pipeline.run(pages(PAGES));
+
+        assertEquals(PAGES - (PAGES + 6) / 7, written);
+        assertEquals(written, stored.size());
+        assertEquals(PAGES, committed.get());
+    }
+
+    @Test
+    void failsWhenTheFutureOfABatchFails() {
+        AtomicInteger batches = new AtomicInteger();
+        AtomicLong committed = new AtomicLong();
+        IngestionPipeline<Integer, Integer> pipeline = new IngestionPipeline<>("test", SETTINGS, EXECUTORS,
+                (Integer page) -> page,
+                (BatchWriter<Integer>) batch -> batches.incrementAndGet() == 5
+                        ? CompletableFuture.failedFuture(new IllegalStateException("lost connection"))
+                        : CompletableFuture.completedFuture(null))
+                .onCommitted(pages -> committed.accumulateAndGet(pages, Math::max));
+
+        IllegalStateException failure = assertThrows(IllegalStateException.class, () -> pipeline.run(pages(PAGES)));
+
+        assertEquals("lost connection", failure.getCause().getMessage());
+        assertTrue(committed.get() < PAGES);
+    }
+
+    @Test
+    void runsSeveralPipelinesOnTheSharedThreads() throws Exception {
+        List<CompletableFuture<Long>> runs = List.of(run(), run(), run(), run(), run());
+        for (CompletableFuture<Long> run : runs) {
+            assertEquals(PAGES, run.join());
+        }
+    }
+
+    private static CompletableFuture<Long> run() {
+        IngestionPipeline<Integer, Integer> pipeline = new IngestionPipeline<>("test", SETTINGS, EXECUTORS,
+                (Integer page) -> page, (List<Integer> batch) -> {
+        });
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return pipeline.run(pages(PAGES));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static PageSource<Integer> pages(int count) {
+        AtomicInteger next = new AtomicInteger();
+        return () -> next.get() < count ? next.getAndIncrement() : null;
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.msorkhpar.wikistorage.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongHashSetTest {
+
+    @Test
+    void behavesLikeAHashSet() {
+        Random random = new Random(10);
+        LongHashSet set = new LongHashSet(4);
+        Set<Long> expected = new HashSet<>();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 50_000; i++) {
+                // zero is the empty slot marker and must still be a value
+                long value = random.nextInt(20) == 0 ? 0 : random.nextLong(-1_000, 100_000);
+                assertEquals(expected.add(value), set.add(value), "add " + value);
+            }
+            for (long value = -1_000; value < 100_000; value += 7) {
+                assertEquals(expected.contains(value), set.contains(value), "contains " + value);
+            }
+            assertEquals(expected.size(), set.size());
+            long[] values = set.toArray();
+            Arrays.sort(values);
+            assertArrayEquals(expected.stream().mapToLong(Long::longValue).sorted().toArray(), values);
+
+            set.clear();
+            expected.clear();
+            assertTrue(set.isEmpty());
+            assertFalse(set.contains(0));
+        }
+    }
+}
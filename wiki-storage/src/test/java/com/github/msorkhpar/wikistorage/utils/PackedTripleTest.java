@@ -0,0 +1,75 @@
+package com.github.msorkhpar.wikistorage.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedTripleTest {
+
+    @Test
+    void unpacksWhatWasPacked() {
+        Random random = new Random(10);
+        for (int i = 0; i < 100_000; i++) {
+            int predicate = random.nextInt(PackedTriple.MAX_PREDICATE + 1);
+            long object = random.nextLong(PackedTriple.MAX_OBJECT + 1);
+            boolean qualifier = random.nextBoolean();
+            long triple = PackedTriple.pack(predicate, object, qualifier);
+            assertEquals(predicate, PackedTriple.predicate(triple));
+            assertEquals(object, PackedTriple.object(triple));
+            assertEquals(qualifier, PackedTriple.isQualifier(triple));
+        }
+        long largest = PackedTriple.pack(PackedTriple.MAX_PREDICATE, PackedTriple.MAX_OBJECT, true);
+        assertEquals(PackedTriple.MAX_PREDICATE, PackedTriple.predicate(largest));
+        assertEquals(PackedTriple.MAX_OBJECT, PackedTriple.object(largest));
+        assertTrue(PackedTriple.isQualifier(largest));
+        assertEquals(0, PackedTriple.pack(0, 0, false));
+    }
+
+    @Test
+    void rejectsNumbersWhichDoNotFit() {
+        assertThrows(IllegalArgumentException.class, () -> PackedTriple.pack(PackedTriple.MAX_PREDICATE + 1, 1, false));
+        assertThrows(IllegalArgumentException.class, () -> PackedTriple.pack(31, PackedTriple.MAX_OBJECT + 1, false));
+        assertThrows(IllegalArgumentException.class, () -> PackedTriple.pack(-1, 1, false));
+        assertThrows(IllegalArgumentException.class, () -> PackedTriple.pack(31, -1, false));
+    }
+
+    @Test
+    void theBufferKeepsTheStatementsOfAnEntity() {
+        TripleBuffer buffer = new TripleBuffer(2);
+        long[] triples = {
+                PackedTriple.pack(31, 5, false),
+                PackedTriple.pack(580, 1_000_000_000L, true),
+                PackedTriple.pack(279, 215627, false),
+                PackedTriple.pack(17, 30, false)
+        };
+        buffer.addStatements(42, triples);
+        buffer.add(1, 31, 2);
+
+        assertEquals(4, buffer.size());
+        assertArrayEquals(new long[]{42, 42, 42, 1}, buffer.subjects());
+        assertArrayEquals(new int[]{31, 279, 17, 31}, buffer.predicates());
+        assertArrayEquals(new long[]{5, 215627, 30, 2}, buffer.objects());
+        assertEquals(279, buffer.predicate(1));
+        assertEquals(215627, buffer.object(1));
+
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        buffer.add(7, 8, 9);
+        assertArrayEquals(new long[]{7}, buffer.subjects());
+    }
+
+    @Test
+    void convertsEntityIds() {
+        assertEquals(42, EntityIds.item("Q42"));
+        assertEquals(31, EntityIds.property("P31"));
+        assertEquals(-1, EntityIds.item("P31"));
+        assertEquals(-1, EntityIds.item("Q"));
+        assertEquals(-1, EntityIds.item("Q4x2"));
+        assertEquals(-1, EntityIds.item("L1-S1"));
+        assertEquals(-1, EntityIds.property("P99999999999"));
+        assertEquals("Q42", EntityIds.item(42L));
+        assertEquals("P31", EntityIds.property(31));
+    }
+}
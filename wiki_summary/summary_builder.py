@@ -7,7 +7,7 @@ import torch.nn.functional as F
 
 from commons.storage import fetch_predicate_metadata, fetch_wikipedia_page_content, add_summary_edge, \
     fetch_summaries, bulk_fetch_wikipedia_titles, fetch_edges_by_candidates, mark_wikipedia_page_processed, \
-    mark_wikipedia_page_process_failed
+    mark_wikipedia_page_process_failed, fetch_wikipedia_page_lead, fetch_summary_candidates
 from commons.utils import dewiki, compute_embeddings, extract_raw_abstract, extract_mention_titles
 
 
@@ -52,6 +52,18 @@ def _get_edge_candidates(root_wikidata_id, mentions: list[str]) -> dict[str, lis
     return edge_candidates
 
 
+def _fetch_abstract_and_mentions(wikipedia_title) -> tuple[str, list[str]] | None:
+    # the lead and its links are stored by the page extractor, older loads only have the page content
+    lead = fetch_wikipedia_page_lead(wikipedia_title)
+    if lead:
+        return lead
+    page_content = fetch_wikipedia_page_content(wikipedia_title)
+    if not page_content:
+        return None
+    raw_abstract = extract_raw_abstract(page_content)
+    return raw_abstract, extract_mention_titles(raw_abstract)
+
+
 def build_summaries(wikipedia_id, wikipedia_title, root_wikidata_id, fresh=False) -> list[tuple[str, str, str]]:
     """
     :param wikipedia_title:
@@ -60,10 +72,12 @@ def build_summaries(wikipedia_id, wikipedia_title, root_wikidata_id, fresh=False
     """
     # check if the summaries are already stored in Neo4j and return them
     if fresh:
-        page_content = fetch_wikipedia_page_content(wikipedia_title)
-        raw_abstract = extract_raw_abstract(page_content)
-        mentions = extract_mention_titles(raw_abstract)
-        edge_candidates = _get_edge_candidates(root_wikidata_id, mentions)
+        abstract = _fetch_abstract_and_mentions(wikipedia_title)
+        if not abstract:
+            mark_wikipedia_page_process_failed(wikipedia_id)
+            return []
+        raw_abstract, mentions = abstract
+        edge_candidates = _get_edge_candidates(root_wikidata_id, mentions) or {}
         summaries = []
         for index, candidates in edge_candidates.items():
             if len(candidates) > 1:
@@ -81,17 +95,26 @@ def build_summaries(wikipedia_id, wikipedia_title, root_wikidata_id, fresh=False
     else:
         summaries = []
 
-    # if not stored, fetch page content, clean it, and store the mentioned in Neo4j
-    page_content = fetch_wikipedia_page_content(wikipedia_title)
-    if not page_content:
-        mark_wikipedia_page_process_failed(wikipedia_id)
-        return []
-    raw_abstract = extract_raw_abstract(page_content)
-    mentions = extract_mention_titles(raw_abstract)
-    edge_candidates = _get_edge_candidates(root_wikidata_id, mentions)
+    # the candidates computed in bulk by the page extractor, otherwise fetch page content, clean it, and look them up
+    raw_abstract = None
+    edge_candidates = fetch_summary_candidates(wikipedia_id)
+    if edge_candidates is None:
+        abstract = _fetch_abstract_and_mentions(wikipedia_title)
+        if not abstract:
+            mark_wikipedia_page_process_failed(wikipedia_id)
+            return []
+        raw_abstract, mentions = abstract
+        edge_candidates = _get_edge_candidates(root_wikidata_id, mentions)
     if not edge_candidates:
         mark_wikipedia_page_process_failed(wikipedia_id)
         return []
+    # the abstract is only needed to pick one of several edges, it is checked before any edge is added
+    if raw_abstract is None and any(len(candidates) > 1 for candidates in edge_candidates.values()):
+        abstract = _fetch_abstract_and_mentions(wikipedia_title)
+        if not abstract:
+            mark_wikipedia_page_process_failed(wikipedia_id)
+            return []
+        raw_abstract = abstract[0]
     abstract_embedding = None
     for index, candidates in edge_candidates.items():
         # if link is a single edge, just add the link, otherwise add the most relevant edge predicate
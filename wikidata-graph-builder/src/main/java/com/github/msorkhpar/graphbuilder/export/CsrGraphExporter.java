@@ -0,0 +1,61 @@
+package com.github.msorkhpar.graphbuilder.export;
+
+import com.github.msorkhpar.graphengine.CsrGraphWriter;
+import com.github.msorkhpar.wikistorage.utils.TripleBuffer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes the graph as forward and reverse CSR adjacency arrays for the graph engine, next to the Neo4j or CSV
+ * output. The triples are spilled to {@code <file>.edges} while the dump files are processed and the arrays are built
+ * once all of them are done.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "app.graph.csr.enabled", havingValue = "true")
+public class CsrGraphExporter {
+
+    @Value("${app.graph.csr.file}")
+    private Path file;
+
+    private CsrGraphWriter writer;
+
+    @PostConstruct
+    void start() throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        writer = new CsrGraphWriter(file.resolveSibling(file.getFileName() + ".edges"));
+        logger.info("Exporting the graph as CSR arrays to [{}]", file);
+    }
+
+    public void write(TripleBuffer triples) {
+        synchronized (writer) {
+            try {
+                for (int i = 0; i < triples.size(); i++) {
+                    writer.add(triples.subject(i), triples.predicate(i), triples.object(i));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public void finish() throws IOException {
+        synchronized (writer) {
+            writer.write(file);
+        }
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,203 @@
+package com.github.msorkhpar.graphbuilder.export;
+
+import com.github.msorkhpar.wikistorage.data.PersistenceService;
+import com.github.msorkhpar.wikistorage.utils.QidSet;
+import com.github.msorkhpar.wikistorage.utils.TripleBuffer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the graph as CSV files for {@code neo4j-admin database import} instead of sending it through Bolt.
+ * <p>
+ * Every writer thread gets its own chunk files, so nothing is shared but the node set which makes sure each entity is
+ * written once. Header files, an {@code import.sh} with the matching command and the {@code post-import.cypher}
+ * creating the indexes are written on shutdown.
+ * <p>
+ * The predicate column is the {@code type} property of {@code HAS_TYPE} relationships, or with
+ * {@code app.neo4j.typed-relationships} the relationship type itself.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "app.graph.output", havingValue = "csv")
+public class Neo4jCsvExporter {
+
+    private static final String NODES = "nodes";
+    private static final String RELATIONSHIPS = "relationships";
+
+    @Value("${app.graph.csv.dir}")
+    private Path directory;
+    @Value("${app.graph.csv.chunk-rows:10000000}")
+    private long chunkRows;
+    @Value("${app.graph.csv.compress:true}")
+    private boolean compress;
+    @Value("${app.neo4j.typed-relationships:false}")
+    private boolean typedRelationships;
+
+    private final QidSet nodes = new QidSet();
+    private final Queue<ChunkWriters> idle = new ConcurrentLinkedQueue<>();
+    private final Queue<ChunkWriters> all = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger writerCounter = new AtomicInteger();
+
+    @PostConstruct
+    void start() throws IOException {
+        Files.createDirectories(directory);
+        logger.info("Exporting the graph as CSV files to [{}]", directory);
+    }
+
+    public void write(TripleBuffer triples) {
+        ChunkWriters writers = idle.poll();
+        if (writers == null) {
+            writers = new ChunkWriters(writerCounter.incrementAndGet());
+            all.add(writers);
+        }
+        try {
+            StringBuilder row = writers.row;
+            for (int i = 0; i < triples.size(); i++) {
+                long subject = triples.subject(i);
+                long object = triples.object(i);
+                if (nodes.add(subject)) {
+                    row.setLength(0);
+                    writers.nodes.write(row.append('Q').append(subject));
+                }
+                if (nodes.add(object)) {
+                    row.setLength(0);
+                    writers.nodes.write(row.append('Q').append(object));
+                }
+                row.setLength(0);
+                writers.relationships.write(row.append('Q').append(subject).append(",Q").append(object)
+                        .append(",P").append(triples.predicate(i)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            idle.add(writers);
+        }
+    }
+
+    /**
+     * Flushes the writers no thread is using at the moment.
+     */
+    public void flush() {
+        for (ChunkWriters writers : all) {
+            if (idle.remove(writers)) {
+                try {
+                    writers.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    idle.add(writers);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    void finish() throws IOException {
+        for (ChunkWriters writers : all) {
+            writers.close();
+        }
+        Files.writeString(directory.resolve(NODES + "-header.csv"), "entityName:ID\n");
+        Files.writeString(directory.resolve(RELATIONSHIPS + "-header.csv"),
+                typedRelationships ? ":START_ID,:END_ID,:TYPE\n" : ":START_ID,:END_ID,type\n");
+        String extension = compress ? "\\.csv\\.gz" : "\\.csv";
+        String command = """
+                #!/usr/bin/env bash
+                # Run from the directory of these files, with the target database stopped.
+                neo4j-admin database import full \\
+                  --id-type=string \\
+                  --nodes=WikiEntity="%1$s-header.csv,%1$s-[0-9]+-[0-9]+%3$s" \\
+                  --relationships=%4$s"%2$s-header.csv,%2$s-[0-9]+-[0-9]+%3$s" \\
+                  "${1:-neo4j}"
+                # Once the database is started, create its constraint and indexes with:
+                #   cypher-shell -d "${1:-neo4j}" -f post-import.cypher
+                """.formatted(NODES, RELATIONSHIPS, extension, typedRelationships ? "" : "HAS_TYPE=");
+        String indexes = PersistenceService.NEO4J_CONSTRAINT + ";\n";
+        if (!typedRelationships) {
+            indexes += PersistenceService.NEO4J_RELATIONSHIP_INDEX + ";\n";
+        }
+        Files.writeString(directory.resolve("post-import.cypher"), indexes);
+        Path script = directory.resolve("import.sh");
+        Files.writeString(script, command);
+        script.toFile().setExecutable(true);
+        logger.info("The graph is exported to [{}], import it with [{}]", directory, script);
+    }
+
+    private final class ChunkWriters {
+        private final ChunkWriter nodes;
+        private final ChunkWriter relationships;
+        private final StringBuilder row = new StringBuilder(64);
+
+        private ChunkWriters(int id) {
+            this.nodes = new ChunkWriter(NODES, id);
+            this.relationships = new ChunkWriter(RELATIONSHIPS, id);
+        }
+
+        private void flush() throws IOException {
+            nodes.flush();
+            relationships.flush();
+        }
+
+        private void close() throws IOException {
+            nodes.close();
+            relationships.close();
+        }
+    }
+
+    private final class ChunkWriter {
+        private final String prefix;
+        private final int id;
+        private int chunk;
+        private long rows;
+        private Writer writer;
+
+        private ChunkWriter(String prefix, int id) {
+            this.prefix = prefix;
+            this.id = id;
+        }
+
+        private void write(CharSequence row) throws IOException {
+            if (writer == null || rows >= chunkRows) {
+                close();
+                writer = open(directory.resolve("%s-%d-%d.csv%s".formatted(prefix, id, ++chunk, compress ? ".gz" : "")));
+                rows = 0;
+            }
+            writer.append(row);
+            writer.write('\n');
+            rows++;
+        }
+
+        private Writer open(Path file) throws IOException {
+            OutputStream output = new FileOutputStream(file.toFile());
+            if (compress) {
+                output = new GZIPOutputStream(output, 1 << 16);
+            }
+            return new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 1 << 16);
+        }
+
+        private void flush() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+        }
+
+        private void close() throws IOException {
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+        }
+    }
+}
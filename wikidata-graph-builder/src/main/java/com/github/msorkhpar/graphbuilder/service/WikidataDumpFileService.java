@@ -1,101 +1,356 @@
 package com.github.msorkhpar.graphbuilder.service;
 
+import com.github.msorkhpar.graphbuilder.export.CsrGraphExporter;
+import com.github.msorkhpar.graphbuilder.export.Neo4jCsvExporter;
+import com.github.msorkhpar.graphbuilder.store.TripleStore;
+import com.github.msorkhpar.graphbuilder.store.TripleStoreReader;
+import com.github.msorkhpar.graphbuilder.store.TripleStoreWriter;
+import com.github.msorkhpar.graphbuilder.utils.WikidataEntity;
+import com.github.msorkhpar.wikistorage.data.CheckpointService;
+import com.github.msorkhpar.wikistorage.data.EntityRevision;
+import com.github.msorkhpar.wikistorage.data.EntityRevisionService;
+import com.github.msorkhpar.wikistorage.data.IngestionCheckpoint;
 import com.github.msorkhpar.wikistorage.data.PersistenceService;
-import com.github.msorkhpar.graphbuilder.extractor.WikiDataEntityExtractor;
-import com.github.msorkhpar.wikistorage.utils.KGTriple;
+import com.github.msorkhpar.wikistorage.data.Subject;
+import com.github.msorkhpar.wikistorage.dump.DumpPage;
+import com.github.msorkhpar.wikistorage.dump.DumpPageReader;
+import com.github.msorkhpar.wikistorage.dump.ParallelBZip2InputStream;
+import com.github.msorkhpar.wikistorage.pipeline.CheckpointTracker;
+import com.github.msorkhpar.wikistorage.pipeline.IngestionPipeline;
+import com.github.msorkhpar.wikistorage.pipeline.PipelineExecutors;
+import com.github.msorkhpar.wikistorage.pipeline.PipelineMetrics;
+import com.github.msorkhpar.wikistorage.pipeline.PipelineSettings;
+import com.github.msorkhpar.wikistorage.utils.EntityIds;
+import com.github.msorkhpar.wikistorage.utils.LongHashSet;
+import com.github.msorkhpar.wikistorage.utils.QidSet;
+import com.github.msorkhpar.wikistorage.utils.TripleBuffer;
 import com.github.msorkhpar.wikistorage.utils.WikidataEnglishInfoDTO;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.w3c.dom.Element;
 
-import java.io.BufferedReader;
-import java.io.IOException;
+import java.io.Reader;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.github.msorkhpar.graphbuilder.extractor.WikiDataEntityExtractor.*;
-import static com.github.msorkhpar.graphbuilder.utils.BZip2BufferReader.createBufferedReader;
+import static com.github.msorkhpar.wikistorage.dump.BZip2BufferReader.createBufferedReader;
+import static com.github.msorkhpar.wikistorage.dump.BZip2BufferReader.createResumedReader;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 class WikidataDumpFileService {
 
+    private static final String APPLICATION = "wikidata-graph-builder";
+    private static final ThreadLocal<TripleBuffer> TRIPLE_BUFFER = ThreadLocal.withInitial(TripleBuffer::new);
+    private static final int SWEEP_BATCH_SIZE = 10_000;
+
     private final PersistenceService persistenceService;
+    private final CheckpointService checkpointService;
+    private final PipelineSettings pipelineSettings;
+    private final PipelineExecutors pipelineExecutors;
+    private final MeterRegistry meterRegistry;
+    private final Optional<Neo4jCsvExporter> csvExporter;
+    private final Optional<CsrGraphExporter> csrExporter;
+    private final TripleStore tripleStore;
+    private final EntityRevisionService revisionService;
 
+    // items of the dumps an incremental run read, the stored entities which are not among them are removed at the end
+    private final QidSet seen = new QidSet();
+    // a file was resumed, skipped or replayed, so not every item of the dumps is in seen
+    private volatile boolean partial;
 
     @SneakyThrows
     @Async
     public CompletableFuture<Path> process(Path dumpFile) {
         String fileName = dumpFile.getFileName().toString();
         long start = System.currentTimeMillis();
-        long counter = 1;
+        if (tripleStore.canReplay(fileName)) {
+            return replay(dumpFile);
+        }
         logger.info("Start processing [{}]", fileName);
-        try (BufferedReader reader = createBufferedReader(dumpFile)) {
-            StringBuilder xmlBuilder = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (xmlBuilder.isEmpty() && !line.trim().equals("<page>")) {
-                    continue;
-                }
-
-                // <page> is found. Start building the current xml tag.
-                xmlBuilder.append(line);
-
-                if (line.trim().equals("</page>")) {
-                    String pageString = xmlBuilder.toString();
-                    try {
-                        Element xmlPage = createPage(pageString);
-                        Optional<Set<KGTriple>> tripleSet = WikiDataEntityExtractor.extractTriples(xmlPage);
-                        Optional<WikidataEnglishInfoDTO> metadata = extractMetadata(xmlPage);
-                        if (tripleSet.isEmpty() || metadata.isEmpty() ||
-                                (metadata.get().getLabel().isEmpty() && metadata.get().getDescription().isEmpty())
-                        ) {
-                            continue;
+        long counter;
+        // a partly written CSV or CSR export or triple store can not be continued
+        boolean resumable = csvExporter.isEmpty() && csrExporter.isEmpty() && !tripleStore.isWriting();
+        try (CheckpointTracker checkpoint = checkpointService.open(APPLICATION, fileName, resumable);
+             TripleStoreWriter store = tripleStore.isWriting() ? tripleStore.openWriter(fileName) : null) {
+            // subjects of the pages the crashed run may have stored, their batches merge instead of creating
+            Set<Long> replayed = ConcurrentHashMap.newKeySet();
+            IngestionPipeline<DumpPage, WikidataEntity> pipeline = new IngestionPipeline<>(fileName, pipelineSettings,
+                    pipelineExecutors, page -> {
+                        WikidataEntity entity = parse(page);
+                        if (entity != null && checkpoint.mayBeStored(page.id())) {
+                            replayed.add(entity.subject());
                         }
-                        boolean triplePersistentStatus = processTriples(tripleSet);
-                        if (triplePersistentStatus) {
-                            processMetadata(metadata);
+                        return entity;
+                    }, entities -> {
+                        if (store != null) {
+                            store.append(entities.stream().filter(entity -> !entity.isDropped()).toList());
                         }
-                    } catch (Exception e) {
-                        logger.info("Extraction from the following text was not successful, {}", pageString);
-                    }
-                    // prepare the builder for the next page
-                    xmlBuilder.setLength(0);
-                    counter++;
-                    if (counter++ % 10_000 == 0) {
-                        logger.info("[{}] pages of [{}] is processed", counter, fileName);
+                        return persist(entities, anyReplayed(replayed, entities));
+                    });
+            IngestionCheckpoint resumeFrom = checkpoint.start();
+            if (!resumeFrom.isStart()) {
+                partial = true;
+            }
+            if (resumeFrom.completed()) {
+                logger.info("[{}] is already processed, skipping it", fileName);
+                return CompletableFuture.completedFuture(dumpFile);
+            }
+            ParallelBZip2InputStream input = pipelineExecutors.openDump(dumpFile, resumeFrom.blockOffset());
+            if (!resumeFrom.isStart()) {
+                logger.info("Resuming [{}] after page [{}], [{}] pages are already stored",
+                        fileName, resumeFrom.lastPageId(), resumeFrom.pages());
+            }
+            pipeline.withMetrics(new PipelineMetrics(meterRegistry, fileName)
+                    .bytes("compressed", input, ParallelBZip2InputStream::compressedBytes)
+                    .bytes("uncompressed", input, ParallelBZip2InputStream::decompressedBytes));
+            Reader text = resumeFrom.isStart() ? createBufferedReader(input) : createResumedReader(input);
+            try (DumpPageReader reader = new DumpPageReader(text, input::checkpointPosition)) {
+                pipeline.onCommitted(checkpoint::committed);
+                counter = pipeline.run(() -> {
+                    DumpPage page;
+                    do {
+                        page = reader.next();
+                    } while (page != null && checkpoint.isCommitted(page.id()));
+                    if (page != null) {
+                        checkpoint.read(page.id(), reader.pageOffset());
                     }
+                    return page;
+                });
+                awaitOutputs();
+                if (store != null) {
+                    store.complete();
                 }
+                checkpoint.complete();
             }
-        } catch (IOException e) {
+        } catch (Exception e) {
             logger.error("Error processing [{}]", fileName, e);
             return CompletableFuture.failedFuture(e);
         }
-        logger.info("Finish processing [{}] in [{}ms]", fileName, System.currentTimeMillis() - start);
+        logger.info("Finish processing [{}] in [{}ms], [{}] entities are stored",
+                fileName, System.currentTimeMillis() - start, counter);
+        return CompletableFuture.completedFuture(dumpFile);
+    }
+
+    /**
+     * Sends the entities of a triple store through the same outputs as parsed ones, one chunk per batch.
+     */
+    private CompletableFuture<Path> replay(Path dumpFile) {
+        partial = true;
+        String fileName = dumpFile.getFileName().toString();
+        long start = System.currentTimeMillis();
+        long counter;
+        try (TripleStoreReader reader = tripleStore.openReader(fileName)) {
+            logger.info("Replaying [{}] from [{}]: [{}] entities, [{}] triples in [{}] chunks",
+                    fileName, reader.file(), reader.entities(), reader.triples(), reader.chunks());
+            List<CompletableFuture<Void>> committed = new ArrayList<>(reader.chunks());
+            for (int i = 0; i < reader.chunks(); i++) {
+                int chunk = i;
+                committed.add(CompletableFuture
+                        .supplyAsync(() -> persist(reader.chunk(chunk).toEntities(), false),
+                                pipelineExecutors.writers())
+                        .thenCompose(future -> future));
+            }
+            CompletableFuture.allOf(committed.toArray(new CompletableFuture[0])).join();
+            awaitOutputs();
+            counter = reader.entities();
+        } catch (Exception e) {
+            logger.error("Error replaying [{}]", fileName, e);
+            return CompletableFuture.failedFuture(e);
+        }
+        logger.info("Finish replaying [{}] in [{}ms], [{}] entities are stored",
+                fileName, System.currentTimeMillis() - start, counter);
         return CompletableFuture.completedFuture(dumpFile);
     }
 
-    private boolean processTriples(Optional<Set<KGTriple>> tripleSet) {
-        return tripleSet
-                .map(triples ->
-                        persistenceService.persistTriples(
-                                triples.stream()
-                                        .filter(kgTriple -> !kgTriple.isQualifier())
-                                        .toList()
-                        )
-                ).orElse(false);
+    private void awaitOutputs() {
+        if (csvExporter.isPresent()) {
+            csvExporter.get().flush();
+        } else {
+            persistenceService.awaitTriples();
+        }
+    }
+
+    /**
+     * Removes the statements and revisions of the stored entities which none of the dumps of an incremental run has,
+     * such as deleted items. Only a run which read every file from its start knows which ones these are.
+     */
+    void removeUnseen() {
+        if (partial) {
+            logger.warn("Dump files were resumed, skipped or replayed, entities missing from the dumps are removed by"
+                        + " the next complete incremental run");
+            return;
+        }
+        long removed = 0;
+        long last = -1;
+        long[] subjects;
+        while ((subjects = revisionService.subjectsAfter(last, SWEEP_BATCH_SIZE)).length > 0) {
+            last = subjects[subjects.length - 1];
+            long[] unseen = Arrays.stream(subjects).filter(subject -> !seen.contains(subject)).toArray();
+            if (unseen.length == 0) {
+                continue;
+            }
+            TripleBuffer triples = new TripleBuffer();
+            revisionService.find(unseen).values().forEach(revision -> revision.statements(triples));
+            persistenceService.removeTriples(triples);
+            revisionService.delete(unseen);
+            removed += unseen.length;
+        }
+        logger.info("[{}] entities which are missing from the dumps are removed", removed);
+    }
+
+    /**
+     * In incremental runs every item of the dump is marked as seen, and an item which is not part of the graph is
+     * returned as {@link WikidataEntity#dropped dropped}, so its stored statements are removed.
+     */
+    private WikidataEntity parse(DumpPage page) {
+        WikidataEntity entity = page.redirect() == null ? extract(page) : null;
+        if (!revisionService.isIncremental()) {
+            return entity;
+        }
+        long subject = EntityIds.item(page.title());
+        if (subject < 0) {
+            return entity;
+        }
+        seen.add(subject);
+        return entity != null ? entity : WikidataEntity.dropped(subject, page.revisionId());
+    }
+
+    private WikidataEntity extract(DumpPage page) {
+        try {
+            Optional<WikidataEntity> entity = extractEntity(page);
+            // only the entities with an English label are part of the graph
+            if (entity.isEmpty() || StringUtils.isEmpty(entity.get().info().getLabel())) {
+                return null;
+            }
+            return entity.get();
+        } catch (Exception e) {
+            logger.info("Extraction from the following text was not successful, {}", page.text());
+            return null;
+        }
+    }
+
+    private static boolean anyReplayed(Set<Long> replayed, List<WikidataEntity> entities) {
+        boolean any = false;
+        for (WikidataEntity entity : entities) {
+            any |= replayed.remove(entity.subject());
+        }
+        return any;
+    }
+
+    /**
+     * @param merge true if some of the entities may be stored already, so their relationships are merged
+     */
+    private CompletableFuture<Void> persist(List<WikidataEntity> entities, boolean merge) {
+        if (!revisionService.isTracking()) {
+            return persistAll(entities, merge);
+        }
+        List<WikidataEntity> tracked = entities.stream().filter(entity -> entity.subject() >= 0).toList();
+        List<EntityRevision> revisions = tracked.stream()
+                .map(entity -> EntityRevision.of(entity.subject(), entity.revision(), entity.triples()))
+                .toList();
+        if (!revisionService.isIncremental()) {
+            return persistAll(entities, merge).thenRunAsync(() -> revisionService.save(revisions),
+                    pipelineExecutors.writers());
+        }
+        return persistChanges(tracked, revisions);
+    }
+
+    /**
+     * Applies the entities whose revision differs from the stored one: the statements the new revision dropped are
+     * deleted, then the new ones are merged, and once they are committed the metadata is upserted and the revisions are
+     * stored. Entities with an unchanged revision are skipped, dropped entities lose all their statements and their
+     * revision. A batch which fails half way keeps its old revisions, so the next run applies it again; deleting and
+     * merging the same statements twice is harmless.
+     */
+    private CompletableFuture<Void> persistChanges(List<WikidataEntity> entities, List<EntityRevision> revisions) {
+        Map<Long, EntityRevision> stored = revisionService.find(
+                revisions.stream().mapToLong(EntityRevision::subject).toArray());
+        TripleBuffer added = TRIPLE_BUFFER.get();
+        added.clear();
+        TripleBuffer removed = new TripleBuffer();
+        List<WikidataEntity> changed = new ArrayList<>();
+        List<EntityRevision> changedRevisions = new ArrayList<>();
+        LongHashSet dropped = new LongHashSet();
+        for (int i = 0; i < revisions.size(); i++) {
+            EntityRevision revision = revisions.get(i);
+            EntityRevision previous = stored.get(revision.subject());
+            if (entities.get(i).isDropped()) {
+                if (previous != null) {
+                    revision.diff(previous, added, removed);
+                    dropped.add(revision.subject());
+                }
+                continue;
+            }
+            if (revision.isSameRevision(previous)) {
+                continue;
+            }
+            revision.diff(previous, added, removed);
+            changed.add(entities.get(i));
+            changedRevisions.add(revision);
+        }
+        if (changed.isEmpty() && dropped.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        logger.debug("[{}] of [{}] entities changed and [{}] dropped, [{}] statements added and [{}] removed",
+                changed.size(), entities.size(), dropped.size(), added.size(), removed.size());
+        // committed before the additions are queued
+        persistenceService.removeTriples(removed);
+        return persistenceService.persistTriples(added)
+                .orElse(CompletableFuture.completedFuture(null))
+                .thenRunAsync(() -> {
+                    processMetadata(changed);
+                    revisionService.save(changedRevisions);
+                    revisionService.delete(dropped.toArray());
+                }, pipelineExecutors.writers());
+    }
+
+    /**
+     * Stores the subjects of the entities once their triples are committed, on the writer threads instead of the
+     * threads of the Neo4j driver.
+     */
+    private CompletableFuture<Void> persistAll(List<WikidataEntity> entities, boolean merge) {
+        return processTriples(entities, merge)
+                .map(committed -> committed.thenRunAsync(() -> processMetadata(entities), pipelineExecutors.writers()))
+                .orElse(CompletableFuture.completedFuture(null));
+    }
+
+    private Optional<CompletableFuture<Void>> processTriples(List<WikidataEntity> entities, boolean merge) {
+        // the writers copy what they need, so the buffer of a writer thread is reused for its next batch
+        TripleBuffer triples = TRIPLE_BUFFER.get();
+        triples.clear();
+        for (WikidataEntity entity : entities) {
+            if (entity.subject() >= 0) {
+                triples.addStatements(entity.subject(), entity.triples());
+            }
+        }
+        csrExporter.ifPresent(exporter -> exporter.write(triples));
+        if (csvExporter.isPresent()) {
+            csvExporter.get().write(triples);
+            return Optional.of(CompletableFuture.completedFuture(null));
+        }
+        return persistenceService.persistTriples(triples, merge);
     }
 
-    private void processMetadata(Optional<WikidataEnglishInfoDTO> metadata) {
-        metadata.ifPresent(info -> {
-            persistenceService.persistSubject(info.getTitle(), info.getLabel(), info.getDescription());
-        });
+    private void processMetadata(List<WikidataEntity> entities) {
+        persistenceService.persistSubjects(
+                entities.stream()
+                        .map(WikidataEntity::info)
+                        .map(info -> new Subject(info.getTitle(), info.getLabel(), info.getDescription()))
+                        .toList()
+        );
     }
 }
@@ -1,14 +1,20 @@
 package com.github.msorkhpar.graphbuilder.service;
 
+import com.github.msorkhpar.graphbuilder.export.CsrGraphExporter;
+import com.github.msorkhpar.graphbuilder.export.Neo4jCsvExporter;
+import com.github.msorkhpar.wikistorage.data.BulkLoadService;
+import com.github.msorkhpar.wikistorage.data.BulkLoadTable;
+import com.github.msorkhpar.wikistorage.data.EntityRevisionService;
+import com.github.msorkhpar.wikistorage.data.PersistenceService;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
 
@@ -18,15 +24,38 @@ import java.util.concurrent.CompletableFuture;
 public class WikidataService {
 
     private final WikidataDumpFileService tripleExtractorService;
+    private final PersistenceService persistenceService;
+    private final BulkLoadService bulkLoadService;
+    private final Optional<Neo4jCsvExporter> csvExporter;
+    private final Optional<CsrGraphExporter> csrExporter;
+    private final EntityRevisionService revisionService;
 
 
     @SneakyThrows
     public void constructWikidataTree(List<Path> dumpFiles) {
+        if (revisionService.isIncremental()
+            && (csvExporter.isPresent() || csrExporter.isPresent() || bulkLoadService.isEnabled())) {
+            throw new IllegalStateException(
+                    "app.incremental.enabled updates an existing graph, it can not be combined with a CSV or CSR"
+                    + " export or a bulk load");
+        }
+        // MERGE needs the index while loading, the CSV import gets it afterwards
+        if (csvExporter.isEmpty()) {
+            persistenceService.createNeo4jIndexes();
+        }
+        bulkLoadService.beforeLoad(List.of(BulkLoadTable.SUBJECTS));
         ArrayList<CompletableFuture<Path>> results = new ArrayList<>();
         for (Path dumpFile : dumpFiles) {
             results.add(tripleExtractorService.process(dumpFile));
         }
         CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).join();
+        if (revisionService.isIncremental()) {
+            tripleExtractorService.removeUnseen();
+        }
+        bulkLoadService.afterLoad(List.of(BulkLoadTable.SUBJECTS));
+        if (csrExporter.isPresent()) {
+            csrExporter.get().finish();
+        }
     }
 
 }
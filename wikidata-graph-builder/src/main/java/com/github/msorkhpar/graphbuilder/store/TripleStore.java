@@ -0,0 +1,60 @@
+package com.github.msorkhpar.graphbuilder.store;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Keeps the parsed entities of every dump file in a binary file under {@code app.triple-store.dir}, see
+ * {@link TripleStoreFormat}. With {@code write} the store of a dump file is written while the dump is processed, with
+ * {@code replay} a complete store is read instead of decompressing and parsing its dump file again.
+ */
+@Service
+@Slf4j
+public class TripleStore {
+
+    @Value("${app.triple-store.dir:}")
+    private String directory;
+    @Value("${app.triple-store.write:false}")
+    private boolean write;
+    @Value("${app.triple-store.replay:false}")
+    private boolean replay;
+
+    @PostConstruct
+    void start() throws IOException {
+        if ((write || replay) && directory.isBlank()) {
+            throw new IllegalStateException("app.triple-store.dir is required to write or replay triple stores");
+        }
+        if (write) {
+            Files.createDirectories(Path.of(directory));
+        }
+    }
+
+    public boolean isWriting() {
+        return write;
+    }
+
+    /**
+     * @return true if the dump file has a complete store which should be replayed
+     */
+    public boolean canReplay(String dumpFile) {
+        return replay && Files.isRegularFile(file(dumpFile)) && TripleStoreReader.isComplete(file(dumpFile));
+    }
+
+    public TripleStoreWriter openWriter(String dumpFile) throws IOException {
+        return new TripleStoreWriter(file(dumpFile));
+    }
+
+    public TripleStoreReader openReader(String dumpFile) throws IOException {
+        return new TripleStoreReader(file(dumpFile));
+    }
+
+    private Path file(String dumpFile) {
+        return Path.of(directory, dumpFile + TripleStoreFormat.EXTENSION);
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.msorkhpar.graphbuilder.store;
+
+import com.github.msorkhpar.graphbuilder.utils.WikidataEntity;
+import com.github.msorkhpar.wikistorage.utils.PackedTriple;
+import com.github.msorkhpar.wikistorage.utils.TripleBuffer;
+import com.github.msorkhpar.wikistorage.utils.WikidataEnglishInfoDTO;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.msorkhpar.graphbuilder.store.TripleStoreFormat.ENTITY_HEADER_SIZE;
+import static com.github.msorkhpar.graphbuilder.store.TripleStoreFormat.align;
+
+/**
+ * A cursor over the entities of a chunk. The triples of the current entity are read straight from the mapped file;
+ * its info is only decoded when asked for.
+ */
+public class TripleStoreChunk {
+
+    private final ByteBuffer data;
+    private final int entities;
+    private int next;
+    private int position = -1;
+    private long subject;
+    private long revision;
+    private int tripleCount;
+    private int infoLength;
+
+    TripleStoreChunk(ByteBuffer data, int entities) {
+        this.data = data;
+        this.entities = entities;
+    }
+
+    public int entities() {
+        return entities;
+    }
+
+    /**
+     * Moves to the next entity.
+     *
+     * @return false when the chunk is exhausted
+     */
+    public boolean next() {
+        if (next == entities) {
+            return false;
+        }
+        position = position < 0 ? 0 : position + ENTITY_HEADER_SIZE + tripleCount * Long.BYTES + align(infoLength);
+        subject = data.getLong(position);
+        revision = data.getLong(position + 8);
+        tripleCount = data.getInt(position + 16);
+        infoLength = data.getInt(position + 20);
+        next++;
+        return true;
+    }
+
+    public long subject() {
+        return subject;
+    }
+
+    public long revision() {
+        return revision;
+    }
+
+    public int tripleCount() {
+        return tripleCount;
+    }
+
+    /**
+     * @return the packed triple, see {@link PackedTriple}
+     */
+    public long triple(int index) {
+        return data.getLong(position + ENTITY_HEADER_SIZE + index * Long.BYTES);
+    }
+
+    public long[] triples() {
+        long[] triples = new long[tripleCount];
+        data.slice(position + ENTITY_HEADER_SIZE, tripleCount * Long.BYTES).order(data.order())
+                .asLongBuffer().get(triples);
+        return triples;
+    }
+
+    /**
+     * Adds the non-qualifier triples of the current entity without materializing them.
+     */
+    public void addStatementsTo(TripleBuffer buffer) {
+        for (int i = 0; i < tripleCount; i++) {
+            long triple = triple(i);
+            if (!PackedTriple.isQualifier(triple)) {
+                buffer.add(subject, PackedTriple.predicate(triple), PackedTriple.object(triple));
+            }
+        }
+    }
+
+    public WikidataEnglishInfoDTO info() {
+        int offset = position + ENTITY_HEADER_SIZE + tripleCount * Long.BYTES;
+        String[] strings = new String[4];
+        for (int i = 0; i < strings.length; i++) {
+            int length = data.getInt(offset);
+            offset += 4;
+            if (length >= 0) {
+                byte[] bytes = new byte[length];
+                data.get(offset, bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+                offset += length;
+            }
+        }
+        return new WikidataEnglishInfoDTO(strings[0], strings[1], strings[2], strings[3]);
+    }
+
+    public WikidataEntity entity() {
+        return new WikidataEntity(subject, revision, triples(), info());
+    }
+
+    /**
+     * Decodes the remaining entities of the chunk.
+     */
+    public List<WikidataEntity> toEntities() {
+        List<WikidataEntity> result = new ArrayList<>(entities - next);
+        while (next()) {
+            result.add(entity());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.msorkhpar.graphbuilder.store;
+
+import java.nio.ByteOrder;
+
+/**
+ * Layout of a triple store file, all numbers little-endian:
+ * <pre>
+ * header  magic "WKTRIPLE", int version, int 0, long chunks, long entities, long triples, long index offset,
+ *         zero padding up to 64 bytes
+ * chunk   entities, each one 8-byte aligned:
+ *           long subject, long revision, int triple count, int info length, long[] packed triples,
+ *           info: title, label, description and English Wikipedia title as int length (-1 for null) + UTF-8,
+ *           zero padding up to the next multiple of 8
+ * index   per chunk: long offset, int length, int entities
+ * </pre>
+ * The header is written last, a file without a valid header is incomplete.
+ */
+final class TripleStoreFormat {
+
+    static final byte[] MAGIC = {'W', 'K', 'T', 'R', 'I', 'P', 'L', 'E'};
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 64;
+    static final int INDEX_ENTRY_SIZE = 16;
+    static final int ENTITY_HEADER_SIZE = 24;
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    static final String EXTENSION = ".triples";
+
+    private TripleStoreFormat() {
+    }
+
+    static int align(int length) {
+        return (length + 7) & ~7;
+    }
+}
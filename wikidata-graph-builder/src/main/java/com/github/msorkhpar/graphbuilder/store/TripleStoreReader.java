@@ -0,0 +1,121 @@
+package com.github.msorkhpar.graphbuilder.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static com.github.msorkhpar.graphbuilder.store.TripleStoreFormat.*;
+
+/**
+ * Reads a complete triple store file through memory mappings of up to {@code 1GB} of whole chunks, so the chunks are
+ * read from the page cache without copying them into heap buffers first. Chunks are independent and can be read by
+ * several threads at once.
+ */
+public class TripleStoreReader implements Closeable {
+
+    private static final long REGION_SIZE = 1L << 30;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long entities;
+    private final long triples;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final int[] counts;
+    private final MappedByteBuffer[] regions;
+    private final long[] regionStarts;
+    private final int[] regionOfChunk;
+
+    public TripleStoreReader(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ORDER);
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            int version = header.getInt();
+            if (!Arrays.equals(magic, MAGIC) || version != VERSION) {
+                throw new IOException("[" + file + "] is not a complete triple store of version [" + VERSION + "]");
+            }
+            header.getInt();
+            int chunks = Math.toIntExact(header.getLong());
+            entities = header.getLong();
+            triples = header.getLong();
+            long indexOffset = header.getLong();
+            ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset,
+                    (long) chunks * INDEX_ENTRY_SIZE).order(ORDER);
+            offsets = new long[chunks];
+            lengths = new int[chunks];
+            counts = new int[chunks];
+            for (int i = 0; i < chunks; i++) {
+                offsets[i] = index.getLong();
+                lengths[i] = index.getInt();
+                counts[i] = index.getInt();
+            }
+            regionOfChunk = new int[chunks];
+            long[] starts = new long[chunks];
+            long[] ends = new long[chunks];
+            int regionCount = 0;
+            for (int i = 0; i < chunks; i++) {
+                long end = offsets[i] + lengths[i];
+                if (regionCount == 0 || end - starts[regionCount - 1] > REGION_SIZE) {
+                    starts[regionCount++] = offsets[i];
+                }
+                ends[regionCount - 1] = end;
+                regionOfChunk[i] = regionCount - 1;
+            }
+            regions = new MappedByteBuffer[regionCount];
+            regionStarts = Arrays.copyOf(starts, regionCount);
+            for (int i = 0; i < regionCount; i++) {
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, starts[i], ends[i] - starts[i]);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return true if the file has the header of a complete triple store
+     */
+    public static boolean isComplete(Path file) {
+        try (TripleStoreReader ignored = new TripleStoreReader(file)) {
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public int chunks() {
+        return offsets.length;
+    }
+
+    public long entities() {
+        return entities;
+    }
+
+    public long triples() {
+        return triples;
+    }
+
+    public TripleStoreChunk chunk(int index) {
+        int region = regionOfChunk[index];
+        ByteBuffer data = regions[region].slice((int) (offsets[index] - regionStarts[region]), lengths[index])
+                .order(ORDER);
+        return new TripleStoreChunk(data, counts[index]);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
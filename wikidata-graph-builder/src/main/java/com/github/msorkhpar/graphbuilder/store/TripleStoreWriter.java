@@ -0,0 +1,165 @@
+package com.github.msorkhpar.graphbuilder.store;
+
+import com.github.msorkhpar.graphbuilder.utils.WikidataEntity;
+import com.github.msorkhpar.wikistorage.utils.WikidataEnglishInfoDTO;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.msorkhpar.graphbuilder.store.TripleStoreFormat.*;
+
+/**
+ * Appends batches of entities to a triple store file, one chunk per batch. Batches are encoded by the calling threads
+ * and written at reserved offsets, so the writer threads of a pipeline do not wait for each other. The file is written
+ * next to its final name and moved there by {@link #complete()}.
+ */
+@Slf4j
+public class TripleStoreWriter implements Closeable {
+
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(1 << 20).order(ORDER));
+
+    private final Path file;
+    private final Path temporary;
+    private final FileChannel channel;
+    private final AtomicLong position = new AtomicLong(HEADER_SIZE);
+    private final List<long[]> index = new ArrayList<>();
+    private final AtomicLong entities = new AtomicLong();
+    private final AtomicLong triples = new AtomicLong();
+    private boolean completed;
+
+    TripleStoreWriter(Path file) throws IOException {
+        this.file = file;
+        this.temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    public void append(List<WikidataEntity> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        ByteBuffer buffer = BUFFER.get();
+        buffer.clear();
+        long batchTriples = 0;
+        for (WikidataEntity entity : batch) {
+            buffer = encode(buffer, entity);
+            batchTriples += entity.triples().length;
+        }
+        BUFFER.set(buffer);
+        buffer.flip();
+        int length = buffer.remaining();
+        long offset = position.getAndAdd(length);
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, offset + buffer.position());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Writing a chunk to [" + temporary + "] failed", e);
+        }
+        synchronized (index) {
+            index.add(new long[]{offset, length, batch.size()});
+        }
+        entities.addAndGet(batch.size());
+        triples.addAndGet(batchTriples);
+    }
+
+    /**
+     * Writes the index and the header and moves the file to its final name.
+     */
+    public void complete() throws IOException {
+        long indexOffset = position.get();
+        List<long[]> chunks;
+        synchronized (index) {
+            chunks = new ArrayList<>(index);
+        }
+        chunks.sort(Comparator.comparingLong(chunk -> chunk[0]));
+        ByteBuffer entries = ByteBuffer.allocate(chunks.size() * INDEX_ENTRY_SIZE).order(ORDER);
+        for (long[] chunk : chunks) {
+            entries.putLong(chunk[0]).putInt((int) chunk[1]).putInt((int) chunk[2]);
+        }
+        write(entries.flip(), indexOffset);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ORDER);
+        header.put(MAGIC).putInt(VERSION).putInt(0)
+                .putLong(chunks.size()).putLong(entities.get()).putLong(triples.get()).putLong(indexOffset);
+        write(header.clear(), 0);
+        channel.force(true);
+        channel.close();
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        completed = true;
+        logger.info("Triple store [{}] is written: [{}] entities, [{}] triples in [{}] chunks",
+                file, entities.get(), triples.get(), chunks.size());
+    }
+
+    /**
+     * Closes the file, an incomplete one is removed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!completed) {
+            channel.close();
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void write(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, offset + buffer.position());
+        }
+    }
+
+    private static ByteBuffer encode(ByteBuffer buffer, WikidataEntity entity) {
+        WikidataEnglishInfoDTO info = entity.info();
+        byte[][] strings = {
+                bytes(info.getTitle()), bytes(info.getLabel()), bytes(info.getDescription()), bytes(info.getEnWikiTitle())
+        };
+        int infoLength = 0;
+        for (byte[] string : strings) {
+            infoLength += 4 + (string == null ? 0 : string.length);
+        }
+        long[] packed = entity.triples();
+        int length = ENTITY_HEADER_SIZE + packed.length * Long.BYTES + align(infoLength);
+        buffer = ensure(buffer, length);
+        int start = buffer.position();
+        buffer.putLong(entity.subject()).putLong(entity.revision()).putInt(packed.length).putInt(infoLength);
+        buffer.asLongBuffer().put(packed);
+        buffer.position(buffer.position() + packed.length * Long.BYTES);
+        for (byte[] string : strings) {
+            if (string == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(string.length).put(string);
+            }
+        }
+        while (buffer.position() < start + length) {
+            buffer.put((byte) 0);
+        }
+        return buffer;
+    }
+
+    private static ByteBuffer ensure(ByteBuffer buffer, int extra) {
+        if (buffer.remaining() >= extra) {
+            return buffer;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + extra))
+                .order(ORDER);
+        return larger.put(buffer.flip());
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -3,160 +3,201 @@ package com.github.msorkhpar.graphbuilder.utils;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
-import com.github.msorkhpar.wikistorage.utils.KGTriple;
+import com.github.msorkhpar.wikistorage.utils.EntityIds;
+import com.github.msorkhpar.wikistorage.utils.LongHashSet;
+import com.github.msorkhpar.wikistorage.utils.PackedTriple;
+import com.github.msorkhpar.wikistorage.utils.WikidataEnglishInfoDTO;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Set;
 
 // A modified version of https://github.com/klimzaporojets/ES-benchmark/blob/main/wikidata_reader/src/main/java/wikidata/misc/SnapshotParser.java
+// Reads an entity in a single pass: the item claims (with their qualifiers), the English label and description, and
+// the English Wikipedia sitelink. Every other language, site and field is skipped without being materialized.
+// Triples are collected as packed longs in a set which is reused for every entity, so an instance is not thread-safe.
 @Slf4j
 public class SnapshotParser {
 
-    public void addTripleStr(String subjectQid, String propertyId, String objectQid, Set<KGTriple> readTriples,
-                             boolean isQualifier) {
-        assert objectQid.startsWith("Q");
-        assert propertyId.startsWith("P");
-        assert subjectQid.startsWith("Q");
-        KGTriple kgTriple = new KGTriple(subjectQid, propertyId, objectQid, isQualifier);
-        readTriples.add(kgTriple);
-    }
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String LANGUAGE = "en";
+    private static final String SITE = "enwiki";
+    private static final long SCHOLARLY_ARTICLE = 13442814;
+    private static final long WIKIMEDIA_CATEGORY = 7318358;
+    private static final long[] NO_TRIPLES = new long[0];
 
+    private final LongHashSet readTriples = new LongHashSet(1024);
 
-    public Set<KGTriple> parseSnapshot(String text) throws IOException {
-        Set<KGTriple> triples = new HashSet<>();
-        JsonParser jParser = new JsonFactory().createParser(text);
-        int depth = 0;
-        JsonToken nextToken = jParser.nextToken();
-        boolean insideClaims = false;
-        boolean insideMainSnak = false;
-        boolean insideDataValue = false;
-        boolean insideValue = false;
-        boolean insideQualifiers = false;
+    public void addTriple(String propertyId, String objectQid, boolean isQualifier) {
+        int property = EntityIds.property(propertyId);
+        long object = EntityIds.item(objectQid);
+        if (property < 0 || object < 0) {
+            logger.debug("Skipping the triple with unknown ids [{}] -> [{}]", propertyId, objectQid);
+            return;
+        }
+        readTriples.add(PackedTriple.pack(property, object, isQualifier));
+    }
 
-        boolean insideQualifierDataValue = false;
-        boolean insideQualifierValue = false;
+    public WikidataEntity parseSnapshot(String title, String text) throws IOException {
+        return parseSnapshot(title, -1, text);
+    }
 
-        String propertyId = "";
-        String subjectQid = "";
-        String propertyQualifierId = "";
-        String currQualifierEntityType = "";
-        String currEntityType = "";
-        boolean doAdd = true;
-        Set<KGTriple> readCurrTriples = new HashSet<>();
-        while (nextToken != null && doAdd) {
-            if (nextToken == JsonToken.START_OBJECT) {
-                depth += 1;
-            }
-            if (nextToken == JsonToken.START_ARRAY) {
-                depth += 1;
+    public WikidataEntity parseSnapshot(String title, long revision, String text) throws IOException {
+        try (JsonParser jParser = JSON_FACTORY.createParser(text)) {
+            if (jParser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("An entity must be a json object");
             }
-            if (depth == 1 && "claims".equals(jParser.getCurrentName()) && nextToken == JsonToken.FIELD_NAME) {
-                insideClaims = true;
-            }
-            if (depth == 4 && insideClaims && nextToken == JsonToken.FIELD_NAME) {
-                if ("mainsnak".equals(jParser.getCurrentName())) {
-                    insideMainSnak = true;
-                }
-                if ("qualifiers".equals(jParser.getCurrentName())) {
-                    insideQualifiers = true;
+            long[] triples = NO_TRIPLES;
+            String subjectQid = "";
+            String label = null;
+            String description = null;
+            String enWikiTitle = null;
+            String fieldName;
+            while ((fieldName = jParser.nextFieldName()) != null) {
+                JsonToken token = jParser.nextToken();
+                switch (fieldName) {
+                    case "id" -> subjectQid = jParser.getText();
+                    case "labels" -> label = readEnglishValue(jParser, token, LANGUAGE, "value");
+                    case "descriptions" -> description = readEnglishValue(jParser, token, LANGUAGE, "value");
+                    case "sitelinks" -> enWikiTitle = readEnglishValue(jParser, token, SITE, "title");
+                    case "claims" -> triples = readClaims(jParser, token);
+                    default -> jParser.skipChildren();
                 }
             }
-            if (depth == 5 && insideMainSnak && nextToken == JsonToken.FIELD_NAME) {
-                if ("datavalue".equals(jParser.getCurrentName())) {
-                    insideDataValue = true;
-                }
-            }
-            if (depth == 6 && insideDataValue && nextToken == JsonToken.FIELD_NAME) {
-                if ("value".equals(jParser.getCurrentName())) {
-                    insideValue = true;
-                    currEntityType = "";
-                }
+            return new WikidataEntity(EntityIds.item(subjectQid), revision, triples,
+                    new WikidataEnglishInfoDTO(title, label, description, enWikiTitle));
+        }
+    }
+
+    /**
+     * Reads {@code {"<key>": {"<valueField>": "..."}, ...}} and returns the value of the given key only.
+     * Entities without any labels, descriptions or sitelinks have an empty array instead of an object.
+     */
+    private String readEnglishValue(JsonParser jParser, JsonToken token, String key, String valueField)
+            throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            jParser.skipChildren();
+            return null;
+        }
+        String value = null;
+        String fieldName;
+        while ((fieldName = jParser.nextFieldName()) != null) {
+            jParser.nextToken();
+            if (!key.equals(fieldName)) {
+                jParser.skipChildren();
+                continue;
             }
-            if (depth == 7 && insideQualifiers && nextToken == JsonToken.FIELD_NAME) {
-                if ("datavalue".equals(jParser.getCurrentName())) {
-                    insideQualifierDataValue = true;
+            String innerField;
+            while ((innerField = jParser.nextFieldName()) != null) {
+                jParser.nextToken();
+                if (valueField.equals(innerField)) {
+                    value = jParser.getText();
+                } else {
+                    jParser.skipChildren();
                 }
             }
-            if (depth == 8 && insideQualifierDataValue && nextToken == JsonToken.FIELD_NAME) {
-                if ("value".equals(jParser.getCurrentName())) {
-                    insideQualifierValue = true;
-                    currQualifierEntityType = "";
-                }
+        }
+        return value;
+    }
+
+    private long[] readClaims(JsonParser jParser, JsonToken token) throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            jParser.skipChildren();
+            return NO_TRIPLES;
+        }
+        readTriples.clear();
+        boolean doAdd = true;
+        String propertyId;
+        while ((propertyId = jParser.nextFieldName()) != null) {
+            if (jParser.nextToken() != JsonToken.START_ARRAY || !doAdd) {
+                jParser.skipChildren();
+                continue;
             }
-            if (depth == 1 && nextToken == JsonToken.VALUE_STRING) {
-                if ("id".equals(jParser.getCurrentName())) {
-                    subjectQid = jParser.getValueAsString();
+            JsonToken statement;
+            while ((statement = jParser.nextToken()) != null && statement != JsonToken.END_ARRAY) {
+                if (statement != JsonToken.START_OBJECT) {
+                    jParser.skipChildren();
+                    continue;
+                }
+                String statementField;
+                while ((statementField = jParser.nextFieldName()) != null) {
+                    JsonToken statementToken = jParser.nextToken();
+                    if ("mainsnak".equals(statementField) && statementToken == JsonToken.START_OBJECT) {
+                        String objectQid = readSnakItem(jParser);
+                        if (objectQid != null) {
+                            long object = EntityIds.item(objectQid);
+                            if (object == SCHOLARLY_ARTICLE || object == WIKIMEDIA_CATEGORY) {
+                                doAdd = false;
+                            }
+                            addTriple(propertyId, objectQid, false);
+                        }
+                    } else if ("qualifiers".equals(statementField) && statementToken == JsonToken.START_OBJECT) {
+                        readQualifiers(jParser);
+                    } else {
+                        jParser.skipChildren();
+                    }
                 }
             }
-            if (depth == 2 && insideClaims && nextToken == JsonToken.FIELD_NAME) {
-                propertyId = jParser.getCurrentName();
-            }
-            if (depth == 5 && insideQualifiers && nextToken == JsonToken.FIELD_NAME) {
-                propertyQualifierId = jParser.getCurrentName();
+        }
+        return doAdd ? readTriples.toArray() : NO_TRIPLES;
+    }
+
+    private void readQualifiers(JsonParser jParser) throws IOException {
+        String propertyQualifierId;
+        while ((propertyQualifierId = jParser.nextFieldName()) != null) {
+            if (jParser.nextToken() != JsonToken.START_ARRAY) {
+                jParser.skipChildren();
+                continue;
             }
-            if (depth == 9 && insideQualifierValue && nextToken == JsonToken.VALUE_STRING) {
-                if ("entity-type".equals(jParser.getCurrentName())) {
-                    currQualifierEntityType = jParser.getValueAsString();
+            JsonToken snak;
+            while ((snak = jParser.nextToken()) != null && snak != JsonToken.END_ARRAY) {
+                if (snak != JsonToken.START_OBJECT) {
+                    jParser.skipChildren();
+                    continue;
                 }
-                if ("id".equals(jParser.getCurrentName())) {
-                    if (currQualifierEntityType.equals("item")) {
-                        String objectQualifierQid = jParser.getValueAsString();
-                        addTripleStr(subjectQid, propertyQualifierId, objectQualifierQid, readCurrTriples, true);
-                    }
+                String objectQualifierQid = readSnakItem(jParser);
+                if (objectQualifierQid != null) {
+                    addTriple(propertyQualifierId, objectQualifierQid, true);
                 }
             }
-            if (depth == 7 && insideValue && nextToken == JsonToken.VALUE_STRING) {
-                if ("entity-type".equals(jParser.getCurrentName())) {
-                    currEntityType = jParser.getValueAsString();
-                }
-                if ("id".equals(jParser.getCurrentName())) {
-                    if (currEntityType.equals("item")) {
-                        String objectQid = jParser.getValueAsString();
-//                        if objectQid object == 13442814 or object == 7318358
-                        if (objectQid.equals("Q13442814") || objectQid.equals("Q7318358")) {
-                            doAdd = false;
-                        }
-                        addTripleStr(subjectQid, propertyId, objectQid, readCurrTriples, false);
-                    }
-                }
+        }
+    }
+
+    /**
+     * @return the id of the item a snak points to, or {@code null} when its value is not an item
+     */
+    private String readSnakItem(JsonParser jParser) throws IOException {
+        String objectQid = null;
+        String snakField;
+        while ((snakField = jParser.nextFieldName()) != null) {
+            JsonToken snakToken = jParser.nextToken();
+            if (!"datavalue".equals(snakField) || snakToken != JsonToken.START_OBJECT) {
+                jParser.skipChildren();
+                continue;
             }
-            nextToken = jParser.nextToken();
-            if (nextToken == JsonToken.END_OBJECT || nextToken == JsonToken.END_ARRAY) {
-                depth -= 1;
-                if (depth == 1 && insideClaims) {
-                    insideClaims = false;
-                }
-                if (depth == 4 && insideMainSnak) {
-                    insideMainSnak = false;
-                }
-                if (depth == 4 && insideQualifiers) {
-                    insideQualifiers = false;
-                }
-                if (depth == 5 && insideDataValue) {
-                    insideDataValue = false;
-                }
-                if (depth == 6 && insideValue) {
-                    insideValue = false;
-                }
-                if (depth == 7 && insideQualifierDataValue) {
-                    insideQualifierDataValue = false;
+            String dataValueField;
+            while ((dataValueField = jParser.nextFieldName()) != null) {
+                JsonToken dataValueToken = jParser.nextToken();
+                if (!"value".equals(dataValueField) || dataValueToken != JsonToken.START_OBJECT) {
+                    jParser.skipChildren();
+                    continue;
+                }
+                String entityType = null;
+                String id = null;
+                String valueField;
+                while ((valueField = jParser.nextFieldName()) != null) {
+                    jParser.nextToken();
+                    switch (valueField) {
+                        case "entity-type" -> entityType = jParser.getText();
+                        case "id" -> id = jParser.getText();
+                        default -> jParser.skipChildren();
+                    }
                 }
-                if (depth == 8 && insideQualifierValue) {
-                    insideQualifierValue = false;
+                if ("item".equals(entityType)) {
+                    objectQid = id;
                 }
             }
-            if (nextToken == null && depth > 0) {
-                logger.error("Something weird is going on with this json: {} ", text);
-            }
-        }
-        if (doAdd) {
-            // union
-            triples.addAll(readCurrTriples);
         }
-        jParser.close();
-        return triples;
+        return objectQid;
     }
 
-}
\ No newline at end of file
+}
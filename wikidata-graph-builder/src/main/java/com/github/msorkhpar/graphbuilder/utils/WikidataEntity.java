@@ -0,0 +1,27 @@
+package com.github.msorkhpar.graphbuilder.utils;
+
+import com.github.msorkhpar.wikistorage.utils.PackedTriple;
+import com.github.msorkhpar.wikistorage.utils.WikidataEnglishInfoDTO;
+
+/**
+ * @param subject  number of the entity's item id
+ * @param revision id of the dump revision the entity was read from, {@code -1} if unknown
+ * @param triples the distinct claims and qualifiers of the entity, see {@link PackedTriple}
+ * @param info     the English texts of the entity, {@code null} if it is {@link #isDropped() dropped}
+ */
+public record WikidataEntity(long subject, long revision, long[] triples, WikidataEnglishInfoDTO info) {
+
+    private static final long[] NO_TRIPLES = new long[0];
+
+    /**
+     * An entity of the dump which is not part of the graph any more, e.g. it lost its English label or became a
+     * redirect, so an incremental run removes its statements.
+     */
+    public static WikidataEntity dropped(long subject, long revision) {
+        return new WikidataEntity(subject, revision, NO_TRIPLES, null);
+    }
+
+    public boolean isDropped() {
+        return info == null;
+    }
+}
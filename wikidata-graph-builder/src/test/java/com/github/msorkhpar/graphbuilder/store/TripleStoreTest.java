@@ -0,0 +1,131 @@
+package com.github.msorkhpar.graphbuilder.store;
+
+import com.github.msorkhpar.graphbuilder.utils.WikidataEntity;
+import com.github.msorkhpar.wikistorage.utils.PackedTriple;
+import com.github.msorkhpar.wikistorage.utils.TripleBuffer;
+import com.github.msorkhpar.wikistorage.utils.WikidataEnglishInfoDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TripleStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysTheEntitiesWrittenByConcurrentBatches() throws Exception {
+        Random random = new Random(12);
+        List<List<WikidataEntity>> batches = new ArrayList<>();
+        long subject = 1;
+        for (int b = 0; b < 200; b++) {
+            List<WikidataEntity> batch = new ArrayList<>();
+            for (int e = 0; e < 50; e++) {
+                batch.add(entity(random, subject++, random.nextInt(30)));
+            }
+            batches.add(batch);
+        }
+        // larger than the encoding buffer of a thread
+        batches.add(List.of(entity(random, subject, 200_000)));
+        Path file = directory.resolve("dump.json.bz2.triples");
+
+        try (TripleStoreWriter writer = new TripleStoreWriter(file)) {
+            try (ExecutorService writers = Executors.newFixedThreadPool(4)) {
+                List<Future<?>> appends = new ArrayList<>();
+                for (List<WikidataEntity> batch : batches) {
+                    appends.add(writers.submit(() -> writer.append(batch)));
+                }
+                for (Future<?> append : appends) {
+                    append.get();
+                }
+            }
+            assertFalse(TripleStoreReader.isComplete(file), "the store is only visible once it is complete");
+            writer.complete();
+        }
+
+        List<WikidataEntity> expected = batches.stream().flatMap(List::stream).toList();
+        try (TripleStoreReader reader = new TripleStoreReader(file)) {
+            assertEquals(batches.size(), reader.chunks());
+            assertEquals(expected.size(), reader.entities());
+            assertEquals(expected.stream().mapToLong(entity -> entity.triples().length).sum(), reader.triples());
+            List<WikidataEntity> replayed = new ArrayList<>();
+            for (int i = 0; i < reader.chunks(); i++) {
+                replayed.addAll(reader.chunk(i).toEntities());
+            }
+            replayed.sort(Comparator.comparingLong(WikidataEntity::subject));
+            assertEquals(expected.size(), replayed.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEntityEquals(expected.get(i), replayed.get(i));
+            }
+        }
+    }
+
+    @Test
+    void aChunkAddsOnlyTheStatementsOfItsEntities() throws IOException {
+        long[] triples = {PackedTriple.pack(31, 5, false), PackedTriple.pack(580, 7, true)};
+        Path file = directory.resolve("dump.json.bz2.triples");
+        try (TripleStoreWriter writer = new TripleStoreWriter(file)) {
+            writer.append(List.of(new WikidataEntity(42, 7, triples,
+                    new WikidataEnglishInfoDTO("Q42", "Douglas Adams", null, "Douglas Adams"))));
+            writer.complete();
+        }
+        try (TripleStoreReader reader = new TripleStoreReader(file)) {
+            TripleStoreChunk chunk = reader.chunk(0);
+            assertTrue(chunk.next());
+            assertEquals(42, chunk.subject());
+            assertEquals(7, chunk.revision());
+            assertEquals(2, chunk.tripleCount());
+            TripleBuffer buffer = new TripleBuffer();
+            chunk.addStatementsTo(buffer);
+            assertEquals(1, buffer.size());
+            assertEquals(31, buffer.predicate(0));
+            assertEquals(5, buffer.object(0));
+            assertNull(chunk.info().getDescription());
+            assertFalse(chunk.next());
+        }
+    }
+
+    @Test
+    void anIncompleteStoreIsRemoved() throws IOException {
+        Path file = directory.resolve("dump.json.bz2.triples");
+        try (TripleStoreWriter writer = new TripleStoreWriter(file)) {
+            writer.append(List.of(entity(new Random(1), 1, 3)));
+        }
+        assertFalse(Files.exists(file));
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+        assertFalse(TripleStoreReader.isComplete(file));
+    }
+
+    private static WikidataEntity entity(Random random, long subject, int triples) {
+        long[] packed = new long[triples];
+        for (int i = 0; i < triples; i++) {
+            packed[i] = PackedTriple.pack(random.nextInt(12_000), random.nextLong(120_000_000), random.nextInt(4) == 0);
+        }
+        return new WikidataEntity(subject, random.nextInt(3) == 0 ? -1 : random.nextLong(2_000_000_000L), packed,
+                new WikidataEnglishInfoDTO("Q" + subject, random.nextBoolean() ? "Label " + subject : null,
+                        random.nextBoolean() ? "Beschreibung für " + subject : null,
+                        random.nextInt(3) == 0 ? "" : null));
+    }
+
+    private static void assertEntityEquals(WikidataEntity expected, WikidataEntity actual) {
+        assertEquals(expected.subject(), actual.subject());
+        assertEquals(expected.revision(), actual.revision());
+        assertTrue(Arrays.equals(expected.triples(), actual.triples()), "triples of Q" + expected.subject());
+        assertEquals(expected.info(), actual.info());
+    }
+}
@@ -1,8 +1,12 @@
 package com.github.msorkhpar.pageextextractor.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
@@ -14,11 +18,24 @@ public class AsyncConfig {
     @Value("${app.executor-pool.core-pool-size}")
     private int corePoolSize;
 
+    @Value("${app.executor-pool.virtual-threads:false}")
+    private boolean virtualThreads;
+
     @Bean(name = "taskExecutor")
-    public TaskExecutor taskExecutor() {
+    public TaskExecutor taskExecutor(MeterRegistry meterRegistry) {
+        if (virtualThreads) {
+            // a virtual thread per dump file, still at most core-pool-size files at once
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("dump-file-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(corePoolSize);
+            return executor;
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(corePoolSize);
         executor.initialize();
+        // queued dump files and busy threads
+        new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), "taskExecutor", Tags.empty())
+                .bindTo(meterRegistry);
         return executor;
     }
 
@@ -0,0 +1,138 @@
+package com.github.msorkhpar.pageextextractor.extractor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extracts the lead section of an article and the targets of its wikilinks the way the summarizer did with
+ * mwparserfromhell: the lead is the wikitext before the first heading outside of templates and comments, the targets
+ * are in document order, outer links before the links nested in their labels, with underscores instead of spaces, the
+ * first letter upper-cased and links to other namespaces left out. Comments and {@code <nowiki>} elements hide their
+ * content, unclosed ones are plain text.
+ */
+public final class LeadSectionExtractor {
+
+    private static final String[] IGNORED_NAMESPACES = {
+            "File:", "Category:", "Image:", "Help:", "Template:", "Portal:", "Special:", "Draft:", "Wikipedia:",
+            "WP:", "User:", "Talk:", "User_talk:", "Template_talk:", "Wikipedia_talk:", "File_talk:",
+            "MediaWiki_talk:", "MediaWiki:", "Module:", "Module_talk:", "Category_talk:", "Help_talk:",
+            "Draft_talk:", "TimedText:", "TimedText_talk:", "Book:", "Book_talk:", "Education_Program:"
+    };
+    // start and end of the elements whose content is not parsed
+    private static final String[][] OPAQUE = {{"<!--", "-->"}, {"<nowiki>", "</nowiki>"}};
+
+    private LeadSectionExtractor() {
+    }
+
+    public static String leadSection(String text) {
+        int templates = 0;
+        boolean lineStart = true;
+        int i = 0;
+        while (i < text.length()) {
+            int skipped = skipOpaque(text, i);
+            if (skipped >= 0) {
+                lineStart = false;
+                i = skipped;
+                continue;
+            }
+            if (text.startsWith("{{", i)) {
+                templates++;
+                lineStart = false;
+                i += 2;
+                continue;
+            }
+            if (templates > 0 && text.startsWith("}}", i)) {
+                templates--;
+                i += 2;
+                continue;
+            }
+            char c = text.charAt(i);
+            if (lineStart && templates == 0 && c == '=' && isHeading(text, i)) {
+                return text.substring(0, i);
+            }
+            lineStart = c == '\n';
+            i++;
+        }
+        return text;
+    }
+
+    /**
+     * @return the normalized targets of the wikilinks, duplicates included
+     */
+    public static List<String> linkTargets(String text) {
+        List<String> targets = new ArrayList<>();
+        // start of every open link and the index of its target, filled when it is closed
+        List<int[]> open = new ArrayList<>();
+        int i = 0;
+        while (i < text.length() - 1) {
+            int skipped = skipOpaque(text, i);
+            if (skipped >= 0) {
+                i = skipped;
+            } else if (text.startsWith("[[", i)) {
+                open.add(new int[]{i + 2, targets.size()});
+                targets.add(null);
+                i += 2;
+            } else if (text.startsWith("]]", i) && !open.isEmpty()) {
+                int[] link = open.removeLast();
+                targets.set(link[1], target(text, link[0], i));
+                i += 2;
+            } else {
+                i++;
+            }
+        }
+        List<String> result = new ArrayList<>(targets.size());
+        for (String target : targets) {
+            if (target != null && !isIgnored(target)) {
+                result.add(target);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the index after the comment or nowiki element starting at {@code i}, -1 if no closed one starts there
+     */
+    private static int skipOpaque(String text, int i) {
+        for (String[] element : OPAQUE) {
+            if (text.startsWith(element[0], i)) {
+                int end = text.indexOf(element[1], i + element[0].length());
+                return end < 0 ? -1 : end + element[1].length();
+            }
+        }
+        return -1;
+    }
+
+    private static String target(String text, int start, int end) {
+        int separator = text.indexOf('|', start);
+        int nested = text.indexOf("[[", start);
+        int targetEnd = end;
+        if (separator >= 0 && separator < targetEnd) {
+            targetEnd = separator;
+        }
+        if (nested >= 0 && nested < targetEnd) {
+            // a link can not start inside the target of another one
+            return null;
+        }
+        String target = text.substring(start, targetEnd);
+        if (target.isEmpty() || target.indexOf('\n') >= 0) {
+            return null;
+        }
+        target = target.replace(' ', '_');
+        return Character.toUpperCase(target.charAt(0)) + target.substring(1);
+    }
+
+    private static boolean isIgnored(String target) {
+        for (String namespace : IGNORED_NAMESPACES) {
+            if (target.startsWith(namespace)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isHeading(String text, int start) {
+        int end = text.indexOf('\n', start);
+        String line = text.substring(start, end < 0 ? text.length() : end).stripTrailing();
+        return line.length() > 2 && line.endsWith("=") && !line.chars().allMatch(c -> c == '=');
+    }
+}
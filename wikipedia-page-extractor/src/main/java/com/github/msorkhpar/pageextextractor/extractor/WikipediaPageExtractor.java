@@ -1,52 +1,57 @@
 package com.github.msorkhpar.pageextextractor.extractor;
 
 import com.github.msorkhpar.pageextextractor.utils.WikiPage;
+import com.github.msorkhpar.pageextextractor.utils.WikiRedirect;
+import com.github.msorkhpar.wikistorage.dump.DumpPage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.*;
 
 @Slf4j
 @RequiredArgsConstructor
 public class WikipediaPageExtractor {
 
-    private final static String NAMESPACE_MAIN = "0";
+    private final static int NAMESPACE_MAIN = 0;
+
+    public static WikiPage extractTextString(DumpPage page) {
+        return extractTextString(page, false);
+    }
 
-    public static WikiPage extractTextString(Element xmlPage) {
-        if (xmlPage.getElementsByTagName("redirect").getLength() != 0) {
+    /**
+     * @param withLead also extract the lead section and its links, see {@link LeadSectionExtractor}
+     */
+    public static WikiPage extractTextString(DumpPage page, boolean withLead) {
+        if (page.redirect() != null) {
             return null;
         }
-        String nsValue = xmlPage.getElementsByTagName("ns").item(0).getTextContent();
-        if (!nsValue.equals(NAMESPACE_MAIN)) {
+        if (page.namespace() != NAMESPACE_MAIN) {
             return null;
         }
-        String title = xmlPage.getElementsByTagName("title").item(0).getTextContent().replace(" ", "_");
-        String id = xmlPage.getElementsByTagName("id").item(0).getTextContent();
-        NodeList revisionList = xmlPage.getElementsByTagName("revision");
-        if (revisionList.getLength() > 0) {
-            Node revision = revisionList.item(0);
-            NodeList textList = ((Element) revision).getElementsByTagName("text");
-            if (textList.getLength() > 0) {
-                Node textNode = textList.item(0);
-                return new WikiPage(Long.valueOf(id), title, textNode.getTextContent());
-            }
+        if (page.text() == null) {
+            return null;
         }
-        return null;
+        String lead = withLead ? LeadSectionExtractor.leadSection(page.text()) : null;
+        return new WikiPage(page.id(), page.title().replace(" ", "_"), page.revisionId(), page.sha1(), page.text(),
+                lead, lead == null ? null : LeadSectionExtractor.linkTargets(lead));
     }
 
-    public static Element createPage(String xmlData) throws Exception {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        Document doc = builder.parse(new InputSource(new StringReader(xmlData)));
-        return doc.getDocumentElement();
+    /**
+     * @return the redirect of a main namespace redirect page, its target normalized like page titles
+     */
+    public static WikiRedirect extractRedirect(DumpPage page) {
+        if (page.redirect() == null || page.namespace() != NAMESPACE_MAIN) {
+            return null;
+        }
+        String target = page.redirect();
+        int section = target.indexOf('#');
+        if (section >= 0) {
+            target = target.substring(0, section);
+        }
+        target = target.strip().replace(" ", "_");
+        if (target.isEmpty()) {
+            return null;
+        }
+        target = Character.toUpperCase(target.charAt(0)) + target.substring(1);
+        return new WikiRedirect(page.id(), page.title().replace(" ", "_"), target);
     }
 
-
 }
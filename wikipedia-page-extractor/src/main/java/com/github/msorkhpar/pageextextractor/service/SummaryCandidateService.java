@@ -0,0 +1,178 @@
+package com.github.msorkhpar.pageextextractor.service;
+
+import com.github.msorkhpar.graphengine.CsrGraph;
+import com.github.msorkhpar.graphengine.Edge;
+import com.github.msorkhpar.pageextextractor.extractor.LeadSectionExtractor;
+import com.github.msorkhpar.titleresolver.TitleDictionary;
+import com.github.msorkhpar.titleresolver.TitleEntry;
+import com.github.msorkhpar.wikistorage.data.ContentCodec;
+import com.github.msorkhpar.wikistorage.data.PgCopyWriter;
+import com.github.msorkhpar.wikistorage.data.SummaryCandidates;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Computes the summary candidates of all unprocessed pages in one sweep, instead of resolving the mentions and looking
+ * up their edges with a few queries per page in the summarizer. The links of a page's lead section are taken from
+ * {@code wikipedia_page_leads}, or extracted from the content when the page has no lead stored, resolved with the
+ * title dictionary and joined with the page's item in the CSR graph of {@code app.summary-candidates.graph-file}, in
+ * both directions. The summarizer then only picks one edge of every block of {@code summary_candidates}.
+ * <p>
+ * Pages are read in ranges of their ids, one short query for every {@code app.summary-candidates.batch-size} pages
+ * instead of a transaction held open for the whole sweep, and computed on all cores; a batch is written while the next
+ * one is read.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+class SummaryCandidateService {
+
+    // the next pages after an id, the content is only read for the pages without a stored lead
+    private static final String PAGES = """
+            with batch as (select wp.id
+                           from wikipedia_pages wp
+                           where wp.processed = false
+                             and wp.id > ?
+                             and exists(select from wiki_page_to_wiki_data_mappings m where m.wikipedia_id = wp.id)
+                           order by wp.id
+                           limit ?)
+            select wp.id, wp.revision_id, m.wikidata_id, l.links,
+                   case when l.page_id is null then wp.content end,
+                   case when l.page_id is null then wp.content_zstd end,
+                   wp.dictionary_id
+            from batch b
+                     join wikipedia_pages wp on wp.id = b.id
+                     join wiki_page_to_wiki_data_mappings m on m.wikipedia_id = wp.id
+                     left join wikipedia_page_leads l on l.page_id = wp.id
+            order by wp.id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ContentCodec contentCodec;
+    private final PgCopyWriter copyWriter;
+
+    @Value("${app.summary-candidates.enabled:false}")
+    private boolean enabled;
+    @Value("${app.summary-candidates.graph-file:}")
+    private String graphFile;
+    @Value("${app.summary-candidates.batch-size:5000}")
+    private int batchSize;
+    @Value("${app.title-dictionary.file:}")
+    private String titleDictionaryFile;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void generate() {
+        if (graphFile.isBlank() || titleDictionaryFile.isBlank()) {
+            throw new IllegalStateException(
+                    "app.summary-candidates needs app.summary-candidates.graph-file and app.title-dictionary.file");
+        }
+        long start = System.currentTimeMillis();
+        try (CsrGraph graph = new CsrGraph(Path.of(graphFile));
+             TitleDictionary titles = new TitleDictionary(Path.of(titleDictionaryFile))) {
+            long[] counts = sweep(graph, titles);
+            logger.info("Summary candidates of [{}] pages, [{}] of them with none, are computed in [{}ms]",
+                    counts[0], counts[1], System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Summary candidates could not be computed", e);
+        }
+    }
+
+    /**
+     * @return the number of pages and the number of pages without candidates
+     */
+    private long[] sweep(CsrGraph graph, TitleDictionary titles) {
+        long pages = 0;
+        long empty = 0;
+        CompletableFuture<Void> writing = CompletableFuture.completedFuture(null);
+        long lastId = Long.MIN_VALUE;
+        List<Page> batch;
+        while (!(batch = jdbcTemplate.query(PAGES, (rs, rowNum) -> page(rs), lastId, batchSize)).isEmpty()) {
+            lastId = batch.getLast().id();
+            List<SummaryCandidates> rows = batch.parallelStream()
+                    .map(page -> candidates(page, graph, titles))
+                    .toList();
+            pages += rows.size();
+            empty += rows.stream().filter(row -> row.candidates().isEmpty()).count();
+            writing.join();
+            writing = CompletableFuture.runAsync(() -> copyWriter.write(PgCopyWriter.SUMMARY_CANDIDATES, rows));
+            if (pages % (batchSize * 100L) < batchSize) {
+                logger.info("Summary candidates of [{}] pages are computed", pages);
+            }
+        }
+        writing.join();
+        return new long[]{pages, empty};
+    }
+
+    private static Page page(ResultSet rs) throws SQLException {
+        Array links = rs.getArray(4);
+        return new Page(rs.getLong(1), (Long) rs.getObject(2), item(rs.getString(3)),
+                links == null ? null : Arrays.asList((String[]) links.getArray()),
+                rs.getString(5), rs.getBytes(6), (Integer) rs.getObject(7));
+    }
+
+    private SummaryCandidates candidates(Page page, CsrGraph graph, TitleDictionary titles) {
+        List<String> links = page.links();
+        if (links == null) {
+            String content = contentCodec.decode(page.content(), page.contentZstd(), page.dictionaryId());
+            links = content == null ? List.of()
+                    : LeadSectionExtractor.linkTargets(LeadSectionExtractor.leadSection(content));
+        }
+        StringBuilder blocks = new StringBuilder();
+        Set<Long> linked = new HashSet<>();
+        for (TitleEntry link : page.item() == 0 ? List.<TitleEntry>of() : titles.findAll(links).values()) {
+            long item = link.item();
+            // a page linked twice is one pair of the page's item and the linked one
+            if (item == 0 || !linked.add(item)) {
+                continue;
+            }
+            List<Edge> edges = new ArrayList<>(graph.edges(page.item(), item));
+            if (item != page.item()) {
+                edges.addAll(graph.edges(item, page.item()));
+            }
+            if (!edges.isEmpty()) {
+                for (Edge edge : edges) {
+                    blocks.append(edge).append('\n');
+                }
+                blocks.append('\n');
+            }
+        }
+        return new SummaryCandidates(page.id(), page.revisionId(), blocks.toString());
+    }
+
+    private static long item(String wikidataId) {
+        if (wikidataId == null || wikidataId.length() < 2 || wikidataId.charAt(0) != 'Q') {
+            return 0;
+        }
+        try {
+            return Long.parseLong(wikidataId, 1, wikidataId.length(), 10);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @param links the stored links of the lead section, null when the lead of the page is not stored
+     */
+    private record Page(long id, Long revisionId, long item, List<String> links, String content, byte[] contentZstd,
+                        Integer dictionaryId) {
+    }
+}
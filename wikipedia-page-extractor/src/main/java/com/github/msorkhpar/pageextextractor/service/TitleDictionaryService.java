@@ -0,0 +1,111 @@
+package com.github.msorkhpar.pageextextractor.service;
+
+import com.github.msorkhpar.titleresolver.TitleDictionaryWriter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/**
+ * Compiles the titles of the pages, of their redirects and of the remaining rows of the wikimapper mapping into the
+ * {@code app.title-dictionary.file} served by the title resolver. A title maps to its page id and Wikidata item; the
+ * first source which has a title wins, in the order above.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+class TitleDictionaryService {
+
+    private static final String PAGES = """
+            select wp.title, wp.id, m.wikidata_id
+            from wikipedia_pages wp
+                     left join wiki_page_to_wiki_data_mappings m on m.wikipedia_id = wp.id
+            """;
+    private static final String REDIRECTS = """
+            select r.title, wp.id, m.wikidata_id
+            from wikipedia_redirects r
+                     join wikipedia_pages wp on wp.title = r.target
+                     left join wiki_page_to_wiki_data_mappings m on m.wikipedia_id = wp.id
+            """;
+    private static final String MAPPINGS = """
+            select m.wikipedia_title, m.wikipedia_id, m.wikidata_id
+            from wiki_page_to_wiki_data_mappings m
+            """;
+    private static final int FETCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.title-dictionary.file:}")
+    private String file;
+
+    public boolean isEnabled() {
+        return !file.isBlank();
+    }
+
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        TitleDictionaryWriter writer = new TitleDictionaryWriter();
+        long pages = add(writer, PAGES);
+        long redirects = add(writer, REDIRECTS);
+        long mappings = add(writer, MAPPINGS);
+        logger.info("[{}] page, [{}] redirect and [{}] mapping titles are read in [{}ms]",
+                pages, redirects, mappings, System.currentTimeMillis() - start);
+        try {
+            Path target = Path.of(file);
+            if (target.getParent() != null) {
+                Files.createDirectories(target.getParent());
+            }
+            writer.write(target);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Title dictionary [" + file + "] could not be written", e);
+        }
+    }
+
+    /**
+     * Streams the rows with a cursor instead of loading the whole result.
+     *
+     * @return the number of titles which were new to the writer
+     */
+    private long add(TitleDictionaryWriter writer, String query) {
+        return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(query)) {
+                statement.setFetchSize(FETCH_SIZE);
+                long added = 0;
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        String title = rs.getString(1);
+                        if (title != null && writer.add(title, rs.getLong(2), item(rs.getString(3)))) {
+                            added++;
+                        }
+                    }
+                }
+                connection.commit();
+                return added;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        });
+    }
+
+    private static long item(String wikidataId) {
+        if (wikidataId == null || wikidataId.length() < 2 || wikidataId.charAt(0) != 'Q') {
+            return 0;
+        }
+        try {
+            return Long.parseLong(wikidataId, 1, wikidataId.length(), 10);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
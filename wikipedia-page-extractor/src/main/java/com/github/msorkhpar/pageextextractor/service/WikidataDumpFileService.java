@@ -1,65 +1,101 @@
 package com.github.msorkhpar.pageextextractor.service;
 
+import com.github.msorkhpar.pageextextractor.utils.ParsedPage;
 import com.github.msorkhpar.pageextextractor.utils.WikiPage;
+import com.github.msorkhpar.pageextextractor.utils.WikiRedirect;
+import com.github.msorkhpar.wikistorage.data.CheckpointService;
+import com.github.msorkhpar.wikistorage.data.IngestionCheckpoint;
 import com.github.msorkhpar.wikistorage.data.PersistenceService;
+import com.github.msorkhpar.wikistorage.data.WikipediaPage;
+import com.github.msorkhpar.wikistorage.data.WikipediaPageLead;
+import com.github.msorkhpar.wikistorage.data.WikipediaPageService;
+import com.github.msorkhpar.wikistorage.data.WikipediaRedirect;
+import com.github.msorkhpar.wikistorage.dump.DumpPage;
+import com.github.msorkhpar.wikistorage.dump.DumpPageReader;
+import com.github.msorkhpar.wikistorage.dump.ParallelBZip2InputStream;
+import com.github.msorkhpar.wikistorage.pipeline.CheckpointTracker;
+import com.github.msorkhpar.wikistorage.pipeline.IngestionPipeline;
+import com.github.msorkhpar.wikistorage.pipeline.PipelineExecutors;
+import com.github.msorkhpar.wikistorage.pipeline.PipelineMetrics;
+import com.github.msorkhpar.wikistorage.pipeline.PipelineSettings;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.w3c.dom.Element;
 
-import java.io.BufferedReader;
-import java.io.IOException;
+import java.io.Reader;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 import static com.github.msorkhpar.pageextextractor.extractor.WikipediaPageExtractor.*;
-import static com.github.msorkhpar.pageextextractor.utils.BZip2BufferReader.createBufferedReader;
+import static com.github.msorkhpar.wikistorage.dump.BZip2BufferReader.createBufferedReader;
+import static com.github.msorkhpar.wikistorage.dump.BZip2BufferReader.createResumedReader;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 class WikidataDumpFileService {
 
+    private static final String APPLICATION = "wikipedia-page-extractor";
+
     private final PersistenceService persistenceService;
+    private final CheckpointService checkpointService;
+    private final PipelineSettings pipelineSettings;
+    private final PipelineExecutors pipelineExecutors;
+    private final MeterRegistry meterRegistry;
+    private final WikipediaPageService wikipediaPageService;
+
+    @Value("${app.wikipedia.extract-leads:true}")
+    private boolean extractLeads;
+    @Value("${app.wikipedia.store-redirects:true}")
+    private boolean storeRedirects;
 
     @SneakyThrows
     @Async
     public CompletableFuture<Path> process(Path dumpFile) {
         String fileName = dumpFile.getFileName().toString();
         long start = System.currentTimeMillis();
-        long counter = 1;
         logger.info("Start processing [{}]", fileName);
-        try (BufferedReader reader = createBufferedReader(dumpFile)) {
-            StringBuilder xmlBuilder = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (xmlBuilder.isEmpty() && !line.trim().equals("<page>")) {
-                    continue;
-                }
-                // <page> is found. Start building the current xml tag.
-                xmlBuilder.append(line);
-                xmlBuilder.append("\n");
-                if (line.trim().equals("</page>")) {
-                    String pageString = xmlBuilder.toString();
-                    try {
-                        Element xmlPage = createPage(pageString);
-                        WikiPage page = extractTextString(xmlPage);
-                        if (page != null) {
-                            persistenceService.persistWikiPage(page.id(), page.title(), page.text());
-                            if (counter++ % 10_000 == 0) {
-                                logger.info("[{}] pages of [{}] is processed", counter, fileName);
-                            }
-                        }
-                    } catch (Exception e) {
-                        logger.info("Extraction from the following text was not successful, {}", pageString);
+        IngestionPipeline<DumpPage, ParsedPage> pipeline =
+                new IngestionPipeline<>(fileName, pipelineSettings, pipelineExecutors, this::parse, this::persist);
+        long counter;
+        try (CheckpointTracker checkpoint = checkpointService.open(APPLICATION, fileName, true)) {
+            IngestionCheckpoint resumeFrom = checkpoint.start();
+            if (resumeFrom.completed()) {
+                logger.info("[{}] is already processed, skipping it", fileName);
+                return CompletableFuture.completedFuture(dumpFile);
+            }
+            ParallelBZip2InputStream input = pipelineExecutors.openDump(dumpFile, resumeFrom.blockOffset());
+            if (!resumeFrom.isStart()) {
+                logger.info("Resuming [{}] after page [{}], [{}] pages are already stored",
+                        fileName, resumeFrom.lastPageId(), resumeFrom.pages());
+            }
+            pipeline.withMetrics(new PipelineMetrics(meterRegistry, fileName)
+                    .bytes("compressed", input, ParallelBZip2InputStream::compressedBytes)
+                    .bytes("uncompressed", input, ParallelBZip2InputStream::decompressedBytes));
+            Reader text = resumeFrom.isStart() ? createBufferedReader(input) : createResumedReader(input);
+            try (DumpPageReader reader = new DumpPageReader(text, input::checkpointPosition)) {
+                pipeline.onCommitted(checkpoint::committed);
+                counter = pipeline.run(() -> {
+                    DumpPage page;
+                    do {
+                        page = reader.next();
+                    } while (page != null && checkpoint.isCommitted(page.id()));
+                    if (page != null) {
+                        checkpoint.read(page.id(), reader.pageOffset());
                     }
-                    // prepare the builder for the next page
-                    xmlBuilder.setLength(0);
-                }
+                    return page;
+                });
+                checkpoint.complete();
             }
-        } catch (IOException e) {
+        } catch (Exception e) {
             logger.error("Error processing [{}]", fileName, e);
             return CompletableFuture.failedFuture(e);
         }
@@ -67,4 +103,39 @@ class WikidataDumpFileService {
         return CompletableFuture.completedFuture(dumpFile);
     }
 
+    private ParsedPage parse(DumpPage dumpPage) {
+        if (dumpPage.redirect() != null) {
+            return storeRedirects ? extractRedirect(dumpPage) : null;
+        }
+        return extractTextString(dumpPage, extractLeads);
+    }
+
+    private void persist(List<ParsedPage> parsed) {
+        List<WikiPage> pages = new ArrayList<>(parsed.size());
+        List<WikipediaRedirect> redirects = new ArrayList<>();
+        for (ParsedPage page : parsed) {
+            switch (page) {
+                case WikiPage article -> pages.add(article);
+                case WikiRedirect redirect ->
+                        redirects.add(new WikipediaRedirect(redirect.id(), redirect.title(), redirect.target()));
+            }
+        }
+        persistenceService.persistWikiRedirects(redirects);
+        List<WikipediaPage> changed = wikipediaPageService.changed(
+                pages.stream()
+                        .map(page -> new WikipediaPage(page.id(), page.title(), page.text(), page.text().length(),
+                                page.revisionId(), page.sha1()))
+                        .toList()
+        );
+        List<WikipediaPageLead> leads = List.of();
+        if (extractLeads) {
+            Set<Long> changedIds = changed.stream().map(WikipediaPage::getId).collect(Collectors.toSet());
+            leads = pages.stream()
+                    .filter(page -> changedIds.contains(page.id()))
+                    .map(page -> new WikipediaPageLead(page.id(), page.lead(), page.links()))
+                    .toList();
+        }
+        persistenceService.persistWikiPages(changed, leads);
+    }
+
 }
@@ -1,5 +1,8 @@
 package com.github.msorkhpar.pageextextractor.service;
 
+import com.github.msorkhpar.wikistorage.data.BulkLoadService;
+import com.github.msorkhpar.wikistorage.data.BulkLoadTable;
+import com.github.msorkhpar.wikistorage.data.ContentMigrationService;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
@@ -17,15 +20,32 @@ import java.util.concurrent.CompletableFuture;
 public class WikipediaService {
 
     private final WikidataDumpFileService wikidataDumpFileService;
+    private final BulkLoadService bulkLoadService;
+    private final ContentMigrationService contentMigrationService;
+    private final TitleDictionaryService titleDictionaryService;
+    private final SummaryCandidateService summaryCandidateService;
 
 
     @SneakyThrows
     public void extractWikipediaPages(List<Path> dumpFiles) {
+        bulkLoadService.beforeLoad(List.of(BulkLoadTable.WIKIPEDIA_PAGES, BulkLoadTable.WIKIPEDIA_PAGE_LEADS,
+                BulkLoadTable.WIKIPEDIA_REDIRECTS));
         ArrayList<CompletableFuture<Path>> results = new ArrayList<>();
         for (Path dumpFile : dumpFiles) {
             results.add(wikidataDumpFileService.process(dumpFile));
         }
         CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).join();
+        bulkLoadService.afterLoad(List.of(BulkLoadTable.WIKIPEDIA_PAGES, BulkLoadTable.WIKIPEDIA_PAGE_LEADS,
+                BulkLoadTable.WIKIPEDIA_REDIRECTS));
+        if (contentMigrationService.isEnabled()) {
+            contentMigrationService.compressExisting();
+        }
+        if (titleDictionaryService.isEnabled()) {
+            titleDictionaryService.rebuild();
+        }
+        if (summaryCandidateService.isEnabled()) {
+            summaryCandidateService.generate();
+        }
     }
 
 }
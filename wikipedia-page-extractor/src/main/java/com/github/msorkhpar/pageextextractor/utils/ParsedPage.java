@@ -0,0 +1,9 @@
+package com.github.msorkhpar.pageextextractor.utils;
+
+/**
+ * What the parsers make of a main namespace page: an article or a redirect.
+ */
+public sealed interface ParsedPage permits WikiPage, WikiRedirect {
+
+    Long id();
+}
@@ -1,4 +1,11 @@
 package com.github.msorkhpar.pageextextractor.utils;
 
-public record WikiPage(Long id, String title, String text) {
+import java.util.List;
+
+/**
+ * @param lead  wikitext of the lead section, null when it is not extracted
+ * @param links normalized targets of the wikilinks in the lead section, null when it is not extracted
+ */
+public record WikiPage(Long id, String title, long revisionId, String sha1, String text, String lead,
+                       List<String> links) implements ParsedPage {
 }
@@ -0,0 +1,7 @@
+package com.github.msorkhpar.pageextextractor.utils;
+
+/**
+ * @param target normalized title of the page the redirect points to, without a section
+ */
+public record WikiRedirect(Long id, String title, String target) implements ParsedPage {
+}
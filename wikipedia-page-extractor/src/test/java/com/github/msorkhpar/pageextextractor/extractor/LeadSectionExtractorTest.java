@@ -0,0 +1,80 @@
+package com.github.msorkhpar.pageextextractor.extractor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The expected values are what the summarizer got from mwparserfromhell: {@code str(mw.parse(text).get_sections()[0])}
+ * for the lead and the normalized titles of {@code mw.parse(lead).filter_wikilinks()} for the targets.
+ */
+class LeadSectionExtractorTest {
+
+    @Test
+    void leadEndsAtTheFirstHeadingOutsideTemplatesAndComments() {
+        String lead = """
+                {{Infobox person
+                | name = Ada
+                == Not a section ==
+                | image = {{Crop|Ada.jpg}}
+                }}
+                '''Ada''' was a [[mathematician]].
+                <!--
+                == Hidden ==
+                -->
+                <nowiki>
+                == Literal ==
+                </nowiki>
+                She wrote notes.
+                """;
+        String text = lead + """
+                == Life ==
+                Born in [[London]].
+                """;
+        assertEquals(lead, LeadSectionExtractor.leadSection(text));
+    }
+
+    @Test
+    void headingsStartALineAndCloseIt() {
+        assertEquals("No headings == here ==\n==\n== Unclosed\n",
+                LeadSectionExtractor.leadSection("No headings == here ==\n==\n== Unclosed\n"));
+        assertEquals("", LeadSectionExtractor.leadSection("== First ==\ntext\n"));
+        // a comment before the equals signs means they are not at the start of the line
+        assertEquals("Intro\n<!-- c -->== Not a heading ==\n",
+                LeadSectionExtractor.leadSection("Intro\n<!-- c -->== Not a heading ==\n=Level one=\nrest\n"));
+        assertEquals("Intro\n", LeadSectionExtractor.leadSection("Intro\n==Uneven=\nrest\n"));
+    }
+
+    @Test
+    void unclosedCommentsArePlainText() {
+        assertEquals("Intro <!-- open\n",
+                LeadSectionExtractor.leadSection("Intro <!-- open\n== Section ==\nrest\n"));
+        assertEquals(List.of("Visible"), LeadSectionExtractor.linkTargets("<!-- open [[visible]]"));
+    }
+
+    @Test
+    void targetsAreNormalizedLikeTheSummarizer() {
+        String lead = "[[File:Ada.jpg|thumb|Ada with [[Charles Babbage|Babbage]] and [[analytical engine]]]]"
+                      + " studied [[mathematics|math]], see [[:Category:Mathematicians]] and [[Poetry#Byron|poetry]],"
+                      + " [[#Later life|later]], [[Category:1815 births]], [[user talk:Ada]], [[image:x.png]],"
+                      + " [[ébène]], [[ New York ]], {{lang|fr|[[French language|French]]}}, <ref>[[Cited work]]</ref>,"
+                      + " <!-- [[Hidden]] --> <nowiki>[[Literal]]</nowiki> [[broken\nlink]] [[a[[b]]c]] [[paris]]"
+                      + " [[Paris]]";
+        assertEquals(List.of(
+                "Charles_Babbage", "Analytical_engine",
+                "Mathematics", ":Category:Mathematicians", "Poetry#Byron",
+                "#Later_life",
+                "Ébène", "_New_York_", "French_language", "Cited_work",
+                "B", "Paris", "Paris"
+        ), LeadSectionExtractor.linkTargets(lead));
+    }
+
+    @Test
+    void linksOfIgnoredNamespacesAreLeftOut() {
+        assertEquals(List.of("Portals", "Drafts"), LeadSectionExtractor.linkTargets(
+                "[[Template:Cite]] [[portal:Science]] [[Wikipedia talk:X]] [[Module:Y]] [[Help_talk:Z]]"
+                + " [[Portals]] [[TimedText:A]] [[Education Program:B]] [[drafts]]"));
+    }
+}